@@ -0,0 +1,71 @@
+package com.newsletter.benchmark;
+
+import com.newsletter.NewsletterServiceApplication;
+import com.newsletter.model.Subscriber;
+import com.newsletter.model.Topic;
+import com.newsletter.service.SubscriberService;
+import com.newsletter.service.TopicService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application against a private in-memory H2 database for one benchmark fork.
+ * Background refills and reapers are pushed out so they do not run during measurement.
+ */
+final class BenchmarkContext {
+
+    private static final int SEED_CHUNK = 10_000;
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... extraArgs) {
+        return run("--spring.main.web-application-type=none", extraArgs);
+    }
+
+    /**
+     * Like {@link #start}, but serving the REST API on a random port (the local.server.port property).
+     */
+    static ConfigurableApplicationContext startServer(String... extraArgs) {
+        return run("--server.port=0", extraArgs);
+    }
+
+    private static ConfigurableApplicationContext run(String webArg, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                webArg,
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--newsletter.dispatch.refill-interval-ms=86400000",
+                "--newsletter.dispatch.reaper-interval-ms=86400000",
+                // Longer than the refill interval, which startup checks
+                "--newsletter.dispatch.horizon-seconds=172800",
+                "--newsletter.index.snapshot-path="
+        ));
+        args.addAll(List.of(extraArgs));
+        return SpringApplication.run(NewsletterServiceApplication.class, args.toArray(String[]::new));
+    }
+
+    static Topic createTopic(ConfigurableApplicationContext context, String name) {
+        return context.getBean(TopicService.class).save(new Topic(null, name));
+    }
+
+    /**
+     * Inserts subscribers sub0@bench.test .. sub(n-1)@bench.test in import-sized chunks.
+     */
+    static void seedSubscribers(ConfigurableApplicationContext context, Topic topic, int count) {
+        SubscriberService subscriberService = context.getBean(SubscriberService.class);
+        List<Subscriber> chunk = new ArrayList<>(SEED_CHUNK);
+        for (int i = 0; i < count; i++) {
+            chunk.add(new Subscriber(null, "sub" + i + "@bench.test", topic));
+            if (chunk.size() == SEED_CHUNK) {
+                subscriberService.saveChunk(chunk);
+                chunk = new ArrayList<>(SEED_CHUNK);
+            }
+        }
+        if (!chunk.isEmpty()) subscriberService.saveChunk(chunk);
+    }
+}
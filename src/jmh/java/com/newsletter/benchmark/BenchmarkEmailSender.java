@@ -0,0 +1,39 @@
+package com.newsletter.benchmark;
+
+import com.newsletter.service.EmailSenderService;
+import com.newsletter.template.CompiledTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Renders every message but sends nothing; an optional per-batch delay stands in for the SMTP round trip.
+ */
+final class BenchmarkEmailSender implements EmailSenderService {
+
+    private final long latencyNanos;
+
+    BenchmarkEmailSender(long latencyMicros) {
+        this.latencyNanos = latencyMicros * 1_000;
+    }
+
+    @Override
+    public void sendEmail(String to, String subject, String body) {
+    }
+
+    @Override
+    public void sendEmails(CompiledTemplate template, List<String> recipients) {
+        try {
+            OutputStream sink = OutputStream.nullOutputStream();
+            for (String to : recipients) {
+                template.writeTo(sink, to);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (latencyNanos > 0) LockSupport.parkNanos(latencyNanos);
+    }
+}
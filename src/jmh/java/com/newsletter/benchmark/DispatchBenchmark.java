@@ -0,0 +1,67 @@
+package com.newsletter.benchmark;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.Status;
+import com.newsletter.model.Topic;
+import com.newsletter.service.ContentDispatcher;
+import com.newsletter.service.ContentService;
+import com.newsletter.strategy.schedule.HashedTimerWheel;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Horizon load of {@link ContentDispatcher#checkAndDispatch()}: range query plus timer wheel insertion
+ * of every PENDING row. Rows are due an hour out so nothing fires while measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DispatchBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int pendingRows;
+
+    private ConfigurableApplicationContext context;
+    private ContentDispatcher dispatcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        dispatcher = context.getBean(ContentDispatcher.class);
+
+        Topic topic = BenchmarkContext.createTopic(context, "dispatch");
+        LocalDateTime due = LocalDateTime.now().plusHours(1);
+        List<Content> contents = new ArrayList<>(pendingRows);
+        for (int i = 0; i < pendingRows; i++) {
+            contents.add(new Content(null, Status.PENDING, "content " + i, due.plusSeconds(i % 600), false, topic));
+        }
+        context.getBean(ContentService.class).saveAll(contents);
+    }
+
+    // Forget the previous load so every invocation reads the full horizon into an empty wheel
+    @Setup(Level.Invocation)
+    public void resetHorizon() {
+        ReflectionTestUtils.setField(dispatcher, "loadedUntil", null);
+        ReflectionTestUtils.setField(dispatcher, "wheel",
+                new HashedTimerWheel<Long, Content>(100, 512, System.currentTimeMillis()));
+    }
+
+    @Benchmark
+    public void checkAndDispatch() {
+        dispatcher.checkAndDispatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
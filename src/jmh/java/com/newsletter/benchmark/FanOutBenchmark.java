@@ -0,0 +1,88 @@
+package com.newsletter.benchmark;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.Status;
+import com.newsletter.model.Topic;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.repository.DeliveryRepository;
+import com.newsletter.repository.FanOutCheckpointRepository;
+import com.newsletter.service.ContentPublisher;
+import com.newsletter.service.DeliveryLedger;
+import com.newsletter.service.FanOutTask;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One full fan-out per invocation, its chunks run back to back on the benchmark thread: roster paging, template
+ * rendering, bounded executor and ledger writes. {@code latencyMicros} = 0 is a no-op sender; a positive
+ * value parks each batch to model the SMTP round trip. A fresh content row is used every time so the
+ * ledger never short-circuits a run, and the ledger tables are emptied after each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class FanOutBenchmark {
+
+    private static final long SATURATED_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    @Param({"1000", "100000", "1000000"})
+    public int subscribers;
+
+    @Param({"0", "2000"})
+    public long latencyMicros;
+
+    private ConfigurableApplicationContext context;
+    private ContentPublisher publisher;
+    private ContentRepository contentRepository;
+    private BenchmarkEmailSender sender;
+    private Topic topic;
+    private Content content;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        publisher = context.getBean(ContentPublisher.class);
+        contentRepository = context.getBean(ContentRepository.class);
+        sender = new BenchmarkEmailSender(latencyMicros);
+
+        topic = BenchmarkContext.createTopic(context, "fan-out");
+        BenchmarkContext.seedSubscribers(context, topic, subscribers);
+    }
+
+    // IN_PROGRESS keeps the dispatcher's own loads away from the row
+    @Setup(Level.Iteration)
+    public void newContent() {
+        content = contentRepository.save(new Content(null, Status.IN_PROGRESS,
+                "Hello {{name}}, unsubscribe at {{unsubscribeUrl}}", LocalDateTime.now(), false, topic));
+    }
+
+    @Benchmark
+    public void fanOut() {
+        FanOutTask job = publisher.start(content, sender);
+        long wait;
+        while ((wait = job.runChunk(Integer.MAX_VALUE)) != FanOutTask.DONE) {
+            if (wait > 0) LockSupport.parkNanos(wait);
+            else if (wait == FanOutTask.SATURATED) LockSupport.parkNanos(SATURATED_POLL_NANOS);
+        }
+        job.completion().join();
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearLedger() {
+        context.getBean(DeliveryLedger.class).flush();
+        context.getBean(DeliveryRepository.class).deleteAllInBatch();
+        context.getBean(FanOutCheckpointRepository.class).deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.newsletter.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.newsletter.dto.ContentRequest;
+import com.newsletter.dto.SubscriberRequest;
+import com.newsletter.ingest.ContentImportService;
+import com.newsletter.ingest.ImportJob;
+import com.newsletter.ingest.SubscriberImportService;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.repository.SubscriberRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bulk ingestion jobs behind the content and subscriber {@code createBulk} endpoints, run directly on the
+ * benchmark thread so HTTP and worker hand-off stay out of the numbers; the JSON array bodies are serialized in
+ * setup. Subscriber emails are unique per invocation; tables are emptied after each iteration to keep the
+ * database size stable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IngestBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private ContentImportService contentImportService;
+    private SubscriberImportService subscriberImportService;
+    private ObjectMapper objectMapper;
+    private Long topicId;
+    private long sequence;
+
+    private byte[] contentBody;
+    private byte[] subscriberBody;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        contentImportService = context.getBean(ContentImportService.class);
+        subscriberImportService = context.getBean(SubscriberImportService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        topicId = BenchmarkContext.createTopic(context, "ingest").getId();
+    }
+
+    @Setup(Level.Invocation)
+    public void newRequests() throws IOException {
+        // Outside the dispatch horizon, so saved content is never loaded into the timer wheel
+        LocalDateTime scheduledTime = LocalDateTime.now().plusDays(3);
+        List<ContentRequest> contentRequests = new ArrayList<>(batchSize);
+        List<SubscriberRequest> subscriberRequests = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            long n = sequence++;
+            contentRequests.add(new ContentRequest("content " + n, topicId, scheduledTime, null));
+            SubscriberRequest subscriber = new SubscriberRequest();
+            subscriber.setEmail("sub" + n + "@bench.test");
+            subscriber.setTopicId(topicId);
+            subscriberRequests.add(subscriber);
+        }
+        contentBody = objectMapper.writeValueAsBytes(contentRequests);
+        subscriberBody = objectMapper.writeValueAsBytes(subscriberRequests);
+    }
+
+    @Benchmark
+    public Object contentCreateBulk() {
+        return contentImportService.run(new ImportJob("content", ContentImportService.JSON, 0),
+                new ByteArrayInputStream(contentBody));
+    }
+
+    @Benchmark
+    public Object subscriberCreateBulk() {
+        return subscriberImportService.run(new ImportJob("subscribers", SubscriberImportService.JSON, 0),
+                new ByteArrayInputStream(subscriberBody));
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearTables() {
+        context.getBean(ContentRepository.class).deleteAllInBatch();
+        context.getBean(SubscriberRepository.class).deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
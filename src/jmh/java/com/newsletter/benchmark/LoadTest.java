@@ -0,0 +1,324 @@
+package com.newsletter.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.newsletter.support.FakeSmtpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of the whole pipeline, from the scheduler to SMTP. Boots the application against a
+ * {@link FakeSmtpServer}, seeds topics, subscribers and scheduled content through the REST API, waits until every
+ * content item is SENT or FAILED, and reports delivered emails per second and the distribution of delivery lag
+ * (SMTP accept time minus scheduledTime).
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@load-test -Dload.args="subscribers=100000 contents=4 latencyMicros=500"
+ * </pre>
+ *
+ * Arguments are key=value pairs (see {@link #DEFAULTS}); arguments starting with -- go to the application.
+ * With providers &gt; 1 every provider gets its own fake server and the application sends through the routing
+ * sender; the first failingProviders servers defer every message, so their recipients have to fail over.
+ */
+public final class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("subscribers", "10000"),
+            Map.entry("topics", "1"),
+            Map.entry("contents", "4"),
+            // Delay before the first scheduledTime, and the window the rest are spread over
+            Map.entry("leadSeconds", "5"),
+            Map.entry("spreadSeconds", "0"),
+            Map.entry("latencyMicros", "0"),
+            Map.entry("rcptErrorRate", "0"),
+            Map.entry("dataErrorRate", "0"),
+            Map.entry("maxConnections", "0"),
+            Map.entry("capacity", "0"),
+            Map.entry("providers", "1"),
+            // Comma-separated routing weights, one per provider; empty weighs them equally
+            Map.entry("weights", ""),
+            Map.entry("failingProviders", "0"),
+            Map.entry("timeoutSeconds", "600")
+    );
+
+    // Content text starts with this marker and the item's index, so each accepted message maps to its content
+    private static final String MARKER = "LT#";
+
+    private final Map<String, String> options;
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String baseUrl;
+
+    private long[] scheduledAtMillis;
+    private final LagRecorder lags = new LagRecorder();
+    private final AtomicLong lastAcceptedAt = new AtomicLong();
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                appArgs.add(arg);
+            } else if (arg.contains("=") && DEFAULTS.containsKey(arg.substring(0, arg.indexOf('=')))) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg + ", expected one of " + DEFAULTS.keySet());
+            }
+        }
+        new LoadTest(options).run(appArgs);
+        System.exit(0);
+    }
+
+    private void run(List<String> appArgs) throws Exception {
+        int subscribers = intOption("subscribers");
+        int topics = intOption("topics");
+        int contents = intOption("contents");
+        scheduledAtMillis = new long[contents];
+
+        List<FakeSmtpServer> servers = new ArrayList<>();
+        try {
+            int providers = intOption("providers");
+            for (int p = 0; p < providers; p++) {
+                double dataErrorRate = p < intOption("failingProviders") ? 1 : Double.parseDouble(options.get("dataErrorRate"));
+                servers.add(new FakeSmtpServer(longOption("latencyMicros"), Double.parseDouble(options.get("rcptErrorRate")),
+                        dataErrorRate, intOption("maxConnections"), intOption("capacity"), this::accepted));
+            }
+            List<String> args = providers == 1 ? new ArrayList<>(List.of(
+                    "--spring.mail.host=127.0.0.1",
+                    "--spring.mail.port=" + servers.get(0).port(),
+                    "--spring.mail.properties.mail.smtp.auth=false",
+                    "--spring.mail.properties.mail.smtp.starttls.enable=false"
+            )) : routingArgs(servers);
+            args.addAll(appArgs);
+            ConfigurableApplicationContext context = BenchmarkContext.startServer(args.toArray(String[]::new));
+            try {
+                baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+                long[] topicIds = new long[topics];
+                for (int t = 0; t < topics; t++) {
+                    topicIds[t] = post("/api/topics", "application/json", json(Map.of("name", "load-" + t)))
+                            .get("id").asLong();
+                }
+                long seedStart = System.nanoTime();
+                seedSubscribers(subscribers, topicIds);
+                System.out.printf("Seeded %d subscribers over %d topics in %d ms%n", subscribers, topics,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+
+                long expected = scheduleContent(contents, subscribers, topicIds);
+                Map<String, Long> statuses = awaitContent(contents);
+                report(context, servers, subscribers, topics, contents, expected, statuses);
+            } finally {
+                context.close();
+            }
+        } finally {
+            for (FakeSmtpServer server : servers) server.close();
+        }
+    }
+
+    private List<String> routingArgs(List<FakeSmtpServer> servers) {
+        String[] weights = options.get("weights").isBlank() ? new String[0] : options.get("weights").split(",");
+        List<String> names = new ArrayList<>();
+        List<String> args = new ArrayList<>(List.of("--newsletter.email.sender=routing"));
+        for (int p = 0; p < servers.size(); p++) {
+            String prefix = "--newsletter.mail.providers.p" + p + ".";
+            names.add("p" + p);
+            args.add(prefix + "host=127.0.0.1");
+            args.add(prefix + "port=" + servers.get(p).port());
+            args.add(prefix + "weight=" + (p < weights.length ? weights[p].trim() : "1"));
+            args.add(prefix + "properties.mail.smtp.auth=false");
+            args.add(prefix + "properties.mail.smtp.starttls.enable=false");
+        }
+        args.add("--newsletter.mail.routing.providers=" + String.join(",", names));
+        return args;
+    }
+
+    private void seedSubscribers(int subscribers, long[] topicIds) throws Exception {
+        StringBuilder body = new StringBuilder(subscribers * 48);
+        for (int i = 0; i < subscribers; i++) {
+            body.append("{\"email\":\"user").append(i).append("@domain").append(i % 10).append(".test\",\"topicId\":")
+                    .append(topicIds[i % topicIds.length]).append("}\n");
+        }
+        awaitJob(post("/api/subscribers/import", "application/x-ndjson", body.toString()));
+    }
+
+    /**
+     * Schedules the content spread over the window and returns the number of emails it should produce.
+     */
+    private long scheduleContent(int contents, int subscribers, long[] topicIds) throws Exception {
+        LocalDateTime first = LocalDateTime.now().plusSeconds(longOption("leadSeconds")).truncatedTo(ChronoUnit.SECONDS);
+        long spreadMillis = contents > 1 ? longOption("spreadSeconds") * 1000 / (contents - 1) : 0;
+        List<Map<String, Object>> items = new ArrayList<>(contents);
+        long expected = 0;
+        for (int n = 0; n < contents; n++) {
+            int topic = n % topicIds.length;
+            LocalDateTime scheduledTime = first.plus(n * spreadMillis, ChronoUnit.MILLIS);
+            scheduledAtMillis[n] = scheduledTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            items.add(Map.of(
+                    "text", MARKER + n + " Load test content for {{name}}",
+                    "topicId", topicIds[topic],
+                    "scheduledTime", scheduledTime.toString()
+            ));
+            // Subscriber i is on topic i % topics
+            expected += subscribers / topicIds.length + (topic < subscribers % topicIds.length ? 1 : 0);
+        }
+        awaitJob(post("/api/content/bulk", "application/json", json(items)));
+        System.out.printf("Scheduled %d content items from %s, %d emails expected%n", contents, first, expected);
+        return expected;
+    }
+
+    private Map<String, Long> awaitContent(int contents) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(longOption("timeoutSeconds"));
+        while (true) {
+            Map<String, Long> statuses = new HashMap<>();
+            get("/api/status/summary").get("byStatus").fields()
+                    .forEachRemaining(e -> statuses.put(e.getKey(), e.getValue().asLong()));
+            long done = statuses.getOrDefault("SENT", 0L) + statuses.getOrDefault("FAILED", 0L);
+            if (done >= contents) return statuses;
+            if (System.nanoTime() > deadline) {
+                System.out.println("Timed out waiting for content, statuses " + statuses);
+                return statuses;
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    private void awaitJob(JsonNode job) throws Exception {
+        String id = job.get("id").asText();
+        while (true) {
+            JsonNode current = get("/api/jobs/" + id);
+            String status = current.get("status").asText();
+            if ("COMPLETED".equals(status)) return;
+            if ("FAILED".equals(status)) throw new IllegalStateException("Ingestion job failed: " + current);
+            Thread.sleep(100);
+        }
+    }
+
+    private void accepted(String data, long acceptedAtMillis) {
+        int at = data.indexOf(MARKER);
+        if (at < 0) return;
+        int from = at + MARKER.length();
+        int to = from;
+        while (to < data.length() && Character.isDigit(data.charAt(to))) to++;
+        int n = Integer.parseInt(data, from, to, 10);
+        lags.record(Math.max(0, acceptedAtMillis - scheduledAtMillis[n]));
+        lastAcceptedAt.accumulateAndGet(acceptedAtMillis, Math::max);
+    }
+
+    private void report(ConfigurableApplicationContext context, List<FakeSmtpServer> servers, int subscribers,
+                        int topics, int contents, long expected, Map<String, Long> statuses) {
+        long[] sorted = lags.sorted();
+        long windowMillis = Math.max(1, lastAcceptedAt.get() - scheduledAtMillis[0]);
+
+        System.out.println();
+        System.out.printf("Load test   subscribers=%d topics=%d contents=%d options=%s%n",
+                subscribers, topics, contents, options);
+        System.out.printf("Content     %s%n", statuses);
+        System.out.printf("SMTP        accepted=%d of %d expected%n",
+                servers.stream().mapToLong(FakeSmtpServer::recipients).sum(), expected);
+        for (int p = 0; p < servers.size(); p++) {
+            FakeSmtpServer smtp = servers.get(p);
+            System.out.printf("  server %d  accepted=%d rejectedRecipients=%d deferred=%d throttled=%d"
+                            + " connections=%d refused=%d%n",
+                    p, smtp.recipients(), smtp.rejectedRecipients(), smtp.deferredMessages(),
+                    smtp.throttledMessages(), smtp.connections(), smtp.refusedConnections());
+        }
+        System.out.printf("Throughput  %.1f emails/s over %d ms (first scheduledTime to last accepted message)%n",
+                sorted.length * 1000.0 / windowMillis, windowMillis);
+        System.out.printf("Delivery lag ms  p50=%d p90=%d p99=%d p99.9=%d max=%d%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted.length == 0 ? 0 : sorted[sorted.length - 1]);
+
+        long count = 0;
+        double totalMillis = 0;
+        double maxMillis = 0;
+        for (Timer timer : context.getBean(MeterRegistry.class).find("newsletter.dispatch.lag").timers()) {
+            count += timer.count();
+            totalMillis += timer.totalTime(TimeUnit.MILLISECONDS);
+            maxMillis = Math.max(maxMillis, timer.max(TimeUnit.MILLISECONDS));
+        }
+        System.out.printf("Fan-out start lag ms  count=%d mean=%.1f max=%.1f%n",
+                count, count == 0 ? 0 : totalMillis / count, maxMillis);
+        Gauge limit = context.getBean(MeterRegistry.class).find("newsletter.fanout.limit").gauge();
+        if (limit != null) System.out.printf("Concurrency limit  final=%.1f%n", limit.value());
+        double failovers = context.getBean(MeterRegistry.class).find("newsletter.email.failovers").counters().stream()
+                .mapToDouble(Counter::count).sum();
+        if (servers.size() > 1) System.out.printf("Provider failovers  recipients=%.0f%n", failovers);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private JsonNode post(String path, String contentType, String body) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    private JsonNode get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build());
+    }
+
+    private JsonNode send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " returned "
+                    + response.statusCode() + ": " + response.body());
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private String json(Object value) throws IOException {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private long longOption(String name) {
+        return Long.parseLong(options.get(name));
+    }
+
+    // Lags of every accepted message, appended from the SMTP session threads
+    private static final class LagRecorder {
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void record(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
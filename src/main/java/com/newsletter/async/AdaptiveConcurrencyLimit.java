@@ -0,0 +1,95 @@
+package com.newsletter.async;
+
+/**
+ * AIMD limit on in-flight send batches, steered by the per-message latency the mail server shows.
+ * While the smoothed latency stays within latencyTolerance times the baseline (the lowest latency seen,
+ * drifting slowly towards what is observed), every finished batch adds 1/limit, i.e. about one per round
+ * trip. A latency spike or a pushback from the server multiplies the limit by backoffRatio; batches that
+ * started before the last cut do not cut again, so one congestion event costs one cut.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private static final double SMOOTHING = 0.2;
+    // Lets a lasting latency increase become the new baseline over a few thousand batches
+    private static final double BASELINE_DRIFT = 0.001;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight;
+    private double baselineNanos = -1;
+    private double smoothedNanos = -1;
+    private long lastCutNanos = Long.MIN_VALUE;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double latencyTolerance, double backoffRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) return false;
+        inFlight++;
+        return true;
+    }
+
+    synchronized boolean hasCapacity() {
+        return inFlight < (int) limit;
+    }
+
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Ends a batch that started at startNanos and adjusts the limit from its latency.
+     */
+    synchronized void release(long startNanos, int messages, boolean pushback) {
+        long now = System.nanoTime();
+        boolean inUse = inFlight * 2 >= limit;
+        inFlight--;
+
+        double latency = (double) (now - startNanos) / Math.max(1, messages);
+        if (baselineNanos < 0 || latency < baselineNanos) {
+            baselineNanos = latency;
+        } else {
+            baselineNanos += (latency - baselineNanos) * BASELINE_DRIFT;
+        }
+        smoothedNanos = smoothedNanos < 0 ? latency : smoothedNanos + (latency - smoothedNanos) * SMOOTHING;
+
+        if (pushback || smoothedNanos > baselineNanos * latencyTolerance) {
+            if (startNanos > lastCutNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastCutNanos = now;
+            }
+        } else if (inUse) {
+            // Only grow a limit that is actually reached, or it drifts up while the producer is the bottleneck
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Ends a batch that never ran, without a latency sample.
+     */
+    synchronized void cancel() {
+        inFlight--;
+        notifyAll();
+    }
+
+    synchronized double limit() {
+        return limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
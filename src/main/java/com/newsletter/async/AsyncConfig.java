@@ -1,25 +1,60 @@
 package com.newsletter.async;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
 public class AsyncConfig {
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${newsletter.fanout.concurrency:16}")
+    private int concurrency;
+
+    @Value("${newsletter.fanout.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${newsletter.fanout.virtual-threads:false}")
+    private boolean virtualThreads;
+
     @Bean(name = "dispatcherExecutor")
     public Executor dispatcherExecutor() {
+        if (virtualThreads) {
+            try {
+                // One virtual thread per send; concurrency is capped by FanOutExecutor's permits
+                return new VirtualThreadTaskExecutor("dispatcher-");
+            } catch (UnsupportedOperationException e) {
+                // Virtual threads need JDK 21+, fall back to the platform pool
+            }
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);      // number of concurrent threads
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(50);
+        executor.setCorePoolSize(concurrency);      // number of concurrent threads
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
         executor.setThreadNamePrefix("dispatcher-");
+        // Active threads and queue depth are bound by the actuator's executor metrics; rejections are counted here
+        Counter rejected = Counter.builder("newsletter.executor.rejected")
+                .description("Tasks rejected by the executor")
+                .tag("name", "dispatcherExecutor")
+                .register(meterRegistry);
+        ThreadPoolExecutor.AbortPolicy abort = new ThreadPoolExecutor.AbortPolicy();
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejected.increment();
+            abort.rejectedExecution(task, pool);
+        });
         executor.initialize();
         return executor;
     }
 }
-
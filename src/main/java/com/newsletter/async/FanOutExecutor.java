@@ -0,0 +1,120 @@
+package com.newsletter.async;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded front of the dispatcherExecutor.
+ * By default the number of in-flight send batches follows an {@link AdaptiveConcurrencyLimit} between
+ * newsletter.fanout.adaptive.min-limit and newsletter.fanout.concurrency, so it settles near what the mail
+ * server sustains. With newsletter.fanout.adaptive.enabled=false, fixed permits cover running plus queued sends.
+ * Either way the executor never rejects; once no slot is free submit blocks until a send finishes. Producers
+ * check {@link #hasCapacity} before taking rate tokens for a batch and yield instead, so that only happens when
+ * the adaptive limit is cut in between.
+ */
+@Component
+public class FanOutExecutor {
+
+    private final Executor executor;
+    // Exactly one of permits and limit is set
+    private final Semaphore permits;
+    private final AdaptiveConcurrencyLimit limit;
+    private final Counter saturated;
+
+    public FanOutExecutor(@Qualifier("dispatcherExecutor") Executor executor,
+                          @Value("${newsletter.fanout.concurrency:16}") int concurrency,
+                          @Value("${newsletter.fanout.queue-capacity:1000}") int queueCapacity,
+                          @Value("${newsletter.fanout.adaptive.enabled:true}") boolean adaptive,
+                          @Value("${newsletter.fanout.adaptive.initial-limit:4}") int initialLimit,
+                          @Value("${newsletter.fanout.adaptive.min-limit:1}") int minLimit,
+                          @Value("${newsletter.fanout.adaptive.latency-tolerance:2.0}") double latencyTolerance,
+                          @Value("${newsletter.fanout.adaptive.backoff-ratio:0.9}") double backoffRatio,
+                          MeterRegistry meterRegistry) {
+        this.executor = executor;
+        if (adaptive) {
+            // Never above the thread count, so every admitted batch starts right away and its latency is the server's
+            this.permits = null;
+            this.limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, concurrency, latencyTolerance, backoffRatio);
+            Gauge.builder("newsletter.fanout.limit", limit, AdaptiveConcurrencyLimit::limit)
+                    .description("Current adaptive limit on in-flight send batches")
+                    .register(meterRegistry);
+            Gauge.builder("newsletter.fanout.inflight", limit, AdaptiveConcurrencyLimit::inFlight)
+                    .description("Send batches in flight")
+                    .register(meterRegistry);
+        } else {
+            // Virtual threads have no queue: every permit is a running send
+            this.permits = new Semaphore(executor instanceof VirtualThreadTaskExecutor
+                    ? concurrency
+                    : concurrency + queueCapacity);
+            this.limit = null;
+            Gauge.builder("newsletter.fanout.permits.available", permits, Semaphore::availablePermits)
+                    .description("Free running plus queued send slots")
+                    .register(meterRegistry);
+        }
+        this.saturated = Counter.builder("newsletter.fanout.saturated")
+                .description("Submissions that had to wait for a free slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a send of the given number of messages on the dispatcherExecutor, blocking the caller while the stage
+     * is saturated. The send returns whether the mail server pushed back, see {@link
+     * com.newsletter.service.EmailSenderService#isPushback}.
+     */
+    public CompletableFuture<Void> submit(int messages, BooleanSupplier send) {
+        try {
+            if (!tryAcquire()) {
+                saturated.increment();
+                acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        try {
+            if (limit == null) {
+                return CompletableFuture.runAsync(send::getAsBoolean, executor).whenComplete((v, ex) -> permits.release());
+            }
+            return CompletableFuture.runAsync(() -> {
+                long start = System.nanoTime();
+                boolean pushback = false;
+                try {
+                    pushback = send.getAsBoolean();
+                } finally {
+                    limit.release(start, messages, pushback);
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            if (limit == null) permits.release();
+            else limit.cancel();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Whether a submit would start right away.
+     */
+    public boolean hasCapacity() {
+        return limit == null ? permits.availablePermits() > 0 : limit.hasCapacity();
+    }
+
+    private boolean tryAcquire() {
+        return limit == null ? permits.tryAcquire() : limit.tryAcquire();
+    }
+
+    private void acquire() throws InterruptedException {
+        if (limit == null) permits.acquire();
+        else limit.acquire();
+    }
+}
@@ -0,0 +1,45 @@
+package com.newsletter.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.newsletter.service.SubscriberService;
+import com.newsletter.service.TopicService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    @Autowired
+    private TopicService topicService;
+
+    @Autowired
+    private SubscriberService subscriberService;
+
+    /**
+     * Hit/miss/eviction statistics of the topic cache and the subscriber-roster index, and the index's size
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(Map.of(
+                "topics", toMap(topicService.cacheStats()),
+                "rosters", toMap(subscriberService.rosterCacheStats()),
+                "rosterIndex", subscriberService.rosterIndexFootprint()
+        ));
+    }
+
+    private static Map<String, Object> toMap(CacheStats stats) {
+        return Map.of(
+                "hits", stats.hitCount(),
+                "misses", stats.missCount(),
+                "hitRate", stats.hitRate(),
+                "evictions", stats.evictionCount(),
+                "evictedWeight", stats.evictionWeight()
+        );
+    }
+}
@@ -1,15 +1,21 @@
 package com.newsletter.controller;
 
 import com.newsletter.dto.ContentRequest;
-import com.newsletter.dto.ContentResponse;
+import com.newsletter.ingest.ContentImportService;
+import com.newsletter.ingest.ImportJob;
+import com.newsletter.ingest.IngestJobService;
 import com.newsletter.model.Content;
 import com.newsletter.model.Status;
-import com.newsletter.repository.TopicRepository;
 import com.newsletter.service.ContentService;
+import com.newsletter.service.TopicService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.*;
 
 @RestController
@@ -19,12 +25,16 @@ public class ContentController {
     @Autowired
     private ContentService contentService;
     @Autowired
-    private TopicRepository topicRepository;
+    private TopicService topicService;
+    @Autowired
+    private ContentImportService contentImportService;
+    @Autowired
+    private IngestJobService ingestJobService;
 
     // Single content creation
     @PostMapping
     public ResponseEntity<?> create(@RequestBody ContentRequest request) {
-        return topicRepository.findById(request.getTopicId())
+        return topicService.findById(request.getTopicId())
                 .<ResponseEntity<?>>map(topic -> {
                     Content content = new Content(
                             null,
@@ -34,6 +44,7 @@ public class ContentController {
                             false,
                             topic
                     );
+                    content.setPriority(request.getPriority());
                     Content saved = contentService.save(content);
                     return ResponseEntity.ok(saved);
                 })
@@ -42,35 +53,17 @@ public class ContentController {
                         .body(Map.of("error", "Topic not found")));
     }
 
-    // Bulk content creation
-    @PostMapping("/bulk")
-    public ResponseEntity<List<ContentResponse>> createBulk(@RequestBody List<ContentRequest> requests) {
-        List<Content> contentsToSave = new ArrayList<>();
-        List<ContentResponse> responses = new ArrayList<>();
-
-        for (ContentRequest req : requests) {
-            topicRepository.findById(req.getTopicId()).ifPresentOrElse(topic -> {
-                contentsToSave.add(new Content(
-                        null,
-                        Status.PENDING,
-                        req.getText(),
-                        req.getScheduledTime(),
-                        false,
-                        topic
-                ));
-                responses.add(new ContentResponse(req.getText(), req.getTopicId(), "QUEUED_FOR_SAVE"));
-            }, () -> responses.add(new ContentResponse(req.getText(), req.getTopicId(), "TOPIC_NOT_FOUND")));
-        }
-
-        if (!contentsToSave.isEmpty()) {
-            contentService.saveAll(contentsToSave);
-            responses.forEach(r -> {
-                if ("QUEUED_FOR_SAVE".equals(r.getStatus())) {
-                    r.setStatus("SAVED");
-                }
-            });
-        }
-
-        return ResponseEntity.ok(responses);
+    // Bulk content creation: a JSON array of content requests, processed as a background job
+    @PostMapping(value = "/bulk", consumes = "application/json")
+    public ResponseEntity<?> createBulk(HttpServletRequest request) throws IOException {
+        Optional<ImportJob> job = ingestJobService.submit("content", ContentImportService.JSON,
+                request.getInputStream(), contentImportService::run);
+        return job.<ResponseEntity<?>>map(j -> ResponseEntity.accepted()
+                        .location(URI.create("/api/jobs/" + j.getId()))
+                        .body(j))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                        "status", "INGEST_QUEUE_FULL",
+                        "message", "All ingestion workers are busy; retry later."
+                )));
     }
 }
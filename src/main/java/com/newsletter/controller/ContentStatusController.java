@@ -1,12 +1,22 @@
 package com.newsletter.controller;
 
+import com.newsletter.dto.ContentStatusFilter;
+import com.newsletter.dto.ContentStatusPage;
+import com.newsletter.dto.ContentStatusView;
+import com.newsletter.dto.StatusCount;
 import com.newsletter.model.Content;
+import com.newsletter.model.Status;
 import com.newsletter.repository.ContentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/status")
@@ -15,12 +25,21 @@ public class ContentStatusController {
     @Autowired
     private ContentRepository contentRepository;
 
+    @Value("${newsletter.status.max-page-size:1000}")
+    private int maxPageSize;
+
     /**
-     * Get all content with their sent status
+     * Get a page of content statuses, filtered by status, topic and scheduled time range
      */
     @GetMapping
-    public ResponseEntity<List<Content>> getAllContentStatus() {
-        return ResponseEntity.ok(contentRepository.findAll());
+    public ResponseEntity<ContentStatusPage> getAllContentStatus(
+            @RequestParam(required = false) Status status,
+            @RequestParam(required = false) Long topicId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(page(new ContentStatusFilter(status, null, topicId, from, to), afterId, limit));
     }
 
     /**
@@ -34,24 +53,49 @@ public class ContentStatusController {
     }
 
     /**
-     * Get only unsent content (pending newsletters)
+     * Get a page of unsent content (pending newsletters)
      */
     @GetMapping("/pending")
-    public ResponseEntity<List<Content>> getPendingContent() {
-        return ResponseEntity.ok(contentRepository.findAll()
-                .stream()
-                .filter(content -> !content.isSent())
-                .toList());
+    public ResponseEntity<ContentStatusPage> getPendingContent(
+            @RequestParam(required = false) Long topicId,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(page(new ContentStatusFilter(null, false, topicId, null, null), afterId, limit));
     }
 
     /**
-     * Get only sent content
+     * Get a page of sent content
      */
     @GetMapping("/sent")
-    public ResponseEntity<List<Content>> getSentContent() {
-        return ResponseEntity.ok(contentRepository.findAll()
-                .stream()
-                .filter(Content::isSent)
-                .toList());
+    public ResponseEntity<ContentStatusPage> getSentContent(
+            @RequestParam(required = false) Long topicId,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(page(new ContentStatusFilter(null, true, topicId, null, null), afterId, limit));
+    }
+
+    /**
+     * Get per-status and per-topic content counts, aggregated in the database
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<Map<String, Object>> getSummary() {
+        Map<Status, Long> byStatus = new LinkedHashMap<>();
+        long total = 0;
+        for (StatusCount count : contentRepository.countByStatus()) {
+            byStatus.put(count.getStatus(), count.getCount());
+            total += count.getCount();
+        }
+        return ResponseEntity.ok(Map.of(
+                "total", total,
+                "byStatus", byStatus,
+                "byTopic", contentRepository.countByTopicAndStatus()
+        ));
+    }
+
+    private ContentStatusPage page(ContentStatusFilter filter, long afterId, int limit) {
+        List<ContentStatusView> items = contentRepository.findStatusPage(
+                filter, afterId, Math.max(1, Math.min(limit, maxPageSize)));
+        Long nextAfterId = items.isEmpty() ? null : items.get(items.size() - 1).getId();
+        return new ContentStatusPage(items, nextAfterId);
     }
 }
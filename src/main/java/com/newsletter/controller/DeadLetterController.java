@@ -0,0 +1,66 @@
+package com.newsletter.controller;
+
+import com.newsletter.model.DeadLetter;
+import com.newsletter.repository.DeadLetterRepository;
+import com.newsletter.service.DeliveryRetryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/dead-letters")
+public class DeadLetterController {
+
+    @Autowired
+    private DeadLetterRepository deadLetterRepository;
+
+    @Autowired
+    private DeliveryRetryService retryService;
+
+    @Value("${newsletter.status.max-page-size:1000}")
+    private int maxPageSize;
+
+    /**
+     * Get a page of recipients that exhausted their retries, optionally for one content
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getDeadLetters(
+            @RequestParam(required = false) Long contentId,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
+        PageRequest page = PageRequest.ofSize(Math.max(1, Math.min(limit, maxPageSize)));
+        List<DeadLetter> items = contentId == null
+                ? deadLetterRepository.findPage(afterId, page)
+                : deadLetterRepository.findPageByContent(contentId, afterId, page);
+        Long nextAfterId = items.isEmpty() ? null : items.get(items.size() - 1).getId();
+        return ResponseEntity.ok(nextAfterId == null
+                ? Map.of("items", items)
+                : Map.of("items", items, "nextAfterId", nextAfterId));
+    }
+
+    /**
+     * Put one dead letter back on the retry queue
+     */
+    @PostMapping("/{id}/replay")
+    public ResponseEntity<Map<String, Object>> replay(@PathVariable Long id) {
+        return retryService.replay(id)
+                ? ResponseEntity.ok(Map.of("id", id, "status", "REQUEUED"))
+                : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Put every dead letter of a content back on the retry queue
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<Map<String, Object>> replayContent(@RequestParam Long contentId) {
+        return ResponseEntity.ok(Map.of(
+                "contentId", contentId,
+                "requeued", retryService.replayContent(contentId)
+        ));
+    }
+}
@@ -0,0 +1,23 @@
+package com.newsletter.controller;
+
+import com.newsletter.ingest.ImportJob;
+import com.newsletter.ingest.IngestJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    @Autowired
+    private IngestJobService ingestJobService;
+
+    // Progress, rejected rows and throughput of a bulk ingestion job
+    @GetMapping("/{id}")
+    public ResponseEntity<ImportJob> getJob(@PathVariable String id) {
+        return ingestJobService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
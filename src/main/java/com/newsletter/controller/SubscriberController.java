@@ -1,15 +1,24 @@
 package com.newsletter.controller;
 
 import com.newsletter.dto.SubscriberRequest;
+import com.newsletter.ingest.ImportJob;
+import com.newsletter.ingest.IngestJobService;
+import com.newsletter.ingest.SubscriberImportService;
 import com.newsletter.model.Subscriber;
-import com.newsletter.repository.TopicRepository;
 import com.newsletter.service.SubscriberService;
+import com.newsletter.service.TopicService;
+import com.newsletter.template.UnsubscribeTokens;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.HtmlUtils;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.*;
 
 @RestController
@@ -19,12 +28,18 @@ public class SubscriberController {
     @Autowired
     private SubscriberService subscriberService;
     @Autowired
-    private TopicRepository topicRepo;
+    private TopicService topicService;
+    @Autowired
+    private SubscriberImportService importService;
+    @Autowired
+    private IngestJobService ingestJobService;
+    @Autowired
+    private UnsubscribeTokens unsubscribeTokens;
 
     // Single subscriber creation
     @PostMapping
     public ResponseEntity<?> createSingle(@RequestBody SubscriberRequest request) {
-        return topicRepo.findById(request.getTopicId())
+        return topicService.findById(request.getTopicId())
                 .<ResponseEntity<?>>map(topic -> {
                     try {
                         Subscriber saved = subscriberService.save(
@@ -57,71 +72,71 @@ public class SubscriberController {
                 )));
     }
 
-    // Bulk subscriber creation
-    @PostMapping("/bulk")
-    public ResponseEntity<Map<String, Object>> createBulk(@RequestBody List<SubscriberRequest> requests) {
-        Set<String> uniqueKeys = new HashSet<>();
-        List<Subscriber> toSave = new ArrayList<>();
-        List<Map<String, Object>> details = new ArrayList<>();
-
-        for (SubscriberRequest req : requests) {
-            String key = req.getEmail() + "-" + req.getTopicId();
-
-            if (!uniqueKeys.add(key)) {
-                details.add(Map.of(
-                        "email", req.getEmail(),
-                        "topicId", req.getTopicId(),
-                        "status", "DUPLICATE_IN_REQUEST"
-                ));
-                continue;
-            }
-
-            topicRepo.findById(req.getTopicId()).ifPresentOrElse(topic -> {
-                toSave.add(new Subscriber(null, req.getEmail(), topic));
-            }, () -> details.add(Map.of(
-                    "email", req.getEmail(),
-                    "topicId", req.getTopicId(),
-                    "status", "TOPIC_NOT_FOUND"
-            )));
+    // Target of {{unsubscribeUrl}}: only shows a confirmation form, since link scanners and prefetchers follow GETs
+    @GetMapping(value = "/unsubscribe", produces = MediaType.TEXT_HTML_VALUE)
+    public ResponseEntity<String> confirmUnsubscribe(@RequestParam Long topicId, @RequestParam String email,
+                                                     @RequestParam(required = false) String token) {
+        if (!unsubscribeTokens.verify(topicId, email, token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("<p>This unsubscribe link is not valid.</p>");
         }
+        return ResponseEntity.ok("<form method=\"post\" action=\"unsubscribe\">"
+                + "<p>Unsubscribe " + HtmlUtils.htmlEscape(email) + " from this newsletter?</p>"
+                + hidden("topicId", topicId.toString()) + hidden("email", email) + hidden("token", token)
+                + "<button type=\"submit\">Unsubscribe</button></form>");
+    }
 
-        if (toSave.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
-                    "status", "NO_VALID_SUBSCRIBERS",
-                    "message", "No valid subscribers to save.",
-                    "details", details
+    // Confirmation form and one-click unsubscribe from mail clients (RFC 8058); the token signs (topicId, email)
+    @PostMapping("/unsubscribe")
+    public ResponseEntity<?> unsubscribe(@RequestParam Long topicId, @RequestParam String email,
+                                         @RequestParam(required = false) String token) {
+        if (!unsubscribeTokens.verify(topicId, email, token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "email", email,
+                    "topicId", topicId,
+                    "status", "INVALID_TOKEN"
             ));
         }
+        if (!subscriberService.unsubscribe(topicId, email)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "email", email,
+                    "topicId", topicId,
+                    "status", "NOT_SUBSCRIBED"
+            ));
+        }
+        return ResponseEntity.ok(Map.of(
+                "email", email,
+                "topicId", topicId,
+                "status", "UNSUBSCRIBED"
+        ));
+    }
 
-        try {
-            List<Subscriber> savedList = subscriberService.saveAll(toSave);
-            for (Subscriber s : savedList) {
-                details.add(Map.of(
-                        "email", s.getEmail(),
-                        "topicId", s.getTopic().getId(),
-                        "status", "SUBSCRIBED"
-                ));
-            }
+    // Bulk subscriber creation: a JSON array of {"email":..,"topicId":..}, processed as a background job
+    @PostMapping(value = "/bulk", consumes = "application/json")
+    public ResponseEntity<?> createBulk(HttpServletRequest request) throws IOException {
+        return accepted(ingestJobService.submit("subscribers", SubscriberImportService.JSON,
+                request.getInputStream(), importService::run));
+    }
 
-            return ResponseEntity.ok(Map.of(
-                    "status", "SUCCESS",
-                    "message", "All subscribers saved successfully.",
-                    "subscribedCount", savedList.size(),
-                    "details", details
-            ));
+    // Streaming import: NDJSON ({"email":..,"topicId":..} per line) or CSV (email,topicId), processed as a background job
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<?> importSubscribers(HttpServletRequest request) throws IOException {
+        String format = request.getContentType().startsWith("text/csv")
+                ? SubscriberImportService.CSV
+                : SubscriberImportService.NDJSON;
+        return accepted(ingestJobService.submit("subscribers", format, request.getInputStream(), importService::run));
+    }
 
-        } catch (DataIntegrityViolationException ex) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
-                    "status", "PARTIAL_FAILURE",
-                    "message", "Some subscribers already exist or violated constraints. None were saved.",
-                    "details", details
-            ));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
-                    "status", "FAILED",
-                    "message", e.getMessage(),
-                    "details", details
-            ));
-        }
+    private static String hidden(String name, String value) {
+        return "<input type=\"hidden\" name=\"" + name + "\" value=\"" + HtmlUtils.htmlEscape(value) + "\">";
+    }
+
+    private static ResponseEntity<?> accepted(Optional<ImportJob> job) {
+        return job.<ResponseEntity<?>>map(j -> ResponseEntity.accepted()
+                        .location(URI.create("/api/jobs/" + j.getId()))
+                        .body(j))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                        "status", "INGEST_QUEUE_FULL",
+                        "message", "All ingestion workers are busy; retry later."
+                )));
     }
 }
@@ -1,5 +1,6 @@
 package com.newsletter.dto;
 
+import com.newsletter.model.Priority;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,4 +14,6 @@ public class ContentRequest {
     private String text;
     private Long topicId;
     private LocalDateTime scheduledTime;
+    // Optional; defaults to the topic's priority
+    private Priority priority;
 }
@@ -0,0 +1,22 @@
+package com.newsletter.dto;
+
+import com.newsletter.model.Status;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional filters of a status listing; null fields are not applied.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContentStatusFilter {
+    private Status status;
+    private Boolean sent;
+    private Long topicId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+}
@@ -0,0 +1,18 @@
+package com.newsletter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of a status listing; pass nextAfterId as afterId to fetch the next page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContentStatusPage {
+    private List<ContentStatusView> items;
+    private Long nextAfterId;
+}
@@ -0,0 +1,24 @@
+package com.newsletter.dto;
+
+import com.newsletter.model.Status;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Flat status projection of a content row, without the Topic entity.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContentStatusView {
+    private Long id;
+    private Status status;
+    private String text;
+    private LocalDateTime scheduledTime;
+    private boolean sent;
+    private Long topicId;
+    private String topicName;
+}
@@ -0,0 +1,17 @@
+package com.newsletter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Subscriber projection used by digest fan-outs, which read several topics' rosters ordered by email.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DigestRecipient {
+    private Long id;
+    private String email;
+    private Long topicId;
+}
@@ -0,0 +1,16 @@
+package com.newsletter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Subscriber count and id sum of a topic, compared with an indexed roster to tell whether it is complete.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RosterChecksum {
+    private long count;
+    private long idSum;
+}
@@ -1,5 +1,6 @@
 package com.newsletter.dto;
 
+import com.newsletter.model.Status;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -7,8 +8,7 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class ContentResponse {
-    private String text;
-    private Long topicId;
-    private String status;
+public class StatusCount {
+    private Status status;
+    private long count;
 }
@@ -0,0 +1,16 @@
+package com.newsletter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lightweight id/email projection of a subscriber used during fan-out.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriberEmail {
+    private Long id;
+    private String email;
+}
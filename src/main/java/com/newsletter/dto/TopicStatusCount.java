@@ -0,0 +1,16 @@
+package com.newsletter.dto;
+
+import com.newsletter.model.Status;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopicStatusCount {
+    private Long topicId;
+    private String topicName;
+    private Status status;
+    private long count;
+}
@@ -0,0 +1,122 @@
+package com.newsletter.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only store of distinct email addresses as UTF-8 bytes in one array. Each address is stored once
+ * and referred to by an int; an address subscribed to several topics shares its bytes. Not thread-safe.
+ */
+final class EmailArena {
+
+    private byte[] bytes;
+    private int byteCount;
+    // offsets[ref] .. offsets[ref + 1] are the bytes of ref
+    private int[] offsets;
+    private int count;
+    // Open addressing over refs + 1, 0 marks a free slot
+    private int[] slots;
+
+    EmailArena() {
+        this(new byte[1024], 0, new int[65], 0);
+    }
+
+    private EmailArena(byte[] bytes, int byteCount, int[] offsets, int count) {
+        this.bytes = bytes;
+        this.byteCount = byteCount;
+        this.offsets = offsets;
+        this.count = count;
+        this.slots = new int[Math.max(64, Integer.highestOneBit(Math.max(1, count)) << 2)];
+        for (int ref = 0; ref < count; ref++) {
+            insertSlot(ref, hash(bytes, offsets[ref], offsets[ref + 1]));
+        }
+    }
+
+    /**
+     * Restores an arena from its snapshot form; offsets has count + 1 entries.
+     */
+    static EmailArena of(byte[] bytes, int[] offsets, int count) {
+        return new EmailArena(bytes, offsets[count], offsets, count);
+    }
+
+    /**
+     * The reference of the address, adding it if it is not stored yet.
+     */
+    int intern(String email) {
+        byte[] encoded = email.getBytes(StandardCharsets.UTF_8);
+        return intern(encoded, 0, encoded.length);
+    }
+
+    /**
+     * The reference of the address encoded in data[from, to), adding it if it is not stored yet.
+     */
+    int intern(byte[] data, int from, int to) {
+        int length = to - from;
+        int hash = hash(data, from, to);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) break;
+            int ref = entry - 1;
+            if (Arrays.equals(bytes, offsets[ref], offsets[ref + 1], data, from, to)) return ref;
+        }
+
+        if (byteCount + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(byteCount + length, bytes.length + (bytes.length >> 1)));
+        }
+        if (count + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length + (offsets.length >> 1) + 1);
+        }
+        System.arraycopy(data, from, bytes, byteCount, length);
+        offsets[count] = byteCount;
+        byteCount += length;
+        offsets[count + 1] = byteCount;
+        int ref = count++;
+
+        if (count * 2 > slots.length) {
+            slots = new int[slots.length << 1];
+            for (int i = 0; i < count; i++) {
+                insertSlot(i, hash(bytes, offsets[i], offsets[i + 1]));
+            }
+        } else {
+            insertSlot(ref, hash);
+        }
+        return ref;
+    }
+
+    String email(int ref) {
+        return new String(bytes, offsets[ref], offsets[ref + 1] - offsets[ref], StandardCharsets.UTF_8);
+    }
+
+    int size() {
+        return count;
+    }
+
+    int byteCount() {
+        return byteCount;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    private void insertSlot(int ref, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = ref + 1;
+    }
+
+    private static int hash(byte[] data, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + data[i];
+        }
+        // Spread the low bits, which pick the slot
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,100 @@
+package com.newsletter.index;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory-mapped file form of the subscriber index. Arrays are copied in and out with bulk buffer views,
+ * so loading a snapshot costs about a memcpy of its size.
+ *
+ * Layout: magic, format, email count, email bytes, offsets[count + 1], bytes, topic count, then per topic:
+ * topic id, loadedAtMillis, size, ids[size], emailRefs[size].
+ */
+final class IndexSnapshot {
+
+    private static final int MAGIC = 0x4E534958;
+    private static final int FORMAT = 1;
+
+    final EmailArena arena;
+    final Map<Long, TopicRoster> rosters;
+
+    private IndexSnapshot(EmailArena arena, Map<Long, TopicRoster> rosters) {
+        this.arena = arena;
+        this.rosters = rosters;
+    }
+
+    /**
+     * Writes to a sibling temp file and moves it over the target, so a crash never leaves a torn snapshot.
+     */
+    static void write(Path path, EmailArena arena, Map<Long, TopicRoster> rosters) throws IOException {
+        long length = 4L * 4 + 4L * (arena.size() + 1) + arena.byteCount() + 4;
+        for (TopicRoster roster : rosters.values()) {
+            length += 8 + 8 + 4 + 12L * roster.size();
+        }
+
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.putInt(MAGIC).putInt(FORMAT).putInt(arena.size()).putInt(arena.byteCount());
+            buffer.asIntBuffer().put(arena.offsets(), 0, arena.size() + 1);
+            buffer.position(buffer.position() + 4 * (arena.size() + 1));
+            buffer.put(arena.bytes(), 0, arena.byteCount());
+
+            buffer.putInt(rosters.size());
+            for (Map.Entry<Long, TopicRoster> entry : rosters.entrySet()) {
+                TopicRoster roster = entry.getValue();
+                buffer.putLong(entry.getKey()).putLong(roster.loadedAtMillis()).putInt(roster.size());
+                buffer.asLongBuffer().put(roster.ids(), 0, roster.size());
+                buffer.position(buffer.position() + 8 * roster.size());
+                buffer.asIntBuffer().put(roster.emailRefs(), 0, roster.size());
+                buffer.position(buffer.position() + 4 * roster.size());
+            }
+            buffer.force();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot, or returns null if there is none or it was written in another format.
+     */
+    static IndexSnapshot read(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) return null;
+
+            int emailCount = buffer.getInt();
+            int byteCount = buffer.getInt();
+            int[] offsets = new int[emailCount + 1];
+            buffer.asIntBuffer().get(offsets);
+            buffer.position(buffer.position() + 4 * offsets.length);
+            byte[] bytes = new byte[byteCount];
+            buffer.get(bytes);
+
+            int topicCount = buffer.getInt();
+            Map<Long, TopicRoster> rosters = new LinkedHashMap<>();
+            for (int t = 0; t < topicCount; t++) {
+                long topicId = buffer.getLong();
+                long loadedAtMillis = buffer.getLong();
+                int size = buffer.getInt();
+                long[] ids = new long[size];
+                buffer.asLongBuffer().get(ids);
+                buffer.position(buffer.position() + 8 * size);
+                int[] emailRefs = new int[size];
+                buffer.asIntBuffer().get(emailRefs);
+                buffer.position(buffer.position() + 4 * size);
+                rosters.put(topicId, new TopicRoster(ids, emailRefs, size, loadedAtMillis));
+            }
+            return new IndexSnapshot(EmailArena.of(bytes, offsets, emailCount), rosters);
+        }
+    }
+}
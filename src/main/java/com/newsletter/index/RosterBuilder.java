@@ -0,0 +1,100 @@
+package com.newsletter.index;
+
+import com.newsletter.dto.SubscriberEmail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A topic's roster accumulated page by page during a full database pass, as subscriber ids and UTF-8 address
+ * bytes, until it is {@link SubscriberIndex#install installed}. It is abandoned, releasing its arrays, as soon as
+ * the topic is written to or the roster outgrows the index. Not thread-safe.
+ */
+public final class RosterBuilder {
+
+    private final SubscriberIndex index;
+    private final Long topicId;
+    private final long version;
+    private final long maxSize;
+
+    private long[] ids;
+    private byte[] bytes;
+    // offsets[i] .. offsets[i + 1] are the address bytes of ids[i]
+    private int[] offsets;
+    private int size;
+    private boolean abandoned;
+
+    RosterBuilder(SubscriberIndex index, Long topicId, long version, long maxSize) {
+        this.index = index;
+        this.topicId = topicId;
+        this.version = version;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Appends the next page in id order. Returns false once the builder has been abandoned.
+     */
+    public boolean add(List<SubscriberEmail> page) {
+        if (abandoned) return false;
+        if (size + (long) page.size() > maxSize || index.version(topicId) != version) {
+            abandon();
+            return false;
+        }
+        if (ids == null) {
+            ids = new long[Math.max(1024, page.size())];
+            offsets = new int[ids.length + 1];
+            bytes = new byte[ids.length * 32];
+        } else if (size + page.size() > ids.length) {
+            int capacity = Math.max(size + page.size(), ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+        }
+        for (SubscriberEmail subscriber : page) {
+            byte[] encoded = subscriber.getEmail().getBytes(StandardCharsets.UTF_8);
+            int byteCount = offsets[size];
+            if (byteCount + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(byteCount + encoded.length, bytes.length + (bytes.length >> 1)));
+            }
+            System.arraycopy(encoded, 0, bytes, byteCount, encoded.length);
+            ids[size] = subscriber.getId();
+            offsets[++size] = byteCount + encoded.length;
+        }
+        return true;
+    }
+
+    void abandon() {
+        abandoned = true;
+        ids = null;
+        bytes = null;
+        offsets = null;
+    }
+
+    boolean isAbandoned() {
+        return abandoned;
+    }
+
+    Long topicId() {
+        return topicId;
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long id(int index) {
+        return ids[index];
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+}
@@ -0,0 +1,382 @@
+package com.newsletter.index;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.newsletter.dto.RosterChecksum;
+import com.newsletter.dto.SubscriberEmail;
+import com.newsletter.model.Subscriber;
+import com.newsletter.repository.SubscriberRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact in-memory index of topic rosters: per topic a sorted long[] of subscriber ids with int references into
+ * one deduplicated UTF-8 email arena. A roster is indexed by a full fan-out pass over it and then kept up to date
+ * from subscriber saves on this node. Before serving a fan-out it catches up the subscribers with higher ids from
+ * the database. Every newsletter.index.verify-interval-ms each roster is checked against the topic's subscriber
+ * count and id sum there, an index-only query kept off the fan-out path; a roster that differs (ids handed out
+ * below it by another node, subscribers removed on another node) is dropped and fan-outs of the topic stream from
+ * the database until it is indexed again. The index is written to a memory-mapped snapshot, so a restarted node
+ * serves fan-outs without reloading every roster. Rosters older than newsletter.index.max-age-seconds are
+ * dropped and reloaded.
+ */
+@Slf4j
+@Component
+public class SubscriberIndex {
+
+    private static final int CATCH_UP_PAGE = 1000;
+    private static final int MIN_COMPACT_EMAILS = 100_000;
+
+    @Autowired
+    private SubscriberRepository subscriberRepository;
+
+    @Value("${newsletter.index.max-subscribers:5000000}")
+    private long maxSubscribers;
+
+    @Value("${newsletter.index.max-age-seconds:3600}")
+    private long maxAgeSeconds;
+
+    // Empty disables the snapshot
+    @Value("${newsletter.index.snapshot-path:}")
+    private String snapshotPath;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, TopicRoster> rosters = new HashMap<>();
+    // Bumped on every save to a topic that is not indexed, so a roster loaded concurrently is never installed
+    private final Map<Long, Long> versions = new HashMap<>();
+    private EmailArena arena = new EmailArena();
+    private long indexed;
+    // Set under the write lock, cleared by the snapshot under the read lock
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictedWeight = new LongAdder();
+
+    /**
+     * Restores the snapshot. Subscribers added since it was written are caught up from the database, and a roster
+     * is kept only if it then matches the database.
+     */
+    @PostConstruct
+    void restore() {
+        if (snapshotPath.isBlank()) return;
+        IndexSnapshot snapshot;
+        try {
+            snapshot = IndexSnapshot.read(Path.of(snapshotPath));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Subscriber index snapshot unreadable path={} error={}", snapshotPath, e.toString());
+            return;
+        }
+        if (snapshot == null) return;
+
+        lock.writeLock().lock();
+        try {
+            arena = snapshot.arena;
+            snapshot.rosters.forEach((topicId, roster) -> {
+                if (isExpired(roster)) return;
+                rosters.put(topicId, roster);
+                indexed += roster.size();
+                if (catchUp(topicId, roster)) verify(topicId, roster);
+            });
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Subscriber index restored topics={} subscribers={} path={}", rosters.size(), indexed, snapshotPath);
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${newsletter.index.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        if (snapshotPath.isBlank()) return;
+        lock.readLock().lock();
+        try {
+            if (!dirty.compareAndSet(true, false)) return;
+            IndexSnapshot.write(Path.of(snapshotPath), arena, rosters);
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            log.warn("Subscriber index snapshot failed path={} error={}", snapshotPath, e.toString());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks every roster against the database and drops the expired ones and those that differ.
+     */
+    @Scheduled(fixedDelayString = "${newsletter.index.verify-interval-ms:60000}")
+    public void verifyRosters() {
+        Map<Long, TopicRoster> current;
+        lock.readLock().lock();
+        try {
+            current = new HashMap<>(rosters);
+        } finally {
+            lock.readLock().unlock();
+        }
+        current.forEach((topicId, roster) -> {
+            if (isExpired(roster)) {
+                lock.writeLock().lock();
+                try {
+                    if (rosters.get(topicId) == roster) drop(topicId, roster);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } else if (catchUp(topicId, roster)) {
+                verify(topicId, roster);
+            }
+        });
+    }
+
+    /**
+     * Whether fan-outs of the topic can be served from the index: the roster is caught up from the database and
+     * dropped if it is past its maximum age. Its checksum is left to {@link #verifyRosters}.
+     */
+    public boolean serves(Long topicId) {
+        TopicRoster roster;
+        lock.readLock().lock();
+        try {
+            roster = rosters.get(topicId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (roster != null && !isExpired(roster) && catchUp(topicId, roster)) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        if (roster != null) {
+            lock.writeLock().lock();
+            try {
+                if (rosters.get(topicId) == roster && isExpired(roster)) drop(topicId, roster);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Up to limit subscribers of the topic with ids above afterId, in id order;
+     * null if the topic is not indexed (any more).
+     */
+    public List<SubscriberEmail> page(Long topicId, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            TopicRoster roster = rosters.get(topicId);
+            if (roster == null) return null;
+            int from = roster.firstIndexAfter(afterId);
+            int to = (int) Math.min(roster.size(), (long) from + limit);
+            List<SubscriberEmail> page = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                page.add(new SubscriberEmail(roster.id(i), arena.email(roster.emailRef(i))));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Version of the topic's roster in this index, bumped by every save while the topic is not indexed.
+     */
+    public long version(Long topicId) {
+        lock.readLock().lock();
+        try {
+            return versions.getOrDefault(topicId, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a roster for a full pass over the topic; must be called before the pass reads its first page.
+     */
+    public RosterBuilder newRoster(Long topicId) {
+        return new RosterBuilder(this, topicId, version(topicId), maxSubscribers);
+    }
+
+    /**
+     * Indexes a roster read in full unless the topic was written since the builder was started, or it does not fit.
+     */
+    public boolean install(RosterBuilder roster) {
+        if (roster.isAbandoned()) return false;
+        lock.writeLock().lock();
+        try {
+            Long topicId = roster.topicId();
+            if (rosters.containsKey(topicId) || versions.getOrDefault(topicId, 0L) != roster.version()) return false;
+            if (indexed + roster.size() > maxSubscribers) return false;
+
+            TopicRoster indexedRoster = new TopicRoster(roster.size(), System.currentTimeMillis());
+            int[] offsets = roster.offsets();
+            for (int i = 0; i < roster.size(); i++) {
+                indexedRoster.add(roster.id(i), arena.intern(roster.bytes(), offsets[i], offsets[i + 1]));
+            }
+            rosters.put(topicId, indexedRoster);
+            indexed += indexedRoster.size();
+            dirty.set(true);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            roster.abandon();
+        }
+    }
+
+    /**
+     * Applies committed subscriber saves: indexed topics get the new subscribers, others a version bump.
+     */
+    public void added(Collection<Subscriber> subscribers) {
+        lock.writeLock().lock();
+        try {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.getId() == null || subscriber.getTopic() == null || subscriber.getTopic().getId() == null) {
+                    continue;
+                }
+                Long topicId = subscriber.getTopic().getId();
+                TopicRoster roster = rosters.get(topicId);
+                if (roster == null) {
+                    versions.merge(topicId, 1L, Long::sum);
+                } else if (roster.add(subscriber.getId(), arena.intern(subscriber.getEmail()))) {
+                    indexed++;
+                    dirty.set(true);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a committed subscriber removal: the topic's roster is dropped and its version bumped, so a full pass
+     * that may have read the removed subscriber is not installed either. Other nodes drop theirs on their next
+     * checksum pass.
+     */
+    public void removed(Long topicId) {
+        lock.writeLock().lock();
+        try {
+            TopicRoster roster = rosters.get(topicId);
+            if (roster != null) drop(topicId, roster);
+            versions.merge(topicId, 1L, Long::sum);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Served/not served counts of fan-out passes, in the shape of the other cache statistics.
+     */
+    public CacheStats stats() {
+        return CacheStats.of(hits.sum(), misses.sum(), 0, 0, 0, evictions.sum(), evictedWeight.sum());
+    }
+
+    public Map<String, Long> footprint() {
+        lock.readLock().lock();
+        try {
+            Map<String, Long> footprint = new LinkedHashMap<>();
+            footprint.put("topics", (long) rosters.size());
+            footprint.put("subscribers", indexed);
+            footprint.put("emails", (long) arena.size());
+            footprint.put("emailBytes", (long) arena.byteCount());
+            return footprint;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isExpired(TopicRoster roster) {
+        return System.currentTimeMillis() - roster.loadedAtMillis() > maxAgeSeconds * 1000;
+    }
+
+    /**
+     * Adds the subscribers with ids above the roster's highest from the database, a page at a time without
+     * holding the lock over the query. Returns false if the roster was dropped meanwhile.
+     */
+    private boolean catchUp(Long topicId, TopicRoster roster) {
+        long afterId;
+        lock.readLock().lock();
+        try {
+            afterId = roster.maxId();
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<SubscriberEmail> page;
+        do {
+            page = subscriberRepository.findEmailPage(topicId, afterId, PageRequest.ofSize(CATCH_UP_PAGE));
+            lock.writeLock().lock();
+            try {
+                if (rosters.get(topicId) != roster) return false;
+                for (SubscriberEmail subscriber : page) {
+                    if (roster.add(subscriber.getId(), arena.intern(subscriber.getEmail()))) {
+                        indexed++;
+                        dirty.set(true);
+                    }
+                    afterId = subscriber.getId();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } while (page.size() == CATCH_UP_PAGE);
+        return true;
+    }
+
+    /**
+     * Compares the roster with the database's count and id sum of the topic and drops it if they differ.
+     * A save committed between the two reads fails the check too, which only costs one database pass.
+     */
+    private boolean verify(Long topicId, TopicRoster roster) {
+        RosterChecksum checksum = subscriberRepository.findRosterChecksum(topicId);
+        lock.writeLock().lock();
+        try {
+            if (rosters.get(topicId) != roster) return false;
+            if (roster.size() == checksum.getCount() && roster.idSum() == checksum.getIdSum()) return true;
+            log.info("Subscriber index roster stale topicId={} indexed={} database={}",
+                    topicId, roster.size(), checksum.getCount());
+            drop(topicId, roster);
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void drop(Long topicId, TopicRoster roster) {
+        rosters.remove(topicId);
+        indexed -= roster.size();
+        evictions.increment();
+        evictedWeight.add(roster.size());
+        dirty.set(true);
+        compactIfSparse();
+    }
+
+    // Addresses are never removed from the arena; rebuild it once most of them are no longer referenced
+    private void compactIfSparse() {
+        if (arena.size() < MIN_COMPACT_EMAILS || arena.size() <= 2 * indexed) return;
+        EmailArena compacted = new EmailArena();
+        Map<Long, TopicRoster> rebuilt = new HashMap<>();
+        rosters.forEach((topicId, roster) -> {
+            TopicRoster copy = new TopicRoster(roster.size(), roster.loadedAtMillis());
+            for (int i = 0; i < roster.size(); i++) {
+                copy.add(roster.id(i), compacted.intern(arena.email(roster.emailRef(i))));
+            }
+            rebuilt.put(topicId, copy);
+        });
+        arena = compacted;
+        rosters.putAll(rebuilt);
+    }
+}
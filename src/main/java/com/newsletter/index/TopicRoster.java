@@ -0,0 +1,93 @@
+package com.newsletter.index;
+
+import java.util.Arrays;
+
+/**
+ * One topic's subscribers as parallel primitive arrays sorted by subscriber id: the id and the
+ * reference of its address in the {@link EmailArena}. Not thread-safe.
+ */
+final class TopicRoster {
+
+    private long[] ids;
+    private int[] emailRefs;
+    private int size;
+    // Sum of the ids, compared with the database to detect subscribers this node has not seen
+    private long idSum;
+    private final long loadedAtMillis;
+
+    TopicRoster(int capacity, long loadedAtMillis) {
+        this(new long[Math.max(capacity, 16)], new int[Math.max(capacity, 16)], 0, loadedAtMillis);
+    }
+
+    TopicRoster(long[] ids, int[] emailRefs, int size, long loadedAtMillis) {
+        this.ids = ids;
+        this.emailRefs = emailRefs;
+        this.size = size;
+        this.loadedAtMillis = loadedAtMillis;
+        for (int i = 0; i < size; i++) {
+            idSum += ids[i];
+        }
+    }
+
+    /**
+     * Adds the subscriber unless its id is present. Ids mostly arrive in increasing order and are appended.
+     */
+    boolean add(long id, int emailRef) {
+        int index = size > 0 && id > ids[size - 1] ? size : Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0 && index < size) return false;
+        int at = index < 0 ? -index - 1 : index;
+
+        if (size == ids.length) {
+            int capacity = size + (size >> 1) + 1;
+            ids = Arrays.copyOf(ids, capacity);
+            emailRefs = Arrays.copyOf(emailRefs, capacity);
+        }
+        System.arraycopy(ids, at, ids, at + 1, size - at);
+        System.arraycopy(emailRefs, at, emailRefs, at + 1, size - at);
+        ids[at] = id;
+        emailRefs[at] = emailRef;
+        size++;
+        idSum += id;
+        return true;
+    }
+
+    /**
+     * Index of the first subscriber with an id above afterId.
+     */
+    int firstIndexAfter(long afterId) {
+        int index = Arrays.binarySearch(ids, 0, size, afterId);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    long id(int index) {
+        return ids[index];
+    }
+
+    int emailRef(int index) {
+        return emailRefs[index];
+    }
+
+    long[] ids() {
+        return ids;
+    }
+
+    int[] emailRefs() {
+        return emailRefs;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long maxId() {
+        return size == 0 ? 0 : ids[size - 1];
+    }
+
+    long idSum() {
+        return idSum;
+    }
+
+    long loadedAtMillis() {
+        return loadedAtMillis;
+    }
+}
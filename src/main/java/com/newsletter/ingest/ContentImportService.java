@@ -0,0 +1,126 @@
+package com.newsletter.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.newsletter.dto.ContentRequest;
+import com.newsletter.model.Content;
+import com.newsletter.model.Status;
+import com.newsletter.model.Topic;
+import com.newsletter.service.ContentService;
+import com.newsletter.service.TopicService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams content items out of a JSON array body and saves them in chunks, one topic lookup per new topic id.
+ * Rows are numbered by their position in the array. Runs on an ingestion worker, see {@link IngestJobService}.
+ */
+@Service
+public class ContentImportService {
+
+    public static final String JSON = "json";
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private TopicService topicService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${newsletter.import.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Runs the import to completion on the calling thread, updating the job as it goes.
+     */
+    public ImportJob run(ImportJob job, InputStream body) {
+        Map<Long, Topic> topics = new HashMap<>();
+        Set<Long> missingTopics = new HashSet<>();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) throw new IOException("Expected a JSON array");
+            long index = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) throw new IOException("Unterminated JSON array");
+                index++;
+                job.rowRead();
+                JsonNode node = parser.readValueAsTree();
+                ContentRequest request = parse(node);
+                if (request == null) {
+                    job.reject(index, node.toString(), "MALFORMED_ROW");
+                    continue;
+                }
+                chunk.add(new Row(index, request));
+                if (chunk.size() == chunkSize) {
+                    writeChunk(job, chunk, topics, missingTopics);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) writeChunk(job, chunk, topics, missingTopics);
+            job.finish("COMPLETED", null);
+        } catch (IOException | RuntimeException e) {
+            job.fail(e);
+        }
+        return job;
+    }
+
+    private void writeChunk(ImportJob job, List<Row> chunk, Map<Long, Topic> topics, Set<Long> missingTopics) {
+        Set<Long> unknown = new HashSet<>();
+        for (Row row : chunk) {
+            Long topicId = row.request().getTopicId();
+            if (!topics.containsKey(topicId) && !missingTopics.contains(topicId)) unknown.add(topicId);
+        }
+        if (!unknown.isEmpty()) {
+            topics.putAll(topicService.findAllById(unknown));
+            for (Long id : unknown) {
+                if (!topics.containsKey(id)) missingTopics.add(id);
+            }
+        }
+
+        List<Content> toSave = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            ContentRequest request = row.request();
+            Topic topic = topics.get(request.getTopicId());
+            if (topic == null) {
+                job.reject(row.index(), request.getText(), "TOPIC_NOT_FOUND");
+                continue;
+            }
+            Content content = new Content(null, Status.PENDING, request.getText(), request.getScheduledTime(), false, topic);
+            content.setPriority(request.getPriority());
+            toSave.add(content);
+        }
+        if (toSave.isEmpty()) return;
+
+        contentService.saveAll(toSave);
+        job.saved(toSave.size());
+    }
+
+    private ContentRequest parse(JsonNode node) {
+        try {
+            ContentRequest request = objectMapper.treeToValue(node, ContentRequest.class);
+            if (request == null || request.getTopicId() == null || request.getScheduledTime() == null) return null;
+            return request;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private record Row(long index, ContentRequest request) {
+    }
+}
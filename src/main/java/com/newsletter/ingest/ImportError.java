@@ -0,0 +1,15 @@
+package com.newsletter.ingest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One rejected row of an import, identified by its line number in the uploaded body.
+ */
+@Data
+@AllArgsConstructor
+public class ImportError {
+    private long line;
+    private String value;
+    private String status;
+}
@@ -0,0 +1,104 @@
+package com.newsletter.ingest;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress and per-row error report of one ingestion job (subscriber or content rows).
+ * Counters are written by the worker running the job only and may be read at any time.
+ */
+@Getter
+public class ImportJob {
+
+    private final String id = UUID.randomUUID().toString();
+    private final String type;
+    private final String format;
+    private final Instant acceptedAt = Instant.now();
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String status = "QUEUED";
+    private volatile String message;
+    private volatile long bodyBytes;
+    private volatile boolean spooled;
+
+    private volatile long rowsRead;
+    private volatile long saved;
+    private volatile long duplicatesInRequest;
+    private volatile long alreadySubscribed;
+    private volatile long rejected;
+
+    @JsonIgnore
+    private final int maxReportedErrors;
+    private final List<ImportError> errors = new ArrayList<>();
+
+    public ImportJob(String type, String format, int maxReportedErrors) {
+        this.type = type;
+        this.format = format;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public synchronized List<ImportError> getErrors() {
+        return List.copyOf(errors);
+    }
+
+    /**
+     * Rows read per second of processing, up to now while the job runs.
+     */
+    public double getRowsPerSecond() {
+        Instant from = startedAt;
+        if (from == null) return 0;
+        Instant to = finishedAt != null ? finishedAt : Instant.now();
+        long millis = Math.max(1, to.toEpochMilli() - from.toEpochMilli());
+        return rowsRead * 1000.0 / millis;
+    }
+
+    void received(long bodyBytes, boolean spooled) {
+        this.bodyBytes = bodyBytes;
+        this.spooled = spooled;
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        status = "RUNNING";
+    }
+
+    void rowRead() {
+        rowsRead++;
+    }
+
+    void saved(long count) {
+        saved += count;
+    }
+
+    void duplicateInRequest() {
+        duplicatesInRequest++;
+    }
+
+    void alreadySubscribed(long count) {
+        alreadySubscribed += count;
+    }
+
+    // Only the first maxReportedErrors rows are kept, so a bad file cannot exhaust memory
+    synchronized void reject(long line, String value, String reason) {
+        rejected++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new ImportError(line, value, reason));
+        }
+    }
+
+    void finish(String status, String message) {
+        this.message = message;
+        this.finishedAt = Instant.now();
+        this.status = status;
+    }
+
+    // Chunks are committed as they go, so the rows saved before the error stay
+    void fail(Exception error) {
+        finish("FAILED", error.getMessage() + " (" + saved + " rows committed before the failure)");
+    }
+}
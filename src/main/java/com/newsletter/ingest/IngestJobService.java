@@ -0,0 +1,175 @@
+package com.newsletter.ingest;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Accepts ingestion uploads as background jobs. The request thread only receives the body, keeping it in memory
+ * up to newsletter.ingest.spool-threshold-bytes and spooling larger bodies to a temp file; a bounded worker pool
+ * then parses and writes the rows while the job reports progress.
+ */
+@Slf4j
+@Service
+public class IngestJobService {
+
+    @Value("${newsletter.ingest.workers:2}")
+    private int workers;
+
+    // Jobs waiting for a worker; further uploads are refused until one starts
+    @Value("${newsletter.ingest.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${newsletter.ingest.spool-threshold-bytes:1048576}")
+    private int spoolThresholdBytes;
+
+    // Empty uses the JVM temp directory
+    @Value("${newsletter.ingest.spool-dir:}")
+    private String spoolDir;
+
+    @Value("${newsletter.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    @Value("${newsletter.import.retained-jobs:100}")
+    private int retainedJobs;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor pool;
+
+    @PostConstruct
+    void startWorkers() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "ingest-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        // Jobs live in memory only; queued and running jobs are abandoned and their spool files removed
+        pool.shutdownNow();
+    }
+
+    /**
+     * Receives the body and queues the job. Returns empty, without keeping the job, if every worker is busy
+     * and the queue is full.
+     */
+    public Optional<ImportJob> submit(String type, String format, InputStream body,
+                                      BiConsumer<ImportJob, InputStream> processor) throws IOException {
+        ImportJob job = new ImportJob(type, format, maxReportedErrors);
+        Spool spool = receive(body);
+        job.received(spool.bytes(), spool.file() != null);
+
+        jobs.put(job.getId(), job);
+        try {
+            pool.execute(() -> process(job, spool, processor));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            spool.delete();
+            log.warn("Ingestion job refused type={} bodyBytes={} queued={}", type, spool.bytes(), pool.getQueue().size());
+            return Optional.empty();
+        }
+        evictFinishedJobs();
+        log.info("Ingestion job accepted jobId={} type={} bodyBytes={} spooled={}",
+                job.getId(), type, spool.bytes(), spool.file() != null);
+        return Optional.of(job);
+    }
+
+    public Optional<ImportJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void process(ImportJob job, Spool spool, BiConsumer<ImportJob, InputStream> processor) {
+        job.start();
+        try (InputStream body = spool.open()) {
+            processor.accept(job, body);
+        } catch (IOException | RuntimeException e) {
+            job.fail(e);
+        } finally {
+            spool.delete();
+        }
+        log.info("Ingestion job finished jobId={} status={} rowsRead={} saved={} rejected={} rowsPerSecond={}",
+                job.getId(), job.getStatus(), job.getRowsRead(), job.getSaved(), job.getRejected(),
+                Math.round(job.getRowsPerSecond()));
+    }
+
+    // Copies the body into memory, moving to a temp file once it outgrows the threshold
+    private Spool receive(InputStream body) throws IOException {
+        ByteArrayOutputStream memory = new ByteArrayOutputStream(Math.min(spoolThresholdBytes, 64 * 1024));
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            if (memory.size() + read > spoolThresholdBytes) {
+                return spoolToFile(memory, buffer, read, body);
+            }
+            memory.write(buffer, 0, read);
+        }
+        return new Spool(memory.toByteArray(), null, memory.size());
+    }
+
+    private Spool spoolToFile(ByteArrayOutputStream head, byte[] buffer, int read, InputStream rest) throws IOException {
+        Path file = spoolDir.isBlank()
+                ? Files.createTempFile("ingest-", ".spool")
+                : Files.createTempFile(Files.createDirectories(Path.of(spoolDir)), "ingest-", ".spool");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            head.writeTo(out);
+            out.write(buffer, 0, read);
+            long bytes = head.size() + read + rest.transferTo(out);
+            return new Spool(null, file, bytes);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private void evictFinishedJobs() {
+        if (jobs.size() <= retainedJobs) return;
+        Iterator<ImportJob> it = jobs.values().stream()
+                .filter(j -> j.getFinishedAt() != null)
+                .sorted((a, b) -> a.getFinishedAt().compareTo(b.getFinishedAt()))
+                .toList().iterator();
+        while (jobs.size() > retainedJobs && it.hasNext()) {
+            jobs.remove(it.next().getId());
+        }
+    }
+
+    // Exactly one of memory and file is set
+    private record Spool(byte[] memory, Path file, long bytes) {
+
+        InputStream open() throws IOException {
+            return file == null ? new ByteArrayInputStream(memory) : Files.newInputStream(file);
+        }
+
+        void delete() {
+            if (file == null) return;
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Ingestion spool file not deleted path={} error={}", file, e.toString());
+            }
+        }
+    }
+}
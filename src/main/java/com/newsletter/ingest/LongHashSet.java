@@ -0,0 +1,59 @@
+package com.newsletter.ingest;
+
+/**
+ * Open-addressing set of primitive longs, about 16 bytes per entry at the default load factor
+ * (a HashSet of strings costs well over 100).
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0L;
+    // Stand-in for the value 0, which marks empty slots
+    private static final long ZERO_KEY = 0x9E3779B97F4A7C15L;
+
+    private long[] slots;
+    private int size;
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        slots = new long[capacity];
+    }
+
+    /**
+     * Adds the value; returns false if it was already present.
+     */
+    public boolean add(long value) {
+        long key = value == EMPTY ? ZERO_KEY : value;
+        if ((size + 1) * 2 > slots.length) grow();
+
+        int mask = slots.length - 1;
+        int i = mix(key) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == key) return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = key;
+        size++;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        int mask = slots.length - 1;
+        for (long key : old) {
+            if (key == EMPTY) continue;
+            int i = mix(key) & mask;
+            while (slots[i] != EMPTY) i = (i + 1) & mask;
+            slots[i] = key;
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
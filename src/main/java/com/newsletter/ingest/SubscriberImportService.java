@@ -0,0 +1,243 @@
+package com.newsletter.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.newsletter.dto.SubscriberRequest;
+import com.newsletter.model.Subscriber;
+import com.newsletter.model.Topic;
+import com.newsletter.repository.SubscriberRepository;
+import com.newsletter.service.SubscriberService;
+import com.newsletter.service.TopicService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams subscriber rows out of an NDJSON, CSV or JSON array body and writes them in chunks.
+ * Only one chunk of rows is held at a time; in-request duplicates are tracked as 64-bit
+ * (email, topicId) fingerprints in a primitive set. Runs on an ingestion worker, see {@link IngestJobService}.
+ */
+@Service
+public class SubscriberImportService {
+
+    public static final String NDJSON = "ndjson";
+    public static final String CSV = "csv";
+    public static final String JSON = "json";
+
+    @Autowired
+    private SubscriberService subscriberService;
+
+    @Autowired
+    private SubscriberRepository subscriberRepository;
+
+    @Autowired
+    private TopicService topicService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${newsletter.import.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Runs the import to completion on the calling thread, updating the job as it goes.
+     */
+    public ImportJob run(ImportJob job, InputStream body) {
+        Batch batch = new Batch(job);
+        try {
+            if (JSON.equals(job.getFormat())) {
+                readArray(body, batch);
+            } else {
+                readLines(body, batch);
+            }
+            batch.flush();
+            job.finish("COMPLETED", null);
+        } catch (IOException | RuntimeException e) {
+            job.fail(e);
+        }
+        return job;
+    }
+
+    private void readLines(InputStream body, Batch batch) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || isCsvHeader(batch.job, lineNumber, line)) continue;
+                batch.add(lineNumber, line, parse(batch.job.getFormat(), lineNumber, line));
+            }
+        }
+    }
+
+    // Rows of a JSON array are numbered by their position in it
+    private void readArray(InputStream body, Batch batch) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) throw new IOException("Expected a JSON array");
+            long index = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) throw new IOException("Unterminated JSON array");
+                index++;
+                JsonNode node = parser.readValueAsTree();
+                batch.add(index, node.toString(), parse(index, node));
+            }
+        }
+    }
+
+    private void writeChunk(ImportJob job, List<Row> chunk, Map<Long, Topic> topics, Set<Long> missingTopics) {
+        resolveTopics(chunk, topics, missingTopics);
+
+        Map<Long, List<Row>> byTopic = new LinkedHashMap<>();
+        for (Row row : chunk) {
+            if (missingTopics.contains(row.topicId())) {
+                job.reject(row.line(), row.email(), "TOPIC_NOT_FOUND");
+            } else {
+                byTopic.computeIfAbsent(row.topicId(), id -> new ArrayList<>()).add(row);
+            }
+        }
+
+        List<Subscriber> toSave = new ArrayList<>(chunk.size());
+        List<Row> saving = new ArrayList<>(chunk.size());
+        for (Map.Entry<Long, List<Row>> entry : byTopic.entrySet()) {
+            List<Row> rows = entry.getValue();
+            Set<String> existing = new HashSet<>(subscriberRepository.findExistingEmails(
+                    entry.getKey(), rows.stream().map(r -> r.email()).toList()));
+            for (Row row : rows) {
+                if (existing.contains(row.email())) {
+                    job.alreadySubscribed(1);
+                } else {
+                    toSave.add(new Subscriber(null, row.email(), topics.get(row.topicId())));
+                    saving.add(row);
+                }
+            }
+        }
+        if (toSave.isEmpty()) return;
+
+        try {
+            subscriberService.saveChunk(toSave);
+            job.saved(toSave.size());
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent subscribe raced this chunk and it was rolled back as a whole; retry it row by row
+            // so only the conflicting rows are rejected
+            for (Row row : saving) {
+                try {
+                    subscriberService.saveChunk(List.of(new Subscriber(null, row.email(), topics.get(row.topicId()))));
+                    job.saved(1);
+                } catch (DataIntegrityViolationException conflict) {
+                    job.reject(row.line(), row.email(), "ALREADY_EXISTS");
+                }
+            }
+        }
+    }
+
+    private void resolveTopics(List<Row> chunk, Map<Long, Topic> topics, Set<Long> missingTopics) {
+        Set<Long> unknown = new HashSet<>();
+        for (Row row : chunk) {
+            if (!topics.containsKey(row.topicId()) && !missingTopics.contains(row.topicId())) unknown.add(row.topicId());
+        }
+        if (unknown.isEmpty()) return;
+
+        topics.putAll(topicService.findAllById(unknown));
+        for (Long id : unknown) {
+            if (!topics.containsKey(id)) missingTopics.add(id);
+        }
+    }
+
+    private Row parse(String format, long lineNumber, String line) {
+        try {
+            if (CSV.equals(format)) {
+                String[] columns = line.split(",", -1);
+                if (columns.length != 2) return null;
+                return new Row(lineNumber, columns[0].trim(), Long.parseLong(columns[1].trim()));
+            }
+            SubscriberRequest request = objectMapper.readValue(line, SubscriberRequest.class);
+            if (request.getEmail() == null || request.getTopicId() == null) return null;
+            return new Row(lineNumber, request.getEmail().trim(), request.getTopicId());
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Row parse(long index, JsonNode node) {
+        try {
+            SubscriberRequest request = objectMapper.treeToValue(node, SubscriberRequest.class);
+            if (request == null || request.getEmail() == null || request.getTopicId() == null) return null;
+            return new Row(index, request.getEmail().trim(), request.getTopicId());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isCsvHeader(ImportJob job, long lineNumber, String line) {
+        return lineNumber == 1 && CSV.equals(job.getFormat()) && line.trim().toLowerCase().startsWith("email");
+    }
+
+    private static boolean isValidEmail(String email) {
+        int at = email.indexOf('@');
+        return email.length() <= 254 && at > 0 && at == email.lastIndexOf('@')
+                && at < email.length() - 1 && email.chars().noneMatch(Character::isWhitespace);
+    }
+
+    // FNV-1a over the email, mixed with the topic id
+    private static long fingerprint(String email, long topicId) {
+        long hash = 0xcbf29ce484222325L ^ topicId;
+        for (int i = 0; i < email.length(); i++) {
+            hash ^= email.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private record Row(long line, String email, long topicId) {
+    }
+
+    // Validates and deduplicates rows, and writes them a chunk at a time
+    private class Batch {
+        final ImportJob job;
+        final Map<Long, Topic> topics = new HashMap<>();
+        final Set<Long> missingTopics = new HashSet<>();
+        final LongHashSet seen = new LongHashSet(chunkSize);
+        final List<Row> chunk = new ArrayList<>(chunkSize);
+
+        Batch(ImportJob job) {
+            this.job = job;
+        }
+
+        void add(long line, String value, Row row) {
+            job.rowRead();
+            if (row == null) {
+                job.reject(line, value, "MALFORMED_ROW");
+            } else if (!isValidEmail(row.email())) {
+                job.reject(line, value, "INVALID_EMAIL");
+            } else if (!seen.add(fingerprint(row.email(), row.topicId()))) {
+                job.duplicateInRequest();
+            } else {
+                chunk.add(row);
+                if (chunk.size() == chunkSize) flush();
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) return;
+            writeChunk(job, chunk, topics, missingTopics);
+            chunk.clear();
+        }
+    }
+}
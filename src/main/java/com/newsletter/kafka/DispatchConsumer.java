@@ -0,0 +1,271 @@
+package com.newsletter.kafka;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.Status;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.service.ContentLeaseManager;
+import com.newsletter.service.FanOutShardService;
+import com.newsletter.strategy.dispatch.DefaultDispatchStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Kafka worker that fans out queued content.
+ * A whole poll batch is fanned out without blocking the consumer thread: the batch's partitions are paused, so the
+ * consumer keeps polling (and its group membership) while they are sent, and the offsets are committed and the
+ * partitions resumed once every fan-out has completed and its status has been written back. Records that share a
+ * key run one after another, in offset order; records with different keys run concurrently.
+ * Each item, or shard of an item, is claimed under a lease first, so duplicate deliveries never fan out twice;
+ * one leased by another node is claimed again with a growing delay, and dead-lettered after busy-max-attempts.
+ * A batch that loses any of its partitions to a rebalance is not acknowledged: the new owner redelivers it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "newsletter.dispatch.strategy", havingValue = "kafka")
+public class DispatchConsumer implements ConsumerAwareRebalanceListener {
+
+    static final String LISTENER_ID = "dispatch";
+
+    private static final List<Status> CLAIMABLE = List.of(Status.QUEUED, Status.PENDING);
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private ContentLeaseManager leaseManager;
+
+    @Autowired
+    private FanOutShardService shardService;
+
+    @Autowired
+    private DefaultDispatchStrategy fanOutStrategy;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private KafkaTemplate<String, DispatchMessage> kafkaTemplate;
+
+    @Value("${newsletter.kafka.consumer.busy-retry-ms:1000}")
+    private long busyRetryMillis;
+
+    @Value("${newsletter.kafka.consumer.busy-max-retry-ms:30000}")
+    private long busyMaxRetryMillis;
+
+    @Value("${newsletter.kafka.consumer.busy-max-attempts:20}")
+    private int busyMaxAttempts;
+
+    @Value("${newsletter.kafka.dead-letter-topic:newsletter.send.DLT}")
+    private String deadLetterTopic;
+
+    // Batches still being fanned out, by partition; a revoked partition is taken out of its batch
+    private final Map<TopicPartition, PendingBatch> pending = new ConcurrentHashMap<>();
+
+    @KafkaListener(
+            id = LISTENER_ID,
+            idIsGroup = false,
+            topics = "${newsletter.kafka.topic:newsletter.send}",
+            containerFactory = "dispatchListenerFactory"
+    )
+    public void onBatch(List<ConsumerRecord<String, DispatchMessage>> records, Acknowledgment acknowledgment) {
+        CompletableFuture<?>[] fanOuts = new CompletableFuture<?>[records.size()];
+        Map<String, CompletableFuture<Void>> lastByKey = new HashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, DispatchMessage> record = records.get(i);
+            CompletableFuture<Void> previous = record.key() == null ? null : lastByKey.get(record.key());
+            CompletableFuture<Void> fanOut = previous == null
+                    ? processWhenFree(record, 1)
+                    : previous.handle((result, exception) -> null).thenCompose(ignored -> processWhenFree(record, 1));
+            if (record.key() != null) lastByKey.put(record.key(), fanOut);
+            fanOuts[i] = fanOut;
+        }
+        CompletableFuture<Void> all = CompletableFuture.allOf(fanOuts);
+        if (all.isDone()) {
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        // Pause on the container consuming these partitions only, so a late resume cannot unpause another one
+        ConsumerRecord<String, DispatchMessage> first = records.get(0);
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID)
+                .getContainerFor(first.topic(), first.partition());
+        Set<TopicPartition> partitions = records.stream()
+                .map(record -> new TopicPartition(record.topic(), record.partition()))
+                .collect(Collectors.toSet());
+        PendingBatch batch = new PendingBatch(container, partitions);
+        partitions.forEach(partition -> {
+            pending.put(partition, batch);
+            container.pausePartition(partition);
+        });
+        all.whenComplete((result, exception) -> batch.finish(acknowledgment));
+    }
+
+    /**
+     * Called on the consumer thread before the pending offsets are committed. Acks queued before this point are
+     * still committed; batches that lose a partition here are never acknowledged, and their pause requests for
+     * it are dropped so the partition is not held paused if it is assigned back.
+     */
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            PendingBatch batch = pending.remove(partition);
+            if (batch != null) batch.revoke(partition);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        onPartitionsRevokedBeforeCommit(consumer, partitions);
+    }
+
+    /**
+     * Processes the record, trying again with a doubling delay while another node holds the content or shard,
+     * or the claim itself fails. After busy-max-attempts the record goes to the dead-letter topic.
+     */
+    private CompletableFuture<Void> processWhenFree(ConsumerRecord<String, DispatchMessage> record, int attempt) {
+        DispatchMessage message = record.value();
+        CompletableFuture<Void> fanOut;
+        try {
+            fanOut = process(message);
+        } catch (RuntimeException e) {
+            log.warn("Dispatch claim failed contentId={} attempt={} error={}", message.getContentId(), attempt, e.toString());
+            fanOut = null;
+        }
+        if (fanOut != null) return fanOut;
+        if (attempt >= busyMaxAttempts) return deadLetter(record, attempt);
+
+        long delay = Math.min(busyMaxRetryMillis, busyRetryMillis << Math.min(attempt - 1, 20));
+        return CompletableFuture.runAsync(() -> { },
+                        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                .thenCompose(ignored -> processWhenFree(record, attempt + 1));
+    }
+
+    private CompletableFuture<Void> deadLetter(ConsumerRecord<String, DispatchMessage> record, int attempts) {
+        DispatchMessage message = record.value();
+        log.warn("Dispatch gave up, dead-lettering contentId={} shard={} attempts={} topic={}",
+                message.getContentId(), message.isShard() ? message.getShardIndex() : null, attempts, deadLetterTopic);
+        return kafkaTemplate.send(deadLetterTopic, record.key(), message)
+                .handle((result, exception) -> {
+                    if (exception != null) {
+                        log.error("Dead-letter send failed contentId={} error={}", message.getContentId(), exception.toString());
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Claims and fans out one content item. Returns null if another node holds a live lease on it.
+     */
+    private CompletableFuture<Void> process(DispatchMessage message) {
+        if (message.isShard()) return processShard(message);
+        Long contentId = message.getContentId();
+        if (!leaseManager.claim(contentId, CLAIMABLE)) {
+            // Redelivered after completion, deleted meanwhile, or still being handed off / fanned out elsewhere.
+            // A claimable status means the hand-off was written back after the claim was tried: try again.
+            Optional<Content> current = contentRepository.findById(contentId);
+            boolean busy = current.isPresent() && (current.get().getStatus() == Status.IN_PROGRESS
+                    || CLAIMABLE.contains(current.get().getStatus()));
+            return busy ? null : CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Status> fanOut;
+        try {
+            Content content = contentRepository.findById(contentId).orElseThrow();
+            fanOut = fanOutStrategy.dispatch(content);
+        } catch (RuntimeException e) {
+            fanOut = CompletableFuture.failedFuture(e);
+        }
+        return fanOut.handle((status, exception) -> {
+            if (exception != null) {
+                log.warn("Dispatch failed contentId={} error={}", contentId, exception.toString());
+            }
+            return exception == null ? status : Status.FAILED;
+        }).thenCompose(status -> leaseManager.release(contentId, status));
+    }
+
+    /**
+     * Claims and sends one subscriber range of sharded content. Returns null while the producing node is still
+     * handing the content off, or another node holds a live lease on the shard.
+     */
+    private CompletableFuture<Void> processShard(DispatchMessage message) {
+        Long contentId = message.getContentId();
+        int shardIndex = message.getShardIndex();
+        Optional<Content> current = contentRepository.findById(contentId);
+        if (current.isEmpty()) return CompletableFuture.completedFuture(null);
+        Status status = current.get().getStatus();
+        if (status == Status.IN_PROGRESS) return null;
+        // Already finished, or failed while its shards were being queued
+        if (status != Status.QUEUED) return CompletableFuture.completedFuture(null);
+        if (!shardService.claim(contentId, shardIndex)) {
+            return shardService.isBusy(contentId, shardIndex) ? null : CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Status> fanOut;
+        try {
+            fanOut = fanOutStrategy.dispatchRange(current.get(), message.getFromId(), message.getToId());
+        } catch (RuntimeException e) {
+            fanOut = CompletableFuture.failedFuture(e);
+        }
+        return fanOut.handle((outcome, exception) -> {
+            if (exception != null) {
+                log.warn("Shard dispatch failed contentId={} shard={} error={}", contentId, shardIndex, exception.toString());
+            }
+            return exception == null ? outcome : Status.FAILED;
+        }).thenAccept(outcome -> shardService.complete(contentId, shardIndex, outcome));
+    }
+
+    /**
+     * The partitions of one in-flight batch and the container they were paused on. The batch is acknowledged
+     * only if it kept every partition until it finished; either way, partitions it still owns are resumed.
+     */
+    private final class PendingBatch {
+        private final MessageListenerContainer container;
+        private final Set<TopicPartition> partitions;
+        private boolean revoked;
+
+        private PendingBatch(MessageListenerContainer container, Set<TopicPartition> partitions) {
+            this.container = container;
+            this.partitions = partitions;
+        }
+
+        private synchronized void revoke(TopicPartition partition) {
+            revoked = true;
+            container.resumePartition(partition);
+        }
+
+        // Synchronized with revoke: an ack is queued either before the revocation commits, or not at all
+        private synchronized void finish(Acknowledgment acknowledgment) {
+            if (revoked) {
+                log.info("Batch finished after a rebalance, offsets left to the new owner partitions={}", partitions);
+            } else {
+                acknowledgment.acknowledge();
+            }
+            for (TopicPartition partition : partitions) {
+                if (pending.remove(partition, this)) container.resumePartition(partition);
+            }
+        }
+    }
+}
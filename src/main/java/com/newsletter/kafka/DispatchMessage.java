@@ -0,0 +1,36 @@
+package com.newsletter.kafka;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compact Kafka payload asking a worker to fan out one content item, or one subscriber id range
+ * (fromId, toId] of it. Workers reload the content by id, so the JPA entity never goes on the wire.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DispatchMessage {
+    public static final byte CONTENT_VERSION = 1;
+    public static final byte SHARD_VERSION = 2;
+
+    private byte version;
+    private Long contentId;
+    private Long topicId;
+    private int shardIndex;
+    private long fromId;
+    private long toId;
+
+    public static DispatchMessage of(Long contentId, Long topicId) {
+        return new DispatchMessage(CONTENT_VERSION, contentId, topicId, 0, 0, Long.MAX_VALUE);
+    }
+
+    public static DispatchMessage shard(Long contentId, Long topicId, int shardIndex, long fromId, long toId) {
+        return new DispatchMessage(SHARD_VERSION, contentId, topicId, shardIndex, fromId, toId);
+    }
+
+    public boolean isShard() {
+        return version == SHARD_VERSION;
+    }
+}
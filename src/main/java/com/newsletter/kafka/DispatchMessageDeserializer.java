@@ -0,0 +1,26 @@
+package com.newsletter.kafka;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the binary layouts written by DispatchMessageSerializer.
+ */
+public class DispatchMessageDeserializer implements Deserializer<DispatchMessage> {
+
+    @Override
+    public DispatchMessage deserialize(String topic, byte[] data) {
+        if (data == null) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte version = buffer.get();
+        if (version == DispatchMessage.CONTENT_VERSION && data.length >= DispatchMessageSerializer.SIZE) {
+            return DispatchMessage.of(buffer.getLong(), buffer.getLong());
+        }
+        if (version == DispatchMessage.SHARD_VERSION && data.length >= DispatchMessageSerializer.SHARD_SIZE) {
+            return DispatchMessage.shard(buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.getLong(), buffer.getLong());
+        }
+        throw new SerializationException("Unsupported dispatch message version " + version);
+    }
+}
@@ -0,0 +1,30 @@
+package com.newsletter.kafka;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a DispatchMessage as [version:1][contentId:8][topicId:8], followed by
+ * [shardIndex:4][fromId:8][toId:8] for a shard message.
+ */
+public class DispatchMessageSerializer implements Serializer<DispatchMessage> {
+
+    static final int SIZE = 1 + Long.BYTES + Long.BYTES;
+    static final int SHARD_SIZE = SIZE + Integer.BYTES + Long.BYTES + Long.BYTES;
+
+    @Override
+    public byte[] serialize(String topic, DispatchMessage message) {
+        if (message == null) return null;
+        ByteBuffer buffer = ByteBuffer.allocate(message.isShard() ? SHARD_SIZE : SIZE)
+                .put(message.getVersion())
+                .putLong(message.getContentId())
+                .putLong(message.getTopicId());
+        if (message.isShard()) {
+            buffer.putInt(message.getShardIndex())
+                    .putLong(message.getFromId())
+                    .putLong(message.getToId());
+        }
+        return buffer.array();
+    }
+}
@@ -1,4 +1,68 @@
 package com.newsletter.kafka;
 
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.Map;
+
+@Configuration
 public class KafkaConsumerConfig {
+
+    @Value("${newsletter.kafka.consumer.group-id:newsletter-dispatch}")
+    private String groupId;
+
+    @Value("${newsletter.kafka.consumer.concurrency:3}")
+    private int concurrency;
+
+    @Value("${newsletter.kafka.consumer.max-poll-records:50}")
+    private int maxPollRecords;
+
+    @Value("${newsletter.kafka.consumer.retry-backoff-ms:1000}")
+    private long retryBackoffMillis;
+
+    @Value("${newsletter.kafka.consumer.max-retries:60}")
+    private long maxRetries;
+
+    @Bean
+    public ConsumerFactory<String, DispatchMessage> dispatchConsumerFactory(KafkaProperties kafkaProperties) {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, DispatchMessageDeserializer.class);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    /**
+     * Batch listener container; offsets are committed manually once a batch's fan-outs have completed.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, DispatchMessage> dispatchListenerFactory(
+            ConsumerFactory<String, DispatchMessage> dispatchConsumerFactory,
+            ObjectProvider<DispatchConsumer> dispatchConsumer) {
+        ConcurrentKafkaListenerContainerFactory<String, DispatchMessage> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(dispatchConsumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        // Drops the acks of in-flight batches whose partitions are revoked; looked up once the listener bean exists
+        factory.setContainerCustomizer(container -> dispatchConsumer.ifAvailable(
+                container.getContainerProperties()::setConsumerRebalanceListener));
+        // Only for listener failures; content leased by another node is retried by the listener itself
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(retryBackoffMillis, maxRetries)));
+        return factory;
+    }
 }
@@ -0,0 +1,141 @@
+package com.newsletter.metrics;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.Priority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters of the dispatch path: horizon refills, lag behind the schedule and fan-out progress.
+ * Exposed at /actuator/prometheus.
+ */
+@Component
+public class DispatchMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer refill;
+    private final Counter loaded;
+    private final Map<Priority, Timer> lag = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> sloMissed = new EnumMap<>(Priority.class);
+    private final Counter recipientsSent;
+    private final Counter recipientsFailed;
+    private final Timer throttled;
+    private final DistributionSummary digestItems;
+
+    public DispatchMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.refill = Timer.builder("newsletter.dispatch.refill")
+                .description("Duration of one checkAndDispatch horizon load")
+                .register(registry);
+        this.loaded = Counter.builder("newsletter.dispatch.loaded")
+                .description("Content rows loaded into the timer wheel")
+                .register(registry);
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            lag.put(priority, Timer.builder("newsletter.dispatch.lag")
+                    .description("Fan-out start time minus scheduledTime")
+                    .tag("priority", tag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            sloMissed.put(priority, Counter.builder("newsletter.dispatch.slo.missed")
+                    .description("Fan-outs that started later than their priority class's lag SLO")
+                    .tag("priority", tag)
+                    .register(registry));
+        }
+        this.recipientsSent = recipients("sent");
+        this.recipientsFailed = recipients("failed");
+        this.throttled = Timer.builder("newsletter.ratelimit.wait")
+                .description("Time fan-out producers spent waiting for send rate tokens")
+                .register(registry);
+        this.digestItems = DistributionSummary.builder("newsletter.digest.items")
+                .description("Content items per digest email sent")
+                .register(registry);
+    }
+
+    public <T> T timeRefill(Supplier<T> refillTask) {
+        return refill.record(refillTask);
+    }
+
+    public void loaded(int count) {
+        loaded.increment(count);
+    }
+
+    /**
+     * Records how late the content's fan-out starts, per priority class; content fired early counts as zero lag.
+     */
+    public void fanOutStarted(Content content, Duration slo) {
+        if (content.getScheduledTime() == null) return;
+        Priority priority = content.getEffectivePriority();
+        Duration late = Duration.between(content.getScheduledTime(), LocalDateTime.now());
+        lag.get(priority).record(late.isNegative() ? Duration.ZERO : late);
+        if (late.compareTo(slo) > 0) sloMissed.get(priority).increment();
+    }
+
+    public void throttled(long nanos) {
+        throttled.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void retry(String outcome, int recipients) {
+        Counter.builder("newsletter.retry")
+                .description("Recipient retries by outcome: scheduled, succeeded, rescheduled, dead, replayed")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment(recipients);
+    }
+
+    public void digestSent(int items) {
+        digestItems.record(items);
+    }
+
+    public void recipientDone(boolean delivered) {
+        (delivered ? recipientsSent : recipientsFailed).increment();
+    }
+
+    /**
+     * Registers a recipients-per-second gauge for one running fan-out; remove it once the fan-out completes.
+     */
+    // range tells apart the shards of one content fanned out on the same node
+    public <T> Gauge fanOutRate(Long contentId, String range, T fanOut, ToDoubleFunction<T> rate) {
+        return Gauge.builder("newsletter.fanout.rate", fanOut, rate)
+                .description("Recipients per second of a running fan-out")
+                .baseUnit("recipients/s")
+                .tag("contentId", String.valueOf(contentId))
+                .tag("range", range)
+                .register(registry);
+    }
+
+    public void remove(Gauge gauge) {
+        registry.remove(gauge);
+    }
+
+    public Timer.Sample startFanOut() {
+        return Timer.start(registry);
+    }
+
+    public void fanOutFinished(Timer.Sample sample, boolean failed) {
+        sample.stop(Timer.builder("newsletter.fanout.duration")
+                .description("Time from fan-out start until every recipient has finished")
+                .tag("outcome", failed ? "failed" : "completed")
+                .register(registry));
+    }
+
+    private Counter recipients(String outcome) {
+        return Counter.builder("newsletter.fanout.recipients")
+                .description("Recipients handled by fan-outs")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
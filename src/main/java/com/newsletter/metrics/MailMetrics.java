@@ -0,0 +1,73 @@
+package com.newsletter.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Per-email send latency and failures, tagged by sender type or routed provider name.
+ */
+@Component
+public class MailMetrics {
+
+    private final MeterRegistry registry;
+    // Hot path: one timer lookup per sent email
+    private final Map<String, Timer> sentTimers = new ConcurrentHashMap<>();
+
+    public MailMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void sent(String sender, long startNanos) {
+        sentTimers.computeIfAbsent(sender, s -> sendTimer(s, "sent"))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void failed(String sender, long startNanos, Exception error) {
+        sendTimer(sender, "failed").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("newsletter.email.failures")
+                .description("Emails that could not be handed to the mail server")
+                .tag("sender", sender)
+                .tag("exception", error.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Registers the health (1 up, 0 ejected) and in-flight batches of a routed provider.
+     */
+    public <T> void provider(String provider, T state, ToDoubleFunction<T> healthy, ToDoubleFunction<T> inFlight) {
+        Gauge.builder("newsletter.email.provider.healthy", state, healthy)
+                .description("Whether the provider is taking sends, 0 while ejected after failures")
+                .tag("provider", provider)
+                .register(registry);
+        Gauge.builder("newsletter.email.provider.inflight", state, inFlight)
+                .description("Send batches in flight on the provider")
+                .tag("provider", provider)
+                .register(registry);
+    }
+
+    public void failover(String provider, int recipients) {
+        Counter.builder("newsletter.email.failovers")
+                .description("Recipients moved to another provider after a transient failure")
+                .tag("provider", provider)
+                .register(registry)
+                .increment(recipients);
+    }
+
+    private Timer sendTimer(String sender, String outcome) {
+        return Timer.builder("newsletter.email.send")
+                .description("Latency of handing one email to the mail server")
+                .tag("sender", sender)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
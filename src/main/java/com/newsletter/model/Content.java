@@ -12,13 +12,18 @@ import java.time.LocalDateTime;
 @Table(
         name = "content",
         indexes = {
-                @Index(name = "idx_status_time", columnList = "status, scheduled_time")
+                @Index(name = "idx_status_time", columnList = "status, scheduled_time"),
+                @Index(name = "idx_topic_time", columnList = "topic_id, scheduled_time"),
+                // Keyset pages of the /pending and /sent listings
+                @Index(name = "idx_sent_id", columnList = "sent, id")
         }
 )
 public class Content {
 
+    // Pooled sequence ids let Hibernate batch INSERTs; IDENTITY forces one round trip per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "content_seq")
+    @SequenceGenerator(name = "content_seq", sequenceName = "content_seq", allocationSize = 50)
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -31,5 +36,23 @@ public class Content {
 
     @ManyToOne
     private Topic topic;
-}
 
+    // Null falls back to the topic's default priority
+    @Enumerated(EnumType.STRING)
+    private Priority priority;
+
+    // Dispatch lease: the node currently fanning this content out, and until when it holds it
+    @Column(name = "claimed_by")
+    private String claimedBy;
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    public Content(Long id, Status status, String text, LocalDateTime scheduledTime, boolean sent, Topic topic) {
+        this(id, status, text, scheduledTime, sent, topic, null, null, null);
+    }
+
+    public Priority getEffectivePriority() {
+        if (priority != null) return priority;
+        return topic == null || topic.getDefaultPriority() == null ? Priority.NORMAL : topic.getDefaultPriority();
+    }
+}
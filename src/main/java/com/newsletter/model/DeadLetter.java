@@ -0,0 +1,41 @@
+package com.newsletter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A recipient that still failed after the last retry; kept for inspection and replay.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "dead_letter", indexes = {
+        @Index(name = "idx_dead_letter_content", columnList = "content_id, id")
+})
+public class DeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dead_letter_seq")
+    @SequenceGenerator(name = "dead_letter_seq", sequenceName = "dead_letter_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "content_id")
+    private Long contentId;
+
+    @Column(name = "subscriber_id")
+    private Long subscriberId;
+
+    private String email;
+
+    private int attempts;
+
+    @Column(length = 500)
+    private String lastError;
+
+    private LocalDateTime deadAt;
+}
@@ -0,0 +1,42 @@
+package com.newsletter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Ledger row recording the outcome of one (content, subscriber) delivery.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(Delivery.Key.class)
+@Table(name = "delivery")
+public class Delivery {
+
+    @Id
+    @Column(name = "content_id")
+    private Long contentId;
+
+    @Id
+    @Column(name = "subscriber_id")
+    private Long subscriberId;
+
+    // Stored as its ordinal to keep ledger rows small
+    @Enumerated(EnumType.ORDINAL)
+    private DeliveryStatus status;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long contentId;
+        private Long subscriberId;
+    }
+}
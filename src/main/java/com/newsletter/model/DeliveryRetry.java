@@ -0,0 +1,42 @@
+package com.newsletter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One recipient waiting to be retried. The table is the retry queue: due rows are read in
+ * nextAttemptAt order, and a worker claims a row by pushing its nextAttemptAt forward.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(Delivery.Key.class)
+@Table(name = "delivery_retry", indexes = {
+        @Index(name = "idx_retry_next_attempt", columnList = "next_attempt_at")
+})
+public class DeliveryRetry {
+
+    @Id
+    @Column(name = "content_id")
+    private Long contentId;
+
+    @Id
+    @Column(name = "subscriber_id")
+    private Long subscriberId;
+
+    private String email;
+
+    // Sends attempted so far, including the original one
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 500)
+    private String lastError;
+}
@@ -0,0 +1,6 @@
+package com.newsletter.model;
+
+public enum DeliveryStatus {
+    SENT,
+    FAILED
+}
@@ -0,0 +1,23 @@
+package com.newsletter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fan-out progress of a content item: every subscriber with id <= watermark has been delivered.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "fan_out_checkpoint")
+public class FanOutCheckpoint {
+
+    @Id
+    @Column(name = "content_id")
+    private Long contentId;
+
+    private long watermark;
+}
@@ -0,0 +1,67 @@
+package com.newsletter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One subscriber id range (fromId, toId] of a content item fanned out through Kafka shards,
+ * claimed by a worker under its own lease.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(FanOutShard.Key.class)
+@Table(name = "fan_out_shard")
+public class FanOutShard {
+
+    @Id
+    @Column(name = "content_id")
+    private Long contentId;
+
+    @Id
+    @Column(name = "shard_index")
+    private Integer shardIndex;
+
+    // Exclusive
+    @Column(name = "from_id")
+    private long fromId;
+
+    // Inclusive; Long.MAX_VALUE on the last shard so subscribers added after planning are included
+    @Column(name = "to_id")
+    private long toId;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    @Column(name = "claimed_by")
+    private String claimedBy;
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    // When the shard's message was last published; a shard left unclaimed long after it is queued again
+    @Column(name = "queued_at")
+    private LocalDateTime queuedAt;
+
+    /**
+     * Whether the shard covers the whole roster, i.e. the content is not split.
+     */
+    public boolean isWhole() {
+        return fromId == 0 && toId == Long.MAX_VALUE;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long contentId;
+        private Integer shardIndex;
+    }
+}
@@ -0,0 +1,8 @@
+package com.newsletter.model;
+
+/**
+ * Dispatch priority class, most urgent first. Each class has its own dispatch-lag SLO.
+ */
+public enum Priority {
+    CRITICAL, HIGH, NORMAL, BULK
+}
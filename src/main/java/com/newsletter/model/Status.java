@@ -2,6 +2,8 @@ package com.newsletter.model;
 
 public enum Status {
     PENDING,
+    IN_PROGRESS,
+    QUEUED,
     SENT,
     FAILED
 }
@@ -10,12 +10,17 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(
-        uniqueConstraints = @UniqueConstraint(columnNames = {"email", "topic_id"})
+        uniqueConstraints = @UniqueConstraint(columnNames = {"email", "topic_id"}),
+        indexes = {
+                @Index(name = "idx_subscriber_topic_id", columnList = "topic_id, id")
+        }
 )
 public class Subscriber {
 
+    // Pooled sequence ids so bulk imports are written as JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "subscriber_seq")
+    @SequenceGenerator(name = "subscriber_seq", sequenceName = "subscriber_seq", allocationSize = 50)
     private Long id;
 
     private String email;
@@ -13,4 +13,12 @@ public class Topic {
     private Long id;
 
     private String name;
+
+    // Priority of this topic's content unless the content sets its own
+    @Enumerated(EnumType.STRING)
+    private Priority defaultPriority;
+
+    public Topic(Long id, String name) {
+        this(id, name, null);
+    }
 }
@@ -0,0 +1,80 @@
+package com.newsletter.ratelimit;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outbound send rates per recipient domain, shared by every fan-out in the process.
+ * Each domain listed in newsletter.mail.rate.domains is its own lane with its own bucket; all other
+ * domains share the default lane. A global bucket caps the total. A rate of 0 means unlimited.
+ */
+@Component
+public class DomainRateLimiter {
+
+    public static final String DEFAULT_LANE = "*";
+
+    @Value("${newsletter.mail.rate.global-per-second:0}")
+    private double globalPerSecond;
+
+    @Value("${newsletter.mail.rate.default-per-second:0}")
+    private double defaultPerSecond;
+
+    // gmail.com:50,yahoo.com:20
+    @Value("${newsletter.mail.rate.domains:}")
+    private String domainRates;
+
+    @Value("${newsletter.mail.rate.burst-seconds:1}")
+    private double burstSeconds;
+
+    private final Map<String, TokenBucket> lanes = new HashMap<>();
+    private TokenBucket global;
+
+    @PostConstruct
+    void initBuckets() {
+        long now = System.nanoTime();
+        global = bucket(globalPerSecond, now);
+        lanes.put(DEFAULT_LANE, bucket(defaultPerSecond, now));
+        for (String entry : domainRates.split(",")) {
+            if (entry.isBlank()) continue;
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected domain:permitsPerSecond, got " + entry);
+            }
+            lanes.put(parts[0].trim().toLowerCase(Locale.ROOT), bucket(Double.parseDouble(parts[1].trim()), now));
+        }
+    }
+
+    /**
+     * The lane a recipient is throttled in: its domain if that has a configured rate, else the default lane.
+     */
+    public String laneOf(String email) {
+        String domain = email.substring(email.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+        return lanes.containsKey(domain) ? domain : DEFAULT_LANE;
+    }
+
+    /**
+     * Takes permits from the lane and the global bucket if both have them.
+     * Returns 0 on success, otherwise the nanoseconds to wait before asking again; nothing is taken then.
+     */
+    public synchronized long tryAcquire(String lane, int permits) {
+        long now = System.nanoTime();
+        TokenBucket bucket = lanes.get(lane);
+        long wait = Math.max(
+                bucket == null ? 0 : bucket.waitNanos(permits, now),
+                global == null ? 0 : global.waitNanos(permits, now));
+        if (wait > 0) return wait;
+
+        if (bucket != null) bucket.take(permits);
+        if (global != null) global.take(permits);
+        return 0;
+    }
+
+    private TokenBucket bucket(double permitsPerSecond, long now) {
+        return permitsPerSecond <= 0 ? null : new TokenBucket(permitsPerSecond, permitsPerSecond * burstSeconds, now);
+    }
+}
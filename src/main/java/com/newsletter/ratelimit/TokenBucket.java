@@ -0,0 +1,41 @@
+package com.newsletter.ratelimit;
+
+/**
+ * Token bucket refilled continuously at a fixed rate, up to its burst capacity.
+ * A request larger than the capacity is granted once the bucket is full and leaves it in debt,
+ * so the long-run rate still holds. Not thread-safe; callers synchronise.
+ */
+public final class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(double permitsPerSecond, double capacity, long nowNanos) {
+        this.permitsPerNano = permitsPerSecond / 1e9;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.refilledAt = nowNanos;
+    }
+
+    /**
+     * Nanoseconds until the permits can be taken, 0 if they can be taken now.
+     */
+    public long waitNanos(int permits, long nowNanos) {
+        refill(nowNanos);
+        double needed = Math.min(permits, capacity);
+        return tokens >= needed ? 0 : (long) Math.ceil((needed - tokens) / permitsPerNano);
+    }
+
+    public void take(int permits) {
+        tokens -= permits;
+    }
+
+    private void refill(long nowNanos) {
+        if (nowNanos > refilledAt) {
+            tokens = Math.min(capacity, tokens + (nowNanos - refilledAt) * permitsPerNano);
+            refilledAt = nowNanos;
+        }
+    }
+}
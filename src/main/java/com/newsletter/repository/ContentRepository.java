@@ -1,21 +1,128 @@
 package com.newsletter.repository;
 
+import com.newsletter.dto.StatusCount;
+import com.newsletter.dto.TopicStatusCount;
 import com.newsletter.model.Content;
 import com.newsletter.model.Status;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
-public interface ContentRepository extends JpaRepository<Content, Long> {
+public interface ContentRepository extends JpaRepository<Content, Long>, ContentRepositoryCustom {
     List<Content> findByStatus(Status status);
 
-    @Query("SELECT c FROM Content c WHERE c.status = :status AND c.scheduledTime BETWEEN :start AND :end")
-    List<Content> findByStatusAndScheduledTimeBetween(
+    // Index-only over idx_status_time
+    @Query("SELECT new com.newsletter.dto.StatusCount(c.status, COUNT(c)) FROM Content c GROUP BY c.status")
+    List<StatusCount> countByStatus();
+
+    @Query("SELECT new com.newsletter.dto.TopicStatusCount(t.id, t.name, c.status, COUNT(c)) " +
+            "FROM Content c JOIN c.topic t GROUP BY t.id, t.name, c.status ORDER BY t.id")
+    List<TopicStatusCount> countByTopicAndStatus();
+
+    // Half-open window (start, end] so consecutive horizon loads never overlap
+    @Query("SELECT c FROM Content c WHERE c.status = :status AND c.scheduledTime > :start AND c.scheduledTime <= :end")
+    List<Content> findByStatusAndScheduledTimeAfterUpTo(
             @Param("status") Status status,
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end
     );
+
+    // First page of the startup catch-up over idx_status_time
+    List<Content> findByStatusAndScheduledTimeLessThanEqualOrderByScheduledTimeAscIdAsc(
+            Status status, LocalDateTime end, Pageable page);
+
+    // Next page of the catch-up: keyset (scheduledTime, id) > (afterTime, afterId)
+    @Query("SELECT c FROM Content c WHERE c.status = :status AND c.scheduledTime <= :end " +
+            "AND (c.scheduledTime > :afterTime OR (c.scheduledTime = :afterTime AND c.id > :afterId)) " +
+            "ORDER BY c.scheduledTime, c.id")
+    List<Content> findDuePageAfter(
+            @Param("status") Status status,
+            @Param("end") LocalDateTime end,
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") Long afterId,
+            Pageable page
+    );
+
+    List<Content> findByStatusAndLeaseUntilBefore(Status status, LocalDateTime now);
+
+    // Atomic claim: succeeds for one node only, either from the given statuses or over an expired lease
+    @Transactional
+    @Modifying
+    @Query("UPDATE Content c SET c.status = :claimed, c.claimedBy = :owner, c.leaseUntil = :leaseUntil " +
+            "WHERE c.id = :id AND (c.status IN :from OR (c.status = :claimed AND c.leaseUntil < :now))")
+    int claim(
+            @Param("id") Long id,
+            @Param("from") Collection<Status> from,
+            @Param("claimed") Status claimed,
+            @Param("owner") String owner,
+            @Param("now") LocalDateTime now,
+            @Param("leaseUntil") LocalDateTime leaseUntil
+    );
+
+    // Batch claim; the rows it won are read back by their lease expiry, which the caller makes unique
+    @Modifying
+    @Query("UPDATE Content c SET c.status = :claimed, c.claimedBy = :owner, c.leaseUntil = :leaseUntil " +
+            "WHERE c.id IN :ids AND (c.status IN :from OR (c.status = :claimed AND c.leaseUntil < :now))")
+    int claimAll(
+            @Param("ids") Collection<Long> ids,
+            @Param("from") Collection<Status> from,
+            @Param("claimed") Status claimed,
+            @Param("owner") String owner,
+            @Param("now") LocalDateTime now,
+            @Param("leaseUntil") LocalDateTime leaseUntil
+    );
+
+    @Query("SELECT c.id FROM Content c " +
+            "WHERE c.id IN :ids AND c.claimedBy = :owner AND c.status = :claimed AND c.leaseUntil = :leaseUntil")
+    List<Long> findClaimed(
+            @Param("ids") Collection<Long> ids,
+            @Param("owner") String owner,
+            @Param("claimed") Status claimed,
+            @Param("leaseUntil") LocalDateTime leaseUntil
+    );
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Content c SET c.leaseUntil = :leaseUntil " +
+            "WHERE c.id IN :ids AND c.claimedBy = :owner AND c.status = :claimed")
+    int renewLeases(
+            @Param("ids") Collection<Long> ids,
+            @Param("owner") String owner,
+            @Param("claimed") Status claimed,
+            @Param("leaseUntil") LocalDateTime leaseUntil
+    );
+
+    // Writes outcomes and leaves the leases, only where this node still holds them
+    @Transactional
+    @Modifying
+    @Query("UPDATE Content c SET c.status = :status, c.sent = :sent, c.claimedBy = NULL, c.leaseUntil = NULL " +
+            "WHERE c.id IN :ids AND c.claimedBy = :owner AND c.status = :claimed")
+    int releaseAll(
+            @Param("ids") Collection<Long> ids,
+            @Param("owner") String owner,
+            @Param("claimed") Status claimed,
+            @Param("status") Status status,
+            @Param("sent") boolean sent
+    );
+
+    // Completes sharded content once none of its shards is left unfinished; runs at most once per item
+    @Transactional
+    @Modifying
+    @Query("UPDATE Content c SET c.status = :status, c.sent = :sent " +
+            "WHERE c.id = :id AND c.status = :from AND NOT EXISTS (" +
+            "SELECT 1 FROM FanOutShard s WHERE s.contentId = :id AND s.status NOT IN :finished)")
+    int completeSharded(
+            @Param("id") Long id,
+            @Param("from") Status from,
+            @Param("finished") Collection<Status> finished,
+            @Param("status") Status status,
+            @Param("sent") boolean sent
+    );
 }
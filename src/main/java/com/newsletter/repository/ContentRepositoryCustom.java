@@ -0,0 +1,13 @@
+package com.newsletter.repository;
+
+import com.newsletter.dto.ContentStatusFilter;
+import com.newsletter.dto.ContentStatusView;
+
+import java.util.List;
+
+public interface ContentRepositoryCustom {
+    /**
+     * Keyset page (id > afterId, ordered by id) of status projections matching the filter.
+     */
+    List<ContentStatusView> findStatusPage(ContentStatusFilter filter, long afterId, int limit);
+}
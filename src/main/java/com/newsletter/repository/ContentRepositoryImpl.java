@@ -0,0 +1,57 @@
+package com.newsletter.repository;
+
+import com.newsletter.dto.ContentStatusFilter;
+import com.newsletter.dto.ContentStatusView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the status listing query with only the filters that are set,
+ * so each variant is a plain indexed predicate rather than an "(:x IS NULL OR ...)" chain.
+ */
+public class ContentRepositoryImpl implements ContentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ContentStatusView> findStatusPage(ContentStatusFilter filter, long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder(
+                "SELECT new com.newsletter.dto.ContentStatusView(c.id, c.status, c.text, c.scheduledTime, c.sent, t.id, t.name) " +
+                "FROM Content c LEFT JOIN c.topic t WHERE c.id > :afterId");
+        Map<String, Object> params = new HashMap<>();
+        params.put("afterId", afterId);
+
+        if (filter.getStatus() != null) {
+            jpql.append(" AND c.status = :status");
+            params.put("status", filter.getStatus());
+        }
+        if (filter.getSent() != null) {
+            jpql.append(" AND c.sent = :sent");
+            params.put("sent", filter.getSent());
+        }
+        if (filter.getTopicId() != null) {
+            jpql.append(" AND t.id = :topicId");
+            params.put("topicId", filter.getTopicId());
+        }
+        if (filter.getFrom() != null) {
+            jpql.append(" AND c.scheduledTime >= :from");
+            params.put("from", filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            jpql.append(" AND c.scheduledTime < :to");
+            params.put("to", filter.getTo());
+        }
+        // With sent fixed, (sent, id) order is id order; spelled out so the page is read off idx_sent_id in order
+        jpql.append(filter.getSent() != null ? " ORDER BY c.sent, c.id" : " ORDER BY c.id");
+
+        TypedQuery<ContentStatusView> query = entityManager.createQuery(jpql.toString(), ContentStatusView.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,24 @@
+package com.newsletter.repository;
+
+import com.newsletter.model.DeadLetter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface DeadLetterRepository extends JpaRepository<DeadLetter, Long> {
+
+    // Keyset page over all dead letters, primary key range scan
+    @Query("SELECT d FROM DeadLetter d WHERE d.id > :afterId ORDER BY d.id")
+    List<DeadLetter> findPage(@Param("afterId") long afterId, Pageable page);
+
+    // Keyset page of one content (idx_dead_letter_content)
+    @Query("SELECT d FROM DeadLetter d WHERE d.contentId = :contentId AND d.id > :afterId ORDER BY d.id")
+    List<DeadLetter> findPageByContent(
+            @Param("contentId") Long contentId,
+            @Param("afterId") long afterId,
+            Pageable page
+    );
+}
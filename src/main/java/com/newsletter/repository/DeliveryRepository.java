@@ -0,0 +1,30 @@
+package com.newsletter.repository;
+
+import com.newsletter.model.Delivery;
+import com.newsletter.model.DeliveryStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DeliveryRepository extends JpaRepository<Delivery, Delivery.Key> {
+
+    // Primary key range scan: (content_id, subscriber_id) prefix
+    @Query("SELECT d.subscriberId FROM Delivery d WHERE d.contentId = :contentId " +
+            "AND d.subscriberId BETWEEN :fromId AND :toId AND d.status = :status")
+    List<Long> findSubscriberIds(
+            @Param("contentId") Long contentId,
+            @Param("fromId") long fromId,
+            @Param("toId") long toId,
+            @Param("status") DeliveryStatus status
+    );
+
+    // Primary key lookups for a digest page, whose subscriber ids are not contiguous
+    List<Delivery> findByContentIdInAndSubscriberIdInAndStatus(
+            Collection<Long> contentIds,
+            Collection<Long> subscriberIds,
+            DeliveryStatus status
+    );
+}
@@ -0,0 +1,18 @@
+package com.newsletter.repository;
+
+import com.newsletter.model.Delivery;
+import com.newsletter.model.DeliveryRetry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface DeliveryRetryRepository extends JpaRepository<DeliveryRetry, Delivery.Key> {
+
+    // Oldest due first, range scan on idx_retry_next_attempt
+    @Query("SELECT r FROM DeliveryRetry r WHERE r.nextAttemptAt <= :now ORDER BY r.nextAttemptAt")
+    List<DeliveryRetry> findDue(@Param("now") LocalDateTime now, Pageable page);
+}
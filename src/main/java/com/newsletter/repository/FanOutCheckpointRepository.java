@@ -0,0 +1,6 @@
+package com.newsletter.repository;
+
+import com.newsletter.model.FanOutCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface FanOutCheckpointRepository extends JpaRepository<FanOutCheckpoint, Long> {}
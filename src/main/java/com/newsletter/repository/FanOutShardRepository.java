@@ -0,0 +1,99 @@
+package com.newsletter.repository;
+
+import com.newsletter.model.FanOutShard;
+import com.newsletter.model.Status;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface FanOutShardRepository extends JpaRepository<FanOutShard, FanOutShard.Key> {
+
+    List<FanOutShard> findByContentIdOrderByShardIndex(Long contentId);
+
+    boolean existsByContentIdAndStatus(Long contentId, Status status);
+
+    boolean existsByContentIdAndStatusNotIn(Long contentId, Collection<Status> statuses);
+
+    // Atomic claim: from the given status, or over an expired lease
+    @Transactional
+    @Modifying
+    @Query("UPDATE FanOutShard s SET s.status = :claimed, s.claimedBy = :owner, s.leaseUntil = :leaseUntil " +
+            "WHERE s.contentId = :contentId AND s.shardIndex = :shardIndex " +
+            "AND (s.status = :from OR (s.status = :claimed AND s.leaseUntil < :now))")
+    int claim(
+            @Param("contentId") Long contentId,
+            @Param("shardIndex") Integer shardIndex,
+            @Param("from") Status from,
+            @Param("claimed") Status claimed,
+            @Param("owner") String owner,
+            @Param("now") LocalDateTime now,
+            @Param("leaseUntil") LocalDateTime leaseUntil
+    );
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE FanOutShard s SET s.leaseUntil = :leaseUntil " +
+            "WHERE s.contentId = :contentId AND s.shardIndex = :shardIndex " +
+            "AND s.claimedBy = :owner AND s.status = :claimed")
+    int renewLease(
+            @Param("contentId") Long contentId,
+            @Param("shardIndex") Integer shardIndex,
+            @Param("owner") String owner,
+            @Param("claimed") Status claimed,
+            @Param("leaseUntil") LocalDateTime leaseUntil
+    );
+
+    // Writes the outcome only where this node still holds the lease
+    @Transactional
+    @Modifying
+    @Query("UPDATE FanOutShard s SET s.status = :status, s.claimedBy = NULL, s.leaseUntil = NULL " +
+            "WHERE s.contentId = :contentId AND s.shardIndex = :shardIndex " +
+            "AND s.claimedBy = :owner AND s.status = :claimed")
+    int release(
+            @Param("contentId") Long contentId,
+            @Param("shardIndex") Integer shardIndex,
+            @Param("owner") String owner,
+            @Param("claimed") Status claimed,
+            @Param("status") Status status
+    );
+
+    // Re-planned content: shards that failed are sent again, and every unfinished shard is published again
+    @Transactional
+    @Modifying
+    @Query("UPDATE FanOutShard s SET s.status = :to, s.queuedAt = :now " +
+            "WHERE s.contentId = :contentId AND s.status IN :from")
+    int reset(
+            @Param("contentId") Long contentId,
+            @Param("from") Collection<Status> from,
+            @Param("to") Status to,
+            @Param("now") LocalDateTime now
+    );
+
+    // Shards of still queued content that have not been claimed since they were queued before the given time
+    @Query("SELECT s FROM FanOutShard s WHERE s.status = :queued AND s.queuedAt < :queuedBefore " +
+            "AND EXISTS (SELECT 1 FROM Content c WHERE c.id = s.contentId AND c.status = :queued)")
+    List<FanOutShard> findUnclaimed(
+            @Param("queued") Status queued,
+            @Param("queuedBefore") LocalDateTime queuedBefore
+    );
+
+    // Succeeds on one node only: the one that moves queuedAt on from the value it read
+    @Transactional
+    @Modifying
+    @Query("UPDATE FanOutShard s SET s.queuedAt = :now " +
+            "WHERE s.contentId = :contentId AND s.shardIndex = :shardIndex " +
+            "AND s.status = :queued AND s.queuedAt = :queuedAt")
+    int requeue(
+            @Param("contentId") Long contentId,
+            @Param("shardIndex") Integer shardIndex,
+            @Param("queued") Status queued,
+            @Param("queuedAt") LocalDateTime queuedAt,
+            @Param("now") LocalDateTime now
+    );
+}
@@ -1,11 +1,63 @@
 package com.newsletter.repository;
 
+import com.newsletter.dto.DigestRecipient;
+import com.newsletter.dto.RosterChecksum;
+import com.newsletter.dto.SubscriberEmail;
 import com.newsletter.model.Subscriber;
 import com.newsletter.model.Topic;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface SubscriberRepository extends JpaRepository<Subscriber, Long> {
     List<Subscriber> findByTopic(Topic topic);
+
+    @Query("SELECT s.email FROM Subscriber s WHERE s.topic.id = :topicId AND s.email IN :emails")
+    List<String> findExistingEmails(@Param("topicId") Long topicId, @Param("emails") Collection<String> emails);
+
+    // Keyset page (id > afterId) over idx_subscriber_topic_id -> no OFFSET scan, no entity hydration
+    @Query("SELECT new com.newsletter.dto.SubscriberEmail(s.id, s.email) FROM Subscriber s " +
+            "WHERE s.topic.id = :topicId AND s.id > :afterId ORDER BY s.id")
+    List<SubscriberEmail> findEmailPage(
+            @Param("topicId") Long topicId,
+            @Param("afterId") long afterId,
+            Pageable page
+    );
+
+    @Query("SELECT MAX(s.id) FROM Subscriber s WHERE s.topic.id = :topicId")
+    Long findMaxId(@Param("topicId") Long topicId);
+
+    @Query("SELECT MIN(s.id) FROM Subscriber s WHERE s.topic.id = :topicId")
+    Long findMinId(@Param("topicId") Long topicId);
+
+    long countByTopicId(Long topicId);
+
+    // Single row through the (email, topic_id) unique index
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Subscriber s WHERE s.email = :email AND s.topic.id = :topicId")
+    int deleteByEmailAndTopicId(@Param("email") String email, @Param("topicId") Long topicId);
+
+    // Covered by idx_subscriber_topic_id, no row is read
+    @Query("SELECT new com.newsletter.dto.RosterChecksum(COUNT(s), COALESCE(SUM(s.id), 0L)) FROM Subscriber s " +
+            "WHERE s.topic.id = :topicId")
+    RosterChecksum findRosterChecksum(@Param("topicId") Long topicId);
+
+    // Keyset page (email, topic) > (afterEmail, afterTopicId) over the (email, topic_id) unique index
+    @Query("SELECT new com.newsletter.dto.DigestRecipient(s.id, s.email, s.topic.id) FROM Subscriber s " +
+            "WHERE s.topic.id IN :topicIds " +
+            "AND (s.email > :afterEmail OR (s.email = :afterEmail AND s.topic.id > :afterTopicId)) " +
+            "ORDER BY s.email, s.topic.id")
+    List<DigestRecipient> findDigestPage(
+            @Param("topicIds") Collection<Long> topicIds,
+            @Param("afterEmail") String afterEmail,
+            @Param("afterTopicId") long afterTopicId,
+            Pageable page
+    );
 }
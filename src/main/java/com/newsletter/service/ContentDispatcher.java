@@ -1,61 +1,256 @@
 package com.newsletter.service;
 
+import com.newsletter.metrics.DispatchMetrics;
 import com.newsletter.model.Content;
 import com.newsletter.model.Status;
 import com.newsletter.repository.ContentRepository;
 import com.newsletter.strategy.dispatch.ContentDispatchStrategy;
 import com.newsletter.strategy.dispatch.DispatchStrategyFactory;
+import com.newsletter.strategy.schedule.HashedTimerWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Loads due content into an in-memory timer wheel and fires each item at its scheduled time.
+ */
+@Slf4j
 @Service
 public class ContentDispatcher {
 
     private final ContentRepository contentRepository;
     private final DispatchStrategyFactory dispatchStrategyFactory;
+    private final ContentLeaseManager leaseManager;
+    private final DispatchMetrics metrics;
+    private final DispatchSlo dispatchSlo;
+
+    @Value("${newsletter.dispatch.horizon-seconds:60}")
+    private long horizonSeconds;
+
+    @Value("${newsletter.dispatch.wheel.tick-millis:100}")
+    private long tickMillis;
+
+    @Value("${newsletter.dispatch.wheel.size:512}")
+    private int wheelSize;
+
+    @Value("${newsletter.dispatch.catch-up-page-size:1000}")
+    private int catchUpPageSize;
+
+    @Value("${newsletter.dispatch.claim-retry-ms:1000}")
+    private long claimRetryMillis;
+
+    private HashedTimerWheel<Long, Content> wheel;
+    private ScheduledExecutorService timer;
+    private ExecutorService dispatchLoop;
+
+    // Upper bound of the scheduledTime range already loaded into the wheel; null until the first (catch-up) load
+    private volatile LocalDateTime loadedUntil;
 
     public ContentDispatcher(ContentRepository contentRepository,
-                             DispatchStrategyFactory dispatchStrategyFactory) {
+                             DispatchStrategyFactory dispatchStrategyFactory,
+                             ContentLeaseManager leaseManager,
+                             DispatchMetrics metrics,
+                             DispatchSlo dispatchSlo) {
         this.contentRepository = contentRepository;
         this.dispatchStrategyFactory = dispatchStrategyFactory;
+        this.leaseManager = leaseManager;
+        this.metrics = metrics;
+        this.dispatchSlo = dispatchSlo;
+    }
+
+    @PostConstruct
+    void startTimer() {
+        wheel = new HashedTimerWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        timer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "dispatch-timer"));
+        dispatchLoop = Executors.newSingleThreadExecutor(r -> daemon(r, "dispatch-loop"));
+        timer.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopTimer() {
+        timer.shutdownNow();
+        dispatchLoop.shutdown();
     }
 
     /**
      * Dispatches a single content item via the chosen strategy.
      */
-    public void dispatchContent(Content content) {
+    public CompletableFuture<Status> dispatchContent(Content content) {
         ContentDispatchStrategy contentDispatchStrategy = dispatchStrategyFactory.getStrategy();
-        contentDispatchStrategy.dispatch(content);
+        return contentDispatchStrategy.dispatch(content);
+    }
+
+    /**
+     * Loads the next horizon-sized chunk of PENDING content into the timer wheel.
+     * The first call has no lower bound, so overdue rows left behind by a restart are caught up immediately,
+     * a page at a time. The new bound is published before the query: content saved meanwhile is either seen by
+     * the query or put on the wheel by {@link #schedule}, and the wheel drops the duplicate.
+     */
+    public synchronized void checkAndDispatch() {
+        int loaded = metrics.timeRefill(() -> {
+            LocalDateTime end = LocalDateTime.now().plusSeconds(horizonSeconds);
+            LocalDateTime start = loadedUntil;
+            loadedUntil = end;
+            try {
+                // Range query -> O(log n) search time on idx_status_time
+                return start == null
+                        ? catchUp(end)
+                        : enqueueAll(contentRepository.findByStatusAndScheduledTimeAfterUpTo(Status.PENDING, start, end));
+            } catch (RuntimeException e) {
+                // The window was not loaded; the next refill starts from the old bound again
+                loadedUntil = start;
+                throw e;
+            }
+        });
+        metrics.loaded(loaded);
+        if (loaded > 0) log.debug("Horizon loaded rows={} until={}", loaded, loadedUntil);
+    }
+
+    private int catchUp(LocalDateTime end) {
+        PageRequest page = PageRequest.ofSize(catchUpPageSize);
+        List<Content> batch = contentRepository.findByStatusAndScheduledTimeLessThanEqualOrderByScheduledTimeAscIdAsc(
+                Status.PENDING, end, page);
+        int loaded = enqueueAll(batch);
+        while (batch.size() == catchUpPageSize) {
+            Content last = batch.get(batch.size() - 1);
+            batch = contentRepository.findDuePageAfter(Status.PENDING, end, last.getScheduledTime(), last.getId(), page);
+            loaded += enqueueAll(batch);
+        }
+        return loaded;
+    }
+
+    private int enqueueAll(List<Content> contents) {
+        for (Content content : contents) {
+            enqueue(content);
+        }
+        return contents.size();
+    }
+
+    /**
+     * Schedules freshly created content. Items inside the loaded horizon go straight into the wheel
+     * and wake the timer; later items are picked up by a future horizon load.
+     */
+    public void schedule(Content content) {
+        LocalDateTime horizon = loadedUntil;
+        if (content.getId() == null || content.getScheduledTime() == null || horizon == null) return;
+        if (content.getScheduledTime().isAfter(horizon)) return;
+
+        if (enqueue(content) && !timer.isShutdown()) {
+            timer.execute(this::tick);
+        }
     }
 
     /**
-     * Checks all PENDING content within the next ±30 seconds of current time
-     * and dispatches them if eligible.
+     * Fails startup if a refill schedule leaves gaps between horizon loads: content due in a gap would only be
+     * loaded, late, by the next refill.
      */
-    public void checkAndDispatch() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime start = now.minusSeconds(30);
-        LocalDateTime end = now.plusSeconds(30);
-
-        // Range query -> O(log n) search time
-        List<Content> readyContent = contentRepository.findByStatusAndScheduledTimeBetween(
-                Status.PENDING, start, end
-        );
-
-        for (Content content : readyContent) {
-            if (!content.isSent() && !Status.FAILED.equals(content.getStatus())) {
-                try {
-                    dispatchContent(content);
-                    content.setSent(true);
-                    content.setStatus(Status.SENT);
-                } catch (Exception exception) {
-                    content.setSent(false);
-                    content.setStatus(Status.FAILED);
-                }
-                contentRepository.save(content);
+    public void requireRefillWithinHorizon(String scheduler, Duration interval) {
+        if (interval.compareTo(Duration.ofSeconds(horizonSeconds)) >= 0) {
+            throw new IllegalStateException("Horizon refill interval of " + scheduler + " (" + interval
+                    + ") must be shorter than newsletter.dispatch.horizon-seconds=" + horizonSeconds);
+        }
+    }
+
+    /**
+     * Puts content whose dispatch lease has expired (its node died mid fan-out) back on the wheel.
+     * The claim at fire time decides which node takes it over; the ledger makes it resume.
+     */
+    @Scheduled(fixedDelayString = "${newsletter.dispatch.reaper-interval-ms:30000}")
+    public void reclaimExpiredLeases() {
+        contentRepository.findByStatusAndLeaseUntilBefore(Status.IN_PROGRESS, LocalDateTime.now())
+                .forEach(this::enqueue);
+    }
+
+    private boolean enqueue(Content content) {
+        if (content.isSent()) return false;
+        if (content.getStatus() != Status.PENDING && content.getStatus() != Status.IN_PROGRESS) return false;
+        long deadline = content.getScheduledTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return wheel.schedule(content.getId(), content, deadline);
+    }
+
+    private void tick() {
+        List<Content> due = new ArrayList<>(wheel.advance(System.currentTimeMillis()));
+        if (!due.isEmpty()) {
+            // Claim the most urgent first when a tick (or catch-up load) fires several at once
+            due.sort(dispatchSlo.dispatchOrder());
+            dispatchLoop.execute(() -> dispatchDue(due));
+        }
+    }
+
+    /**
+     * Claims the due content in one batch and starts the fan-outs of the items this node won, most urgent first.
+     * Each status is written, and its lease released, only after every recipient of the item has finished.
+     */
+    private void dispatchDue(List<Content> due) {
+        Set<Long> claimed;
+        try {
+            claimed = leaseManager.claimAll(due.stream().map(Content::getId).toList(), List.of(Status.PENDING));
+        } catch (RuntimeException e) {
+            claimed = retryUnclaimed(due, e);
+        }
+        for (Content content : due) {
+            // Otherwise another instance claimed it first
+            if (claimed.contains(content.getId())) dispatchClaimed(content);
+        }
+        // Outcomes of small items that finished within the tick go out now rather than on the next interval
+        leaseManager.flush();
+    }
+
+    /**
+     * The due items are off the wheel and the horizon has moved past them, so a failed claim would leave them
+     * PENDING for good. Items this node did not win before the failure go back on the wheel shortly.
+     */
+    private Set<Long> retryUnclaimed(List<Content> due, RuntimeException failure) {
+        Set<Long> claimed = new HashSet<>();
+        long retryAt = System.currentTimeMillis() + claimRetryMillis;
+        int retried = 0;
+        for (Content content : due) {
+            if (leaseManager.holds(content.getId())) {
+                claimed.add(content.getId());
+            } else if (wheel.schedule(content.getId(), content, retryAt)) {
+                retried++;
             }
         }
+        log.warn("Claim failed rows={} retried={} retryMs={} error={}",
+                due.size(), retried, claimRetryMillis, failure.toString());
+        return claimed;
+    }
+
+    private void dispatchClaimed(Content content) {
+        CompletableFuture<Status> completion;
+        try {
+            completion = dispatchContent(content);
+        } catch (Exception exception) {
+            completion = CompletableFuture.failedFuture(exception);
+        }
+        completion.whenComplete((status, exception) -> {
+            if (exception != null) {
+                log.warn("Dispatch failed contentId={} error={}", content.getId(), exception.toString());
+            }
+            leaseManager.release(content.getId(), exception == null ? status : Status.FAILED);
+        });
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
     }
 }
@@ -0,0 +1,195 @@
+package com.newsletter.service;
+
+import com.newsletter.model.Status;
+import com.newsletter.repository.ContentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Claims content for this node with a time-bound lease, so several instances can dispatch concurrently
+ * without sending the same newsletter twice. Held leases are renewed by a heartbeat while the fan-out runs;
+ * a lease that is not renewed expires and can be claimed by any node.
+ *
+ * Outcomes are written behind: releases are buffered and flushed as one UPDATE per status and batch. Content
+ * stays IN_PROGRESS under a renewed lease until its release is flushed, so after a crash it is reclaimed once
+ * the lease expires and the delivery ledger lets the fan-out resume without resending.
+ */
+@Slf4j
+@Service
+public class ContentLeaseManager {
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${newsletter.dispatch.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${newsletter.node-id:}")
+    private String nodeId;
+
+    @Value("${newsletter.dispatch.status.batch-size:500}")
+    private int batchSize;
+
+    private final Set<Long> held = ConcurrentHashMap.newKeySet();
+    private Map<Status, List<PendingRelease>> pendingReleases = new EnumMap<>(Status.class);
+    private int pendingCount;
+    private LocalDateTime lastLeaseUntil = LocalDateTime.MIN;
+
+    @PostConstruct
+    void initNodeId() {
+        if (nodeId.isBlank()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                host = "node";
+            }
+            nodeId = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Atomically moves the content to IN_PROGRESS under this node's lease.
+     * Returns false if another node holds a live lease or the content left the given statuses.
+     */
+    public boolean claim(Long contentId, Collection<Status> from) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean claimed = contentRepository.claim(
+                contentId, from, Status.IN_PROGRESS, nodeId, now, nextLeaseUntil(now)) == 1;
+        if (claimed) held.add(contentId);
+        return claimed;
+    }
+
+    /**
+     * Claims many items with one UPDATE per batch and returns the ids this node now holds. Each batch's
+     * lease expiry is unique to it on this node, which tells the rows it claimed apart from the others.
+     * If a batch fails, the rows won by the earlier batches stay held; {@link #holds} tells them apart.
+     */
+    public Set<Long> claimAll(List<Long> contentIds, Collection<Status> from) {
+        Set<Long> claimed = new HashSet<>();
+        for (int i = 0; i < contentIds.size(); i += batchSize) {
+            List<Long> batch = contentIds.subList(i, Math.min(i + batchSize, contentIds.size()));
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime leaseUntil = nextLeaseUntil(now);
+            List<Long> ids = transactionTemplate.execute(status -> {
+                if (contentRepository.claimAll(batch, from, Status.IN_PROGRESS, nodeId, now, leaseUntil) == 0) {
+                    return List.<Long>of();
+                }
+                return contentRepository.findClaimed(batch, nodeId, Status.IN_PROGRESS, leaseUntil);
+            });
+            if (ids != null) {
+                claimed.addAll(ids);
+                held.addAll(ids);
+            }
+        }
+        return claimed;
+    }
+
+    public boolean holds(Long contentId) {
+        return held.contains(contentId);
+    }
+
+    /**
+     * Queues the outcome; the lease is dropped when it is flushed. The returned future completes once the
+     * status is written, or skipped because the lease was lost meanwhile.
+     */
+    public CompletableFuture<Void> release(Long contentId, Status status) {
+        PendingRelease release = new PendingRelease(contentId, new CompletableFuture<>());
+        boolean full;
+        synchronized (this) {
+            pendingReleases.computeIfAbsent(status, s -> new ArrayList<>()).add(release);
+            full = ++pendingCount >= batchSize;
+        }
+        if (full) flush();
+        return release.written();
+    }
+
+    /**
+     * Writes the buffered outcomes. Leases stay held, and renewed, until their row is written.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${newsletter.dispatch.status.flush-interval-ms:200}")
+    public void flush() {
+        Map<Status, List<PendingRelease>> releases;
+        synchronized (this) {
+            if (pendingCount == 0) return;
+            releases = pendingReleases;
+            pendingReleases = new EnumMap<>(Status.class);
+            pendingCount = 0;
+        }
+        releases.forEach((status, pending) -> {
+            for (int i = 0; i < pending.size(); i += batchSize) {
+                List<PendingRelease> batch = pending.subList(i, Math.min(i + batchSize, pending.size()));
+                try {
+                    write(status, batch);
+                } catch (RuntimeException e) {
+                    // Only this batch is retried; the ones before it are written and their futures completed
+                    log.warn("Status write-back failed status={} rows={} error={}", status, batch.size(), e.toString());
+                    synchronized (this) {
+                        pendingReleases.computeIfAbsent(status, s -> new ArrayList<>()).addAll(batch);
+                        pendingCount += batch.size();
+                    }
+                }
+            }
+        });
+    }
+
+    private void write(Status status, List<PendingRelease> batch) {
+        List<Long> ids = batch.stream().map(PendingRelease::contentId).toList();
+        int released = contentRepository.releaseAll(ids, nodeId, Status.IN_PROGRESS, status, status == Status.SENT);
+        if (released < ids.size()) {
+            log.warn("Status write-back skipped rows whose lease was lost status={} lost={}",
+                    status, ids.size() - released);
+        }
+        for (PendingRelease release : batch) {
+            held.remove(release.contentId());
+            release.written().complete(null);
+        }
+    }
+
+    private synchronized LocalDateTime nextLeaseUntil(LocalDateTime now) {
+        // Millisecond precision so the value reads back equal from the database
+        LocalDateTime leaseUntil = now.plusSeconds(leaseSeconds).truncatedTo(ChronoUnit.MILLIS);
+        if (!leaseUntil.isAfter(lastLeaseUntil)) leaseUntil = lastLeaseUntil.plus(1, ChronoUnit.MILLIS);
+        lastLeaseUntil = leaseUntil;
+        return leaseUntil;
+    }
+
+    @Scheduled(fixedDelayString = "${newsletter.dispatch.heartbeat-interval-ms:20000}")
+    public void heartbeat() {
+        if (held.isEmpty()) return;
+        List<Long> ids = List.copyOf(held);
+        contentRepository.renewLeases(ids, nodeId, Status.IN_PROGRESS, LocalDateTime.now().plusSeconds(leaseSeconds));
+    }
+
+    private record PendingRelease(Long contentId, CompletableFuture<Void> written) {
+    }
+}
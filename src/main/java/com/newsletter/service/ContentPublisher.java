@@ -1,11 +1,23 @@
 package com.newsletter.service;
 
+import com.newsletter.async.FanOutExecutor;
+import com.newsletter.dto.SubscriberEmail;
+import com.newsletter.metrics.DispatchMetrics;
 import com.newsletter.model.*;
-import com.newsletter.repository.SubscriberRepository;
+import com.newsletter.ratelimit.DomainRateLimiter;
+import com.newsletter.template.CompiledTemplate;
+import com.newsletter.template.TemplateCompiler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
 import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Publishes content updates to subscribers of that topic.
@@ -14,21 +26,226 @@ import java.util.List;
 public class ContentPublisher {
 
     @Autowired
-    private SubscriberRepository subscriberRepository;
+    private SubscriberService subscriberService;
+
+    @Autowired
+    private FanOutExecutor fanOutExecutor;
+
+    @Autowired
+    private DeliveryLedger deliveryLedger;
+
+    @Autowired
+    private TemplateCompiler templateCompiler;
+
+    @Autowired
+    private DispatchMetrics metrics;
+
+    @Autowired
+    private DomainRateLimiter rateLimiter;
+
+    @Autowired
+    private DeliveryRetryService retryService;
+
+    @Autowired
+    private DispatchSlo dispatchSlo;
+
+    @Value("${newsletter.fanout.page-size:1000}")
+    private int pageSize;
+
+    @Value("${newsletter.mail.batch-size:50}")
+    private int batchSize;
+
+    // Recipients held back per fan-out while their domain is throttled, before the producer stops reading
+    @Value("${newsletter.mail.rate.max-buffered:10000}")
+    private int maxBuffered;
+
+    /**
+     * Prepares a fan-out of the content to its topic's subscribers. Nothing is sent until the returned job's
+     * {@link FanOutJob#runChunk} is called; the job resumes after the content's ledger watermark.
+     */
+    public FanOutJob start(Content content, EmailSenderService emailSender) {
+        long resumeAfter = deliveryLedger.watermark(content.getId());
+        // Parsed and encoded once, shared by every recipient of this content
+        CompiledTemplate template = templateCompiler.compile(content);
+        return new FanOutJob(content, emailSender, template, resumeAfter, Long.MAX_VALUE, true);
+    }
+
+    /**
+     * Prepares a fan-out of one subscriber id range (afterId, upToId] of the content, as sent by a Kafka shard.
+     * The content's watermark belongs to no single range, so it is neither read nor written; a range that runs
+     * again skips its delivered recipients through the ledger.
+     */
+    public FanOutJob start(Content content, EmailSenderService emailSender, long afterId, long upToId) {
+        return new FanOutJob(content, emailSender, templateCompiler.compile(content), afterId, upToId, false);
+    }
+
+    private void submitBatch(FanOut fanOut, EmailSenderService emailSender, List<SubscriberEmail> batch,
+                             Content content, CompiledTemplate template, boolean checkpointed) {
+        long firstId = batch.get(0).getId();
+        CompletableFuture<Void> send = fanOutExecutor.submit(batch.size(),
+                () -> sendEmails(fanOut, emailSender, batch, content, template));
+        fanOut.track(firstId, send, checkpointed
+                ? () -> deliveryLedger.checkpoint(content.getId(), fanOut.watermark())
+                : () -> { });
+    }
 
-    public void notifySubscribers(Content content, EmailSenderService emailSender) {
-        List<Subscriber> subscribers = subscriberRepository.findByTopic(content.getTopic());
-        for (Subscriber subscriber : subscribers) {
-            sendEmail(emailSender, subscriber, content);
+    /**
+     * Sends one batch and records each recipient's outcome in the ledger.
+     * Failed recipients are handed to the retry queue rather than failing the fan-out;
+     * the batch only fails if they could not be queued.
+     */
+    // Returns whether the mail server pushed back, which lowers the fan-out concurrency limit
+    private boolean sendEmails(FanOut fanOut, EmailSenderService emailSender, List<SubscriberEmail> recipients,
+                               Content content, CompiledTemplate template) {
+        Set<Object> failedEmails = Set.of();
+        boolean batchFailed = false;
+        RuntimeException error = null;
+        try {
+            emailSender.sendEmails(template, recipients.stream().map(SubscriberEmail::getEmail).toList());
+        } catch (MailSendException e) {
+            error = e;
+            failedEmails = e.getFailedMessages().keySet();
+            batchFailed = failedEmails.isEmpty();
+        } catch (RuntimeException e) {
+            error = e;
+            batchFailed = true;
         }
+
+        List<SubscriberEmail> failed = new ArrayList<>();
+        for (SubscriberEmail recipient : recipients) {
+            boolean delivered = !batchFailed && !failedEmails.contains(recipient.getEmail());
+            deliveryLedger.record(content.getId(), recipient.getId(),
+                    delivered ? DeliveryStatus.SENT : DeliveryStatus.FAILED);
+            metrics.recipientDone(delivered);
+            if (!delivered) failed.add(recipient);
+        }
+        fanOut.handled(recipients.size());
+        if (!failed.isEmpty()) {
+            // Queued before the batch completes, so the watermark never passes an unqueued failure
+            retryService.schedule(content.getId(), failed, error);
+        }
+        return EmailSenderService.isPushback(error);
     }
 
-    @Async("dispatcherExecutor")
-    private void sendEmail(EmailSenderService emailSender, Subscriber subscriber, Content content) {
-        emailSender.sendEmail(
-                subscriber.getEmail(),
-                "Newsletter: " + content.getTopic().getName(),
-                content.getText()
-        );
+    /**
+     * Producer side of one fan-out, run in chunks so a scheduler can switch to more urgent content between them.
+     * Subscribers are streamed from the roster, filtered against the ledger, and handed to the send queue;
+     * recipients are batched per rate-limit lane and lanes are interleaved, so a throttled domain waits in the
+     * buffer while the others keep sending.
+     */
+    public final class FanOutJob implements FanOutTask {
+
+        private final Content content;
+        private final EmailSenderService emailSender;
+        private final CompiledTemplate template;
+        private final long resumeAfter;
+        private final long upToId;
+        // Only a whole-roster fan-out owns the content's watermark
+        private final boolean checkpointed;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private FanOut fanOut;
+        private SendQueue<String, SubscriberEmail> queue;
+        private SubscriberService.RosterCursor cursor;
+        private boolean finished;
+
+        private FanOutJob(Content content, EmailSenderService emailSender, CompiledTemplate template,
+                          long resumeAfter, long upToId, boolean checkpointed) {
+            this.content = content;
+            this.emailSender = emailSender;
+            this.template = template;
+            this.resumeAfter = resumeAfter;
+            this.upToId = upToId;
+            this.checkpointed = checkpointed;
+        }
+
+        public Content getContent() {
+            return content;
+        }
+
+        @Override
+        public CompletableFuture<Void> completion() {
+            return result;
+        }
+
+        @Override
+        public long inFlight() {
+            return fanOut == null ? 0 : fanOut.inFlight();
+        }
+
+        @Override
+        public long runChunk(int chunkSize) {
+            if (finished) return DONE;
+            if (fanOut == null) begin();
+            try {
+                // Batches left behind by a saturated stage go before the next page is read
+                long backlog = queue.drain(false);
+                if (backlog != 0) return backlog;
+
+                int read = 0;
+                while (read < chunkSize && !cursor.isDone()) {
+                    List<SubscriberEmail> page = cursor.next(pageSize);
+                    if (page.isEmpty()) continue;
+
+                    Set<Long> delivered = deliveryLedger.deliveredBetween(
+                            content.getId(), page.get(0).getId(), page.get(page.size() - 1).getId());
+                    for (SubscriberEmail subscriber : page) {
+                        if (delivered.contains(subscriber.getId())) continue;
+                        String lane = rateLimiter.laneOf(subscriber.getEmail());
+                        queue.add(lane, lane, subscriber);
+                    }
+                    fanOut.seen(page.get(page.size() - 1).getId());
+                    read += page.size();
+
+                    long wait = queue.drain(false);
+                    if (wait != 0) return wait;
+                }
+                if (!cursor.isDone()) return 0;
+
+                long wait = queue.drain(true);
+                if (wait != 0) return wait;
+            } catch (RuntimeException e) {
+                fanOut.fail(e);
+            }
+            finished = true;
+            fanOut.producerDone();
+            return DONE;
+        }
+
+        @Override
+        public void abort(Throwable error) {
+            if (finished) return;
+            if (fanOut == null) begin();
+            fanOut.fail(error);
+            finished = true;
+            fanOut.producerDone();
+        }
+
+        private void begin() {
+            Long contentId = content.getId();
+            metrics.fanOutStarted(content, dispatchSlo.sloOf(content.getEffectivePriority()));
+            fanOut = new FanOut(resumeAfter);
+            // A lane's next batch starts at its head; open it before the page is marked seen
+            queue = new SendQueue<>(rateLimiter, batchSize, maxBuffered,
+                    subscriber -> fanOut.open(subscriber.getId()), fanOutExecutor::hasCapacity,
+                    (lane, batch) -> submitBatch(fanOut, emailSender, batch, content, template, checkpointed));
+            cursor = subscriberService.openRoster(content.getTopic().getId(), resumeAfter, upToId);
+
+            Timer.Sample duration = metrics.startFanOut();
+            Gauge rate = metrics.fanOutRate(contentId, checkpointed ? "all" : "(" + resumeAfter + "," + upToId + "]",
+                    fanOut, FanOut::rate);
+            fanOut.completion().whenComplete((v, ex) -> {
+                Throwable error = ex;
+                try {
+                    metrics.remove(rate);
+                    metrics.fanOutFinished(duration, ex != null);
+                    if (checkpointed) deliveryLedger.checkpoint(contentId, fanOut.watermark());
+                    deliveryLedger.flush();
+                } catch (RuntimeException e) {
+                    if (error == null) error = e;
+                }
+                if (error == null) result.complete(null);
+                else result.completeExceptionally(error);
+            });
+        }
     }
 }
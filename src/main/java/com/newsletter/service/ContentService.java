@@ -2,8 +2,12 @@ package com.newsletter.service;
 
 import com.newsletter.model.Content;
 import com.newsletter.repository.ContentRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 
@@ -11,8 +15,36 @@ import java.util.List;
 public class ContentService {
     @Autowired
     private ContentRepository contentRepository;
-    public Content save(Content content) { return contentRepository.save(content); }
+    @Autowired
+    private ContentDispatcher contentDispatcher;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${newsletter.ingest.chunk-size:500}")
+    private int chunkSize;
+
+    public Content save(Content content) {
+        Content saved = contentRepository.save(content);
+        contentDispatcher.schedule(saved);
+        return saved;
+    }
+
+    /**
+     * Persists contents in one transaction, flushing and clearing the persistence context every chunk
+     * so inserts go out as JDBC batches and memory stays bounded. Items are scheduled after commit.
+     */
     public void saveAll(List<Content> contents) {
-        contentRepository.saveAll(contents);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < contents.size(); i++) {
+                entityManager.persist(contents.get(i));
+                if ((i + 1) % chunkSize == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+        });
+        contents.forEach(contentDispatcher::schedule);
     }
 }
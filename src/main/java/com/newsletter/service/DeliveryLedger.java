@@ -0,0 +1,159 @@
+package com.newsletter.service;
+
+import com.newsletter.model.Delivery;
+import com.newsletter.model.DeliveryStatus;
+import com.newsletter.model.FanOutCheckpoint;
+import com.newsletter.repository.DeliveryRepository;
+import com.newsletter.repository.FanOutCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-behind ledger of per-recipient deliveries and fan-out watermarks.
+ * Outcomes are buffered and written with JDBC batches; a checkpoint is only persisted
+ * after the delivery rows recorded before it, so a resumed fan-out never skips an unrecorded recipient.
+ */
+@Slf4j
+@Service
+public class DeliveryLedger {
+
+    private static final String UPDATE_SQL =
+            "UPDATE delivery SET status = ? WHERE content_id = ? AND subscriber_id = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO delivery (content_id, subscriber_id, status) VALUES (?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DeliveryRepository deliveryRepository;
+
+    @Autowired
+    private FanOutCheckpointRepository checkpointRepository;
+
+    @Value("${newsletter.ledger.batch-size:500}")
+    private int batchSize;
+
+    private final Object writeLock = new Object();
+    private List<Object[]> buffered = new ArrayList<>();
+    private Map<Long, Long> pendingCheckpoints = new HashMap<>();
+
+    /**
+     * Returns the persisted watermark of a content's fan-out, or 0 if it never started.
+     */
+    public long watermark(Long contentId) {
+        return checkpointRepository.findById(contentId).map(FanOutCheckpoint::getWatermark).orElse(0L);
+    }
+
+    /**
+     * Subscriber ids in [fromId, toId] that already received the content.
+     */
+    public Set<Long> deliveredBetween(Long contentId, long fromId, long toId) {
+        return new HashSet<>(deliveryRepository.findSubscriberIds(contentId, fromId, toId, DeliveryStatus.SENT));
+    }
+
+    /**
+     * (content, subscriber) pairs among the given ids that already received their content.
+     */
+    public Set<Delivery.Key> deliveredAmong(Collection<Long> contentIds, Collection<Long> subscriberIds) {
+        Set<Delivery.Key> delivered = new HashSet<>();
+        for (Delivery delivery : deliveryRepository.findByContentIdInAndSubscriberIdInAndStatus(
+                contentIds, subscriberIds, DeliveryStatus.SENT)) {
+            delivered.add(new Delivery.Key(delivery.getContentId(), delivery.getSubscriberId()));
+        }
+        return delivered;
+    }
+
+    public void record(Long contentId, Long subscriberId, DeliveryStatus status) {
+        boolean full;
+        synchronized (this) {
+            buffered.add(new Object[]{status.ordinal(), contentId, subscriberId});
+            full = buffered.size() >= batchSize;
+        }
+        if (full) flush();
+    }
+
+    public synchronized void checkpoint(Long contentId, long watermark) {
+        pendingCheckpoints.merge(contentId, watermark, Math::max);
+    }
+
+    /**
+     * Writes buffered rows, then the checkpoints that were recorded before them. Whatever could not be written
+     * is buffered again for the next flush; checkpoints are held back until their rows are written.
+     */
+    @Scheduled(fixedDelayString = "${newsletter.ledger.flush-interval-ms:1000}")
+    public void flush() {
+        synchronized (this) {
+            if (buffered.isEmpty() && pendingCheckpoints.isEmpty()) return;
+        }
+        // Serialise writers so rows always land before the checkpoints that cover them
+        synchronized (writeLock) {
+            Map<Long, Long> checkpoints;
+            List<Object[]> rows;
+            synchronized (this) {
+                checkpoints = pendingCheckpoints;
+                pendingCheckpoints = new HashMap<>();
+                rows = buffered;
+                buffered = new ArrayList<>();
+            }
+            try {
+                writeRows(rows);
+            } catch (RuntimeException e) {
+                log.warn("Ledger write failed rows={} error={}", rows.size(), e.toString());
+                synchronized (this) {
+                    // Ahead of rows recorded meanwhile, so a later outcome of the same recipient still wins
+                    rows.addAll(buffered);
+                    buffered = rows;
+                    checkpoints.forEach((contentId, watermark) -> pendingCheckpoints.merge(contentId, watermark, Math::max));
+                }
+                return;
+            }
+            for (Map.Entry<Long, Long> checkpoint : checkpoints.entrySet()) {
+                try {
+                    checkpointRepository.save(new FanOutCheckpoint(checkpoint.getKey(), checkpoint.getValue()));
+                } catch (RuntimeException e) {
+                    log.warn("Checkpoint write failed contentId={} error={}", checkpoint.getKey(), e.toString());
+                    synchronized (this) {
+                        pendingCheckpoints.merge(checkpoint.getKey(), checkpoint.getValue(), Math::max);
+                    }
+                }
+            }
+        }
+    }
+
+    // Upsert in two batches: update existing rows (retries), insert the rest
+    private void writeRows(List<Object[]> buffer) {
+        if (buffer.isEmpty()) return;
+        // A recipient retried within one flush interval keeps only its latest outcome
+        Map<List<Object>, Object[]> latest = new LinkedHashMap<>();
+        for (Object[] row : buffer) {
+            latest.put(List.of(row[1], row[2]), row);
+        }
+        List<Object[]> rows = new ArrayList<>(latest.values());
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, rows);
+
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (updated[i] == 0) {
+                Object[] row = rows.get(i);
+                inserts.add(new Object[]{row[1], row[2], row[0]});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+    }
+}
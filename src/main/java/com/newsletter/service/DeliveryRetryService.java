@@ -0,0 +1,350 @@
+package com.newsletter.service;
+
+import com.newsletter.async.FanOutExecutor;
+import com.newsletter.dto.SubscriberEmail;
+import com.newsletter.metrics.DispatchMetrics;
+import com.newsletter.model.Content;
+import com.newsletter.model.DeadLetter;
+import com.newsletter.model.DeliveryRetry;
+import com.newsletter.model.DeliveryStatus;
+import com.newsletter.ratelimit.DomainRateLimiter;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.repository.DeadLetterRepository;
+import com.newsletter.repository.DeliveryRetryRepository;
+import com.newsletter.template.CompiledTemplate;
+import com.newsletter.template.TemplateCompiler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries failed recipients off the dispatch path. Failures are queued in the delivery_retry table with
+ * exponential backoff and jitter; a dedicated worker sends due rows grouped per content, through the same rate
+ * limits and fan-out concurrency limit as a first pass. A recipient that fails newsletter.retry.max-attempts
+ * times is moved to the dead-letter store, from where it can be replayed.
+ */
+@Slf4j
+@Service
+public class DeliveryRetryService {
+
+    // A recipient already queued by an earlier pass of the same content keeps its attempt count
+    private static final String RESCHEDULE_SQL =
+            "UPDATE delivery_retry SET attempts = attempts + 1, email = ?, next_attempt_at = ?, last_error = ? " +
+            "WHERE content_id = ? AND subscriber_id = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO delivery_retry (content_id, subscriber_id, email, attempts, next_attempt_at, last_error) " +
+            "VALUES (?, ?, ?, 1, ?, ?)";
+    private static final String CLAIM_SQL =
+            "UPDATE delivery_retry SET next_attempt_at = ? " +
+            "WHERE content_id = ? AND subscriber_id = ? AND next_attempt_at = ?";
+
+    @Autowired
+    private DeliveryRetryRepository retryRepository;
+
+    @Autowired
+    private DeadLetterRepository deadLetterRepository;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private DeliveryLedger deliveryLedger;
+
+    @Autowired
+    private TemplateCompiler templateCompiler;
+
+    @Autowired
+    private EmailServiceFactory emailServiceFactory;
+
+    @Autowired
+    private DomainRateLimiter rateLimiter;
+
+    @Autowired
+    private FanOutExecutor fanOutExecutor;
+
+    @Autowired
+    private DispatchMetrics metrics;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${newsletter.email.sender}")
+    private String emailSenderType;
+
+    @Value("${newsletter.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${newsletter.retry.initial-backoff-ms:30000}")
+    private long initialBackoffMillis;
+
+    @Value("${newsletter.retry.max-backoff-ms:3600000}")
+    private long maxBackoffMillis;
+
+    @Value("${newsletter.retry.poll-interval-ms:5000}")
+    private long pollIntervalMillis;
+
+    @Value("${newsletter.retry.batch-size:200}")
+    private int pollSize;
+
+    @Value("${newsletter.mail.batch-size:50}")
+    private int batchSize;
+
+    // A claimed row becomes due again after this, should its worker die mid-send
+    @Value("${newsletter.retry.claim-seconds:300}")
+    private long claimSeconds;
+
+    private ScheduledExecutorService worker;
+
+    @PostConstruct
+    void startWorker() {
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "delivery-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.scheduleWithFixedDelay(this::processDue, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopWorker() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Queues recipients whose first send failed. Must complete before the fan-out's watermark passes them.
+     * Upserted in two JDBC batches, like the delivery ledger: existing rows are updated, the rest inserted.
+     */
+    public void schedule(Long contentId, List<SubscriberEmail> recipients, Exception error) {
+        if (recipients.isEmpty()) return;
+        LocalDateTime now = LocalDateTime.now();
+        String lastError = truncate(error);
+        List<Object[]> rows = new ArrayList<>(recipients.size());
+        for (SubscriberEmail recipient : recipients) {
+            rows.add(new Object[]{recipient.getEmail(),
+                    Timestamp.valueOf(now.plus(backoff(1), ChronoUnit.MILLIS)), lastError,
+                    contentId, recipient.getId()});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(RESCHEDULE_SQL, rows);
+
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (updated[i] == 0) {
+                Object[] row = rows.get(i);
+                inserts.add(new Object[]{row[3], row[4], row[0], row[1], row[2]});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+        metrics.retry("scheduled", rows.size());
+    }
+
+    /**
+     * Moves one dead letter back onto the retry queue, due now, with a fresh attempt budget.
+     */
+    public boolean replay(Long deadLetterId) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                deadLetterRepository.findById(deadLetterId).map(deadLetter -> {
+                    requeue(deadLetter);
+                    return true;
+                }).orElse(false)));
+    }
+
+    /**
+     * Replays every dead letter of a content, a keyset page per transaction. Returns how many were queued.
+     */
+    public int replayContent(Long contentId) {
+        int replayed = 0;
+        long afterId = 0;
+        while (true) {
+            long from = afterId;
+            List<DeadLetter> page = transactionTemplate.execute(status -> {
+                List<DeadLetter> deadLetters = deadLetterRepository.findPageByContent(
+                        contentId, from, PageRequest.ofSize(pollSize));
+                deadLetters.forEach(this::requeue);
+                return deadLetters;
+            });
+            if (page == null || page.isEmpty()) return replayed;
+            replayed += page.size();
+            if (page.size() < pollSize) return replayed;
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private void requeue(DeadLetter deadLetter) {
+        deadLetterRepository.delete(deadLetter);
+        retryRepository.save(new DeliveryRetry(deadLetter.getContentId(), deadLetter.getSubscriberId(),
+                deadLetter.getEmail(), 0, LocalDateTime.now(), deadLetter.getLastError()));
+        metrics.retry("replayed", 1);
+    }
+
+    void processDue() {
+        try {
+            while (processBatch() == pollSize) {
+                // Keep going while a full page was due
+            }
+        } catch (RuntimeException e) {
+            log.warn("Retry pass failed error={}", e.toString());
+        }
+    }
+
+    private int processBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<DeliveryRetry> due = retryRepository.findDue(now, PageRequest.ofSize(pollSize));
+
+        // Claims a due row by moving its next attempt past the claim window; only one worker sees the old value
+        Timestamp claimUntil = Timestamp.valueOf(now.plusSeconds(claimSeconds));
+        List<Object[]> claims = new ArrayList<>(due.size());
+        for (DeliveryRetry retry : due) {
+            claims.add(new Object[]{claimUntil, retry.getContentId(), retry.getSubscriberId(),
+                    Timestamp.valueOf(retry.getNextAttemptAt())});
+        }
+        int[] claimed = due.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(CLAIM_SQL, claims);
+
+        Map<Long, List<DeliveryRetry>> byContent = new LinkedHashMap<>();
+        for (int i = 0; i < due.size(); i++) {
+            if (claimed[i] == 1) {
+                DeliveryRetry retry = due.get(i);
+                byContent.computeIfAbsent(retry.getContentId(), id -> new ArrayList<>()).add(retry);
+            }
+        }
+        byContent.forEach(this::retry);
+        return due.size();
+    }
+
+    /**
+     * Sends one content's due rows the way a first pass does: batched per rate-limit lane through a {@link SendQueue},
+     * and submitted to the {@link FanOutExecutor}, so retries count against the adaptive limit and its pushback.
+     * Rows left throttled, or waiting for a free slot, are pushed back rather than blocking the worker.
+     */
+    private void retry(Long contentId, List<DeliveryRetry> retries) {
+        Optional<Content> content = contentRepository.findById(contentId);
+        if (content.isEmpty()) {
+            retries.forEach(retry -> deadLetter(retry, "Content no longer exists"));
+            return;
+        }
+
+        CompiledTemplate template = templateCompiler.compile(content.get());
+        EmailSenderService emailSender = emailServiceFactory.getEmailSender(emailSenderType);
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        Set<DeliveryRetry> submitted = Collections.newSetFromMap(new IdentityHashMap<>());
+        SendQueue<String, DeliveryRetry> queue = new SendQueue<>(rateLimiter, batchSize, Integer.MAX_VALUE,
+                retry -> { }, fanOutExecutor::hasCapacity, (lane, batch) -> {
+                    submitted.addAll(batch);
+                    sends.add(fanOutExecutor.submit(batch.size(), () -> send(contentId, emailSender, template, batch)));
+                });
+        for (DeliveryRetry retry : retries) {
+            String lane = rateLimiter.laneOf(retry.getEmail());
+            queue.add(lane, lane, retry);
+        }
+
+        long wait = queue.drain(true);
+        if (wait != 0) {
+            LocalDateTime next = wait == FanOutTask.SATURATED
+                    ? LocalDateTime.now().plus(pollIntervalMillis, ChronoUnit.MILLIS)
+                    : LocalDateTime.now().plusNanos(wait);
+            for (DeliveryRetry retry : retries) {
+                if (submitted.contains(retry)) continue;
+                retry.setNextAttemptAt(next);
+                retryRepository.save(retry);
+            }
+        }
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+    }
+
+    // Returns whether the mail server pushed back, which lowers the fan-out concurrency limit
+    private boolean send(Long contentId, EmailSenderService emailSender, CompiledTemplate template,
+                         List<DeliveryRetry> batch) {
+        Map<Object, Exception> failed = Map.of();
+        RuntimeException error = null;
+        RuntimeException batchError = null;
+        try {
+            emailSender.sendEmails(template, batch.stream().map(DeliveryRetry::getEmail).toList());
+        } catch (MailSendException e) {
+            error = e;
+            failed = e.getFailedMessages();
+            if (failed.isEmpty()) batchError = e;
+        } catch (RuntimeException e) {
+            error = e;
+            batchError = e;
+        }
+
+        for (DeliveryRetry retry : batch) {
+            Exception recipientError = batchError != null ? batchError : failed.get(retry.getEmail());
+            if (recipientError == null) {
+                deliveryLedger.record(contentId, retry.getSubscriberId(), DeliveryStatus.SENT);
+                retryRepository.delete(retry);
+                metrics.retry("succeeded", 1);
+            } else {
+                failedAgain(retry, recipientError);
+            }
+        }
+        return EmailSenderService.isPushback(error);
+    }
+
+    private void failedAgain(DeliveryRetry retry, Exception error) {
+        int attempts = retry.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            retry.setAttempts(attempts);
+            deadLetter(retry, truncate(error));
+            return;
+        }
+        retry.setAttempts(attempts);
+        retry.setLastError(truncate(error));
+        retry.setNextAttemptAt(LocalDateTime.now().plus(backoff(attempts), ChronoUnit.MILLIS));
+        retryRepository.save(retry);
+        metrics.retry("rescheduled", 1);
+    }
+
+    private void deadLetter(DeliveryRetry retry, String error) {
+        transactionTemplate.executeWithoutResult(status -> {
+            deadLetterRepository.save(new DeadLetter(null, retry.getContentId(), retry.getSubscriberId(),
+                    retry.getEmail(), retry.getAttempts(), error, LocalDateTime.now()));
+            retryRepository.delete(retry);
+        });
+        metrics.retry("dead", 1);
+        log.warn("Delivery dead-lettered contentId={} subscriberId={} attempts={} error={}",
+                retry.getContentId(), retry.getSubscriberId(), retry.getAttempts(), error);
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half the delay is fixed, the other half random,
+     * so recipients that failed together do not retry in lockstep.
+     */
+    private long backoff(int attempt) {
+        long delay = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static String truncate(Exception error) {
+        String message = error.toString();
+        return message.length() <= 500 ? message : message.substring(0, 500);
+    }
+}
@@ -0,0 +1,139 @@
+package com.newsletter.service;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.Priority;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds due content for newsletter.digest.window-seconds and fans out everything that came due meanwhile together,
+ * so a subscriber of several of the items gets one digest email instead of one email each. Only content at or
+ * below newsletter.digest.max-priority is held; more urgent content is never delayed. Disabled by default.
+ */
+@Slf4j
+@Service
+public class DigestCoalescer {
+
+    @Autowired
+    private FanOutScheduler fanOutScheduler;
+
+    @Autowired
+    private DigestPublisher digestPublisher;
+
+    @Autowired
+    private DispatchSlo dispatchSlo;
+
+    @Value("${newsletter.digest.enabled:false}")
+    private boolean enabled;
+
+    @Value("${newsletter.digest.window-seconds:30}")
+    private long windowSeconds;
+
+    // A window is closed early once it holds this many items
+    @Value("${newsletter.digest.max-items:20}")
+    private int maxItems;
+
+    @Value("${newsletter.digest.max-priority:NORMAL}")
+    private Priority maxPriority;
+
+    private final List<Held> window = new ArrayList<>();
+    private long windowNumber;
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    void startTimer() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "digest-window");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopTimer() {
+        // Held content keeps its lease, and is dispatched again once the lease expires
+        timer.shutdownNow();
+    }
+
+    public boolean accepts(Content content) {
+        return enabled && content.getEffectivePriority().compareTo(maxPriority) >= 0;
+    }
+
+    /**
+     * Adds claimed content to the open window, opening one if needed. The returned future completes once the
+     * content's recipients have all finished, exceptionally if the fan-out it joined failed.
+     */
+    public CompletableFuture<Void> offer(Content content, EmailSenderService emailSender) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        List<Held> closed = null;
+        synchronized (this) {
+            if (window.isEmpty()) {
+                long number = windowNumber;
+                timer.schedule(() -> closeWindow(number), windowSeconds, TimeUnit.SECONDS);
+            }
+            window.add(new Held(content, emailSender, completion));
+            if (window.size() >= Math.min(maxItems, Long.SIZE)) closed = takeWindow();
+        }
+        if (closed != null) dispatch(closed);
+        return completion;
+    }
+
+    private void closeWindow(long number) {
+        List<Held> closed;
+        synchronized (this) {
+            // Already closed early because it filled up
+            if (number != windowNumber || window.isEmpty()) return;
+            closed = takeWindow();
+        }
+        dispatch(closed);
+    }
+
+    private List<Held> takeWindow() {
+        List<Held> closed = new ArrayList<>(window);
+        window.clear();
+        windowNumber++;
+        return closed;
+    }
+
+    private void dispatch(List<Held> group) {
+        CompletableFuture<Void> fanOut;
+        try {
+            EmailSenderService emailSender = group.get(0).emailSender;
+            if (group.size() == 1) {
+                fanOut = fanOutScheduler.submit(group.get(0).content, emailSender);
+            } else {
+                List<Content> items = group.stream().map(Held::content).toList();
+                LocalDateTime deadline = items.stream().map(dispatchSlo::deadlineOf)
+                        .min(Comparator.naturalOrder()).orElseThrow();
+                Priority priority = items.stream().map(Content::getEffectivePriority)
+                        .min(Comparator.naturalOrder()).orElseThrow();
+                List<Long> ids = items.stream().map(Content::getId).toList();
+                log.info("Digest window closed contentIds={}", ids);
+                fanOut = fanOutScheduler.submit(digestPublisher.start(items, emailSender),
+                        "contentIds=" + ids, deadline, priority);
+            }
+        } catch (RuntimeException e) {
+            fanOut = CompletableFuture.failedFuture(e);
+        }
+        fanOut.whenComplete((v, ex) -> group.forEach(held -> {
+            if (ex == null) held.completion.complete(null);
+            else held.completion.completeExceptionally(ex);
+        }));
+    }
+
+    private record Held(Content content, EmailSenderService emailSender, CompletableFuture<Void> completion) {
+    }
+}
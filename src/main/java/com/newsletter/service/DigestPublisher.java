@@ -0,0 +1,312 @@
+package com.newsletter.service;
+
+import com.newsletter.async.FanOutExecutor;
+import com.newsletter.dto.DigestRecipient;
+import com.newsletter.dto.SubscriberEmail;
+import com.newsletter.metrics.DispatchMetrics;
+import com.newsletter.model.Content;
+import com.newsletter.model.Delivery;
+import com.newsletter.model.DeliveryStatus;
+import com.newsletter.ratelimit.DomainRateLimiter;
+import com.newsletter.repository.SubscriberRepository;
+import com.newsletter.template.CompiledTemplate;
+import com.newsletter.template.TemplateCompiler;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fans several content items out together, one email per recipient address. The rosters of all the items' topics
+ * are read ordered by email, so every subscription of an address arrives together; the address gets a digest of
+ * the items it has not received yet, or the plain email when only one is left. Outcomes are recorded in the ledger
+ * per (content, subscriber), so each item's status, retries and resume work as for a single fan-out.
+ */
+@Service
+public class DigestPublisher {
+
+    @Autowired
+    private SubscriberRepository subscriberRepository;
+
+    @Autowired
+    private FanOutExecutor fanOutExecutor;
+
+    @Autowired
+    private DeliveryLedger deliveryLedger;
+
+    @Autowired
+    private TemplateCompiler templateCompiler;
+
+    @Autowired
+    private DispatchMetrics metrics;
+
+    @Autowired
+    private DomainRateLimiter rateLimiter;
+
+    @Autowired
+    private DeliveryRetryService retryService;
+
+    @Autowired
+    private DispatchSlo dispatchSlo;
+
+    @Value("${newsletter.fanout.page-size:1000}")
+    private int pageSize;
+
+    @Value("${newsletter.mail.batch-size:50}")
+    private int batchSize;
+
+    @Value("${newsletter.mail.rate.max-buffered:10000}")
+    private int maxBuffered;
+
+    /**
+     * Prepares a digest fan-out of the items. Nothing is sent until the job's chunks run.
+     */
+    public DigestJob start(List<Content> items, EmailSenderService emailSender) {
+        // Item sets are bit masks
+        if (items.size() > Long.SIZE) {
+            throw new IllegalArgumentException("A digest holds at most " + Long.SIZE + " items, got " + items.size());
+        }
+        List<CompiledTemplate> templates = new ArrayList<>(items.size());
+        for (Content content : items) {
+            templates.add(templateCompiler.compile(content));
+        }
+        return new DigestJob(List.copyOf(items), templates, emailSender);
+    }
+
+    public final class DigestJob implements FanOutTask {
+
+        private final List<Content> items;
+        private final List<CompiledTemplate> templates;
+        private final EmailSenderService emailSender;
+        private final List<Long> contentIds = new ArrayList<>();
+        private final Set<Long> topicIds = new LinkedHashSet<>();
+        // Items of each topic, as a mask over the item indexes
+        private final Map<Long, Long> itemsByTopic = new HashMap<>();
+        // Digest templates per item mask; only touched by the producer
+        private final Map<Long, CompiledTemplate> digests = new HashMap<>();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private FanOut fanOut;
+        private SendQueue<LaneKey, Recipient> queue;
+        private String afterEmail = "";
+        private long afterTopicId;
+        private boolean exhausted;
+        // The address of the last row read, whose subscriptions may continue on the next page
+        private Recipient current;
+        private boolean finished;
+
+        private DigestJob(List<Content> items, List<CompiledTemplate> templates, EmailSenderService emailSender) {
+            this.items = items;
+            this.templates = templates;
+            this.emailSender = emailSender;
+            for (int i = 0; i < items.size(); i++) {
+                Long topicId = items.get(i).getTopic().getId();
+                contentIds.add(items.get(i).getId());
+                topicIds.add(topicId);
+                itemsByTopic.merge(topicId, 1L << i, (a, b) -> a | b);
+            }
+        }
+
+        public List<Content> getItems() {
+            return items;
+        }
+
+        @Override
+        public CompletableFuture<Void> completion() {
+            return result;
+        }
+
+        @Override
+        public long inFlight() {
+            return fanOut == null ? 0 : fanOut.inFlight();
+        }
+
+        @Override
+        public long runChunk(int chunkSize) {
+            if (finished) return DONE;
+            if (fanOut == null) begin();
+            try {
+                // Batches left behind by a saturated stage go before the next page is read
+                long backlog = queue.drain(false);
+                if (backlog != 0) return backlog;
+
+                int read = 0;
+                while (read < chunkSize && !exhausted) {
+                    List<DigestRecipient> page = subscriberRepository.findDigestPage(
+                            topicIds, afterEmail, afterTopicId, PageRequest.ofSize(pageSize));
+                    if (page.size() < pageSize) exhausted = true;
+                    if (page.isEmpty()) break;
+
+                    DigestRecipient last = page.get(page.size() - 1);
+                    afterEmail = last.getEmail();
+                    afterTopicId = last.getTopicId();
+                    read(page);
+                    read += page.size();
+
+                    long wait = queue.drain(false);
+                    if (wait != 0) return wait;
+                }
+                if (!exhausted) return 0;
+
+                if (current != null) {
+                    enqueue(current);
+                    current = null;
+                }
+                long wait = queue.drain(true);
+                if (wait != 0) return wait;
+            } catch (RuntimeException e) {
+                fanOut.fail(e);
+            }
+            finished = true;
+            fanOut.producerDone();
+            return DONE;
+        }
+
+        @Override
+        public void abort(Throwable error) {
+            if (finished) return;
+            if (fanOut == null) begin();
+            fanOut.fail(error);
+            finished = true;
+            fanOut.producerDone();
+        }
+
+        private void begin() {
+            for (Content content : items) {
+                metrics.fanOutStarted(content, dispatchSlo.sloOf(content.getEffectivePriority()));
+            }
+            fanOut = new FanOut(0);
+            queue = new SendQueue<>(rateLimiter, batchSize, maxBuffered, recipient -> { },
+                    fanOutExecutor::hasCapacity, this::submitBatch);
+
+            Timer.Sample duration = metrics.startFanOut();
+            fanOut.completion().whenComplete((v, ex) -> {
+                Throwable error = ex;
+                try {
+                    metrics.fanOutFinished(duration, ex != null);
+                    deliveryLedger.flush();
+                } catch (RuntimeException e) {
+                    if (error == null) error = e;
+                }
+                if (error == null) result.complete(null);
+                else result.completeExceptionally(error);
+            });
+        }
+
+        /**
+         * Folds the page's rows into per-address recipients, leaving out items an address already received.
+         */
+        private void read(List<DigestRecipient> page) {
+            List<Long> subscriberIds = page.stream().map(DigestRecipient::getId).toList();
+            Set<Delivery.Key> delivered = deliveryLedger.deliveredAmong(contentIds, subscriberIds);
+            for (DigestRecipient row : page) {
+                if (current != null && !current.email.equals(row.getEmail())) {
+                    enqueue(current);
+                    current = null;
+                }
+                if (current == null) current = new Recipient(row.getEmail(), items.size());
+
+                long topicItems = itemsByTopic.getOrDefault(row.getTopicId(), 0L);
+                for (int i = 0; i < items.size(); i++) {
+                    if ((topicItems & (1L << i)) == 0) continue;
+                    if (delivered.contains(new Delivery.Key(contentIds.get(i), row.getId()))) continue;
+                    current.items |= 1L << i;
+                    current.subscriberIds[i] = row.getId();
+                }
+            }
+        }
+
+        private void enqueue(Recipient recipient) {
+            if (recipient.items == 0) return;
+            String lane = rateLimiter.laneOf(recipient.email);
+            queue.add(new LaneKey(recipient.items, lane), lane, recipient);
+        }
+
+        private void submitBatch(LaneKey key, List<Recipient> batch) {
+            CompiledTemplate template = templateOf(key.items());
+            fanOut.track(fanOutExecutor.submit(batch.size(), () -> sendEmails(batch, key.items(), template)));
+        }
+
+        private CompiledTemplate templateOf(long itemMask) {
+            if (Long.bitCount(itemMask) == 1) return templates.get(Long.numberOfTrailingZeros(itemMask));
+            return digests.computeIfAbsent(itemMask, mask -> {
+                List<Content> selected = new ArrayList<>();
+                List<CompiledTemplate> compiled = new ArrayList<>();
+                for (int i = 0; i < items.size(); i++) {
+                    if ((mask & (1L << i)) == 0) continue;
+                    selected.add(items.get(i));
+                    compiled.add(templates.get(i));
+                }
+                return templateCompiler.compileDigest(selected, compiled);
+            });
+        }
+
+        /**
+         * Sends one batch and records the outcome of every item of each recipient in the ledger.
+         * Failed recipients are queued for retry per item, where they get that item's own email.
+         */
+        // Returns whether the mail server pushed back, which lowers the fan-out concurrency limit
+        private boolean sendEmails(List<Recipient> recipients, long itemMask, CompiledTemplate template) {
+            Set<Object> failedEmails = Set.of();
+            boolean batchFailed = false;
+            RuntimeException error = null;
+            try {
+                emailSender.sendEmails(template, recipients.stream().map(r -> r.email).toList());
+            } catch (MailSendException e) {
+                error = e;
+                failedEmails = e.getFailedMessages().keySet();
+                batchFailed = failedEmails.isEmpty();
+            } catch (RuntimeException e) {
+                error = e;
+                batchFailed = true;
+            }
+
+            int itemCount = Long.bitCount(itemMask);
+            Map<Integer, List<SubscriberEmail>> failed = new HashMap<>();
+            for (Recipient recipient : recipients) {
+                boolean delivered = !batchFailed && !failedEmails.contains(recipient.email);
+                for (int i = 0; i < items.size(); i++) {
+                    if ((itemMask & (1L << i)) == 0) continue;
+                    deliveryLedger.record(contentIds.get(i), recipient.subscriberIds[i],
+                            delivered ? DeliveryStatus.SENT : DeliveryStatus.FAILED);
+                    metrics.recipientDone(delivered);
+                    if (!delivered) {
+                        failed.computeIfAbsent(i, k -> new ArrayList<>())
+                                .add(new SubscriberEmail(recipient.subscriberIds[i], recipient.email));
+                    }
+                }
+                if (delivered && itemCount > 1) metrics.digestSent(itemCount);
+            }
+            fanOut.handled(recipients.size());
+            for (Map.Entry<Integer, List<SubscriberEmail>> entry : failed.entrySet()) {
+                retryService.schedule(contentIds.get(entry.getKey()), entry.getValue(), error);
+            }
+            return EmailSenderService.isPushback(error);
+        }
+    }
+
+    // Recipients of one lane share the item set, hence the template, and the rate-limit lane
+    private record LaneKey(long items, String rateLane) {
+    }
+
+    private static final class Recipient {
+        private final String email;
+        // Subscriber id per item index, for the ledger; only set for items in the mask
+        private final long[] subscriberIds;
+        private long items;
+
+        private Recipient(String email, int itemCount) {
+            this.email = email;
+            this.subscriberIds = new long[itemCount];
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.newsletter.service;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.Priority;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Dispatch-lag SLO of each priority class. A content's deadline is its scheduledTime plus its class's SLO;
+ * fan-outs are ordered earliest deadline first, so urgent content overtakes bulk content due at the same time
+ * while bulk content that is far past its own deadline is not starved forever.
+ */
+@Component
+public class DispatchSlo {
+
+    private final Map<Priority, Duration> slos = new EnumMap<>(Priority.class);
+
+    public DispatchSlo(@Value("${newsletter.dispatch.slo-seconds.critical:30}") long critical,
+                       @Value("${newsletter.dispatch.slo-seconds.high:120}") long high,
+                       @Value("${newsletter.dispatch.slo-seconds.normal:600}") long normal,
+                       @Value("${newsletter.dispatch.slo-seconds.bulk:3600}") long bulk) {
+        slos.put(Priority.CRITICAL, Duration.ofSeconds(critical));
+        slos.put(Priority.HIGH, Duration.ofSeconds(high));
+        slos.put(Priority.NORMAL, Duration.ofSeconds(normal));
+        slos.put(Priority.BULK, Duration.ofSeconds(bulk));
+    }
+
+    public Duration sloOf(Priority priority) {
+        return slos.get(priority);
+    }
+
+    public LocalDateTime deadlineOf(Content content) {
+        LocalDateTime scheduled = content.getScheduledTime() == null ? LocalDateTime.now() : content.getScheduledTime();
+        return scheduled.plus(sloOf(content.getEffectivePriority()));
+    }
+
+    /**
+     * Earliest deadline first, then the more urgent class.
+     */
+    public Comparator<Content> dispatchOrder() {
+        return Comparator.comparing(this::deadlineOf)
+                .thenComparing(Content::getEffectivePriority);
+    }
+}
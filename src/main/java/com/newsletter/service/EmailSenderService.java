@@ -1,8 +1,67 @@
 package com.newsletter.service;
 
+import com.newsletter.template.CompiledTemplate;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.springframework.mail.MailSendException;
+
+import java.util.List;
+
 /**
  * Strategy Interface for sending emails.
  */
 public interface EmailSenderService {
     void sendEmail(String to, String subject, String body);
+
+    /**
+     * Sends the same message to a chunk of recipients, one email each.
+     * Implementations that can reuse a connection across the chunk should override this.
+     */
+    default void sendEmails(List<String> recipients, String subject, String body) {
+        for (String to : recipients) {
+            sendEmail(to, subject, body);
+        }
+    }
+
+    /**
+     * Sends a compiled template to a chunk of recipients, personalised per recipient.
+     * Implementations that can splice pre-encoded MIME parts should override this.
+     */
+    default void sendEmails(CompiledTemplate template, List<String> recipients) {
+        for (String to : recipients) {
+            sendEmail(to, template.subjectFor(to), template.bodyFor(to));
+        }
+    }
+
+    /**
+     * Whether a send error shows the mail server pushing back (a transient 4xx reply, a refused or dropped
+     * connection, a timeout) rather than refusing particular recipients with a permanent 5xx.
+     */
+    static boolean isPushback(RuntimeException error) {
+        if (error == null) return false;
+        if (error instanceof MailSendException mailError && !mailError.getFailedMessages().isEmpty()) {
+            return mailError.getFailedMessages().values().stream().anyMatch(EmailSenderService::isRecipientPushback);
+        }
+        return isRecipientPushback(error);
+    }
+
+    /**
+     * Like {@link #isPushback(RuntimeException)}, for the error of one recipient.
+     */
+    static boolean isRecipientPushback(Exception error) {
+        boolean refused = false;
+        // MessagingException chains its nested exceptions as causes
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            int code = t instanceof SMTPAddressFailedException e ? e.getReturnCode()
+                    : t instanceof SMTPSendFailedException e ? e.getReturnCode()
+                    : t instanceof SMTPSenderFailedException e ? e.getReturnCode()
+                    : 0;
+            if (code >= 400 && code < 500) return true;
+            if (code >= 500 || t instanceof AddressException || t instanceof SendFailedException) refused = true;
+        }
+        return !refused;
+    }
 }
@@ -10,14 +10,17 @@ import org.springframework.stereotype.Component;
 public class EmailServiceFactory {
 
     private final GmailEmailSender gmailSender;
+    private final RoutingEmailSender routingSender;
 
     @Autowired
-    public EmailServiceFactory(GmailEmailSender gmailSender) {
+    public EmailServiceFactory(GmailEmailSender gmailSender, RoutingEmailSender routingSender) {
         this.gmailSender = gmailSender;
+        this.routingSender = routingSender;
     }
 
     public EmailSenderService getEmailSender(String type) {
         if ("gmail".equalsIgnoreCase(type)) return gmailSender;
+        if ("routing".equalsIgnoreCase(type)) return routingSender;
         throw new IllegalArgumentException("Unsupported email sender type");
     }
 }
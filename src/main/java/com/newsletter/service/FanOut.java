@@ -0,0 +1,101 @@
+package com.newsletter.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Counts outstanding sends without holding one future per recipient,
+ * and derives the watermark below which every batch has been delivered.
+ * The producer owns one slot until it has submitted everything.
+ */
+final class FanOut {
+    private final AtomicLong pending = new AtomicLong(1);
+    private final AtomicReference<Throwable> firstError = new AtomicReference<>();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    // First subscriber id of every batch not yet delivered, including batches still buffered in the
+    // send queue; failed batches stay and pin the watermark
+    private final ConcurrentSkipListSet<Long> openBatches = new ConcurrentSkipListSet<>();
+    private volatile long lastSeenId;
+    private final AtomicLong handled = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    FanOut(long resumeAfter) {
+        this.lastSeenId = resumeAfter;
+    }
+
+    void handled(int recipients) {
+        handled.addAndGet(recipients);
+    }
+
+    double rate() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : handled.get() / seconds;
+    }
+
+    void open(long firstId) {
+        openBatches.add(firstId);
+    }
+
+    void seen(long lastId) {
+        lastSeenId = lastId;
+    }
+
+    long inFlight() {
+        // Minus the producer's own slot while it is still submitting
+        return Math.max(0, pending.get() - 1);
+    }
+
+    CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    long watermark() {
+        // Read lastSeenId first: any batch it covers was opened before it was raised
+        long seen = lastSeenId;
+        Long lowestOpen = openBatches.isEmpty() ? null : openBatches.first();
+        return lowestOpen == null ? seen : Math.min(seen, lowestOpen - 1);
+    }
+
+    void track(long firstId, CompletableFuture<Void> send, Runnable onDelivered) {
+        pending.incrementAndGet();
+        send.whenComplete((v, ex) -> {
+            if (ex != null) {
+                fail(ex);
+            } else {
+                openBatches.remove(firstId);
+                onDelivered.run();
+            }
+            release();
+        });
+    }
+
+    /**
+     * Tracks a send that takes no part in the watermark.
+     */
+    void track(CompletableFuture<Void> send) {
+        pending.incrementAndGet();
+        send.whenComplete((v, ex) -> {
+            if (ex != null) fail(ex);
+            release();
+        });
+    }
+
+    void fail(Throwable error) {
+        firstError.compareAndSet(null, error);
+    }
+
+    CompletableFuture<Void> producerDone() {
+        release();
+        return completion;
+    }
+
+    private void release() {
+        if (pending.decrementAndGet() == 0) {
+            Throwable error = firstError.get();
+            if (error == null) completion.complete(null);
+            else completion.completeExceptionally(error);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.newsletter.service;
+
+import com.newsletter.async.FanOutExecutor;
+import com.newsletter.metrics.DispatchMetrics;
+import com.newsletter.model.Content;
+import com.newsletter.model.Priority;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the fan-outs of every topic on one producer thread, a chunk at a time, earliest dispatch deadline first.
+ * The most urgent runnable fan-out is picked again after every chunk, so critical content arriving during a large
+ * bulk send starts after at most one chunk. A fan-out with newsletter.dispatch.max-inflight-batches batches still
+ * queued in the fan-out stage is passed over until some finish, so bulk batches cannot pile up in the executor
+ * queue ahead of urgent ones. A chunk hands back as soon as the fan-out stage has no free slot, and no fan-out
+ * runs until one frees, so the producer thread never sits inside a bulk chunk while urgent content waits.
+ */
+@Slf4j
+@Service
+public class FanOutScheduler {
+
+    private static final long BLOCKED_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final Comparator<Entry> ORDER = Comparator.comparing((Entry e) -> e.deadline)
+            .thenComparing(e -> e.priority)
+            .thenComparingLong(e -> e.sequence);
+
+    @Autowired
+    private ContentPublisher contentPublisher;
+
+    @Autowired
+    private DispatchSlo dispatchSlo;
+
+    @Autowired
+    private DispatchMetrics metrics;
+
+    @Autowired
+    private FanOutExecutor fanOutExecutor;
+
+    // Subscribers read per turn before the scheduler looks for more urgent content
+    @Value("${newsletter.dispatch.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${newsletter.dispatch.max-inflight-batches:64}")
+    private int maxInFlightBatches;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final List<Entry> entries = new ArrayList<>();
+    private long sequence;
+    private Thread producer;
+
+    @PostConstruct
+    void startProducer() {
+        producer = new Thread(this::run, "fan-out-scheduler");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    @PreDestroy
+    void stopProducer() {
+        // Unfinished fan-outs keep their lease and watermark, and resume once the lease expires
+        producer.interrupt();
+    }
+
+    /**
+     * Queues the content's fan-out. The returned future completes once every recipient has finished,
+     * exceptionally if the fan-out failed.
+     */
+    public CompletableFuture<Void> submit(Content content, EmailSenderService emailSender) {
+        return submit(contentPublisher.start(content, emailSender), "contentId=" + content.getId(),
+                dispatchSlo.deadlineOf(content), content.getEffectivePriority());
+    }
+
+    /**
+     * Queues the fan-out of one subscriber id range (afterId, upToId] of the content.
+     */
+    public CompletableFuture<Void> submit(Content content, EmailSenderService emailSender, long afterId, long upToId) {
+        return submit(contentPublisher.start(content, emailSender, afterId, upToId),
+                "contentId=" + content.getId() + " range=(" + afterId + "," + upToId + "]",
+                dispatchSlo.deadlineOf(content), content.getEffectivePriority());
+    }
+
+    /**
+     * Queues a prepared fan-out, ordered by the given deadline and then priority.
+     */
+    public CompletableFuture<Void> submit(FanOutTask task, String label, LocalDateTime deadline, Priority priority) {
+        lock.lock();
+        try {
+            entries.add(new Entry(task, label, deadline, priority, sequence++));
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task.completion();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Entry entry;
+            try {
+                entry = next();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long wait;
+            try {
+                wait = entry.task.runChunk(chunkSize);
+            } catch (RuntimeException e) {
+                log.warn("Fan-out chunk failed {} error={}", entry.label, e.toString());
+                entry.task.abort(e);
+                wait = FanOutTask.DONE;
+            }
+
+            lock.lock();
+            try {
+                if (wait == FanOutTask.DONE) {
+                    entries.remove(entry);
+                } else if (wait > 0) {
+                    entry.notBefore = System.nanoTime() + wait;
+                    metrics.throttled(wait);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits for the most urgent fan-out that is neither throttled nor over its in-flight limit,
+     * once the fan-out stage has a free slot.
+     */
+    private Entry next() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                long sleep = BLOCKED_POLL_NANOS;
+                boolean saturated = !fanOutExecutor.hasCapacity();
+                Entry best = null;
+                for (Entry entry : entries) {
+                    long throttled = entry.notBefore - now;
+                    if (throttled > 0) {
+                        sleep = Math.min(sleep, throttled);
+                    } else if (!saturated && entry.task.inFlight() < maxInFlightBatches
+                            && (best == null || ORDER.compare(entry, best) < 0)) {
+                        best = entry;
+                    }
+                }
+                if (best != null) return best;
+
+                if (entries.isEmpty()) changed.await();
+                else changed.awaitNanos(sleep);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final FanOutTask task;
+        private final String label;
+        private final LocalDateTime deadline;
+        private final Priority priority;
+        private final long sequence;
+        private long notBefore;
+
+        Entry(FanOutTask task, String label, LocalDateTime deadline, Priority priority, long sequence) {
+            this.task = task;
+            this.label = label;
+            this.deadline = deadline;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.notBefore = System.nanoTime();
+        }
+    }
+}
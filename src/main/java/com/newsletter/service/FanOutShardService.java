@@ -0,0 +1,180 @@
+package com.newsletter.service;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.FanOutShard;
+import com.newsletter.model.Status;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.repository.FanOutShardRepository;
+import com.newsletter.repository.SubscriberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Splits a content item's fan-out into subscriber id ranges that Kafka workers claim and send independently.
+ * Each shard has its own lease, renewed while its range is being sent; the content stays QUEUED until no shard
+ * is left unfinished, then moves to SENT, or FAILED if any shard failed.
+ */
+@Slf4j
+@Service
+public class FanOutShardService {
+
+    private static final List<Status> FINISHED = List.of(Status.SENT, Status.FAILED);
+
+    @Autowired
+    private FanOutShardRepository shardRepository;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private SubscriberRepository subscriberRepository;
+
+    @Autowired
+    private ContentLeaseManager leaseManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Subscribers per shard the producer aims for
+    @Value("${newsletter.kafka.shard.size:50000}")
+    private long shardSize;
+
+    @Value("${newsletter.kafka.shard.max:64}")
+    private int maxShards;
+
+    @Value("${newsletter.dispatch.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${newsletter.kafka.shard.requeue-after-seconds:600}")
+    private long requeueAfterSeconds;
+
+    private final Set<FanOutShard.Key> held = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Returns the content's shards, planning them on first dispatch: ceil(subscribers / shard size) shards, at
+     * most newsletter.kafka.shard.max, splitting the topic's id space evenly. A re-dispatched item keeps its
+     * plan; failed shards are queued again and sent shards are left out. A topic that needs only one shard
+     * gets a single {@link FanOutShard#isWhole whole} shard, which is not stored.
+     */
+    public List<FanOutShard> plan(Content content) {
+        Long contentId = content.getId();
+        LocalDateTime now = queuedNow();
+        List<FanOutShard> planned = transactionTemplate.execute(status -> {
+            List<FanOutShard> existing = shardRepository.findByContentIdOrderByShardIndex(contentId);
+            if (!existing.isEmpty()) {
+                shardRepository.reset(contentId, List.of(Status.FAILED, Status.QUEUED), Status.QUEUED, now);
+                return existing;
+            }
+            List<FanOutShard> shards = split(content, now);
+            return shards.size() > 1 ? shardRepository.saveAll(shards) : shards;
+        });
+        if (planned == null) return List.of();
+        return planned.stream().filter(shard -> shard.getStatus() != Status.SENT).toList();
+    }
+
+    private List<FanOutShard> split(Content content, LocalDateTime now) {
+        Long topicId = content.getTopic().getId();
+        long subscribers = subscriberRepository.countByTopicId(topicId);
+        int count = (int) Math.max(1, Math.min(maxShards, (subscribers + shardSize - 1) / shardSize));
+        if (count == 1) return List.of(shard(content.getId(), 0, 0, Long.MAX_VALUE, now));
+
+        long low = subscriberRepository.findMinId(topicId) - 1;
+        long high = subscriberRepository.findMaxId(topicId);
+        long width = Math.max(1, (high - low + count - 1) / count);
+        List<FanOutShard> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long fromId = i == 0 ? 0 : low + i * width;
+            long toId = i == count - 1 ? Long.MAX_VALUE : low + (i + 1) * width;
+            shards.add(shard(content.getId(), i, fromId, toId, now));
+        }
+        return shards;
+    }
+
+    private static FanOutShard shard(Long contentId, int index, long fromId, long toId, LocalDateTime now) {
+        return new FanOutShard(contentId, index, fromId, toId, Status.QUEUED, null, null, now);
+    }
+
+    /**
+     * Takes the shards of QUEUED content that no worker has claimed within requeue-after-seconds of being
+     * queued, because their message was lost or dead-lettered. Each is handed to one node only, which publishes
+     * it again; a duplicate of a message that was only late is harmless, since the shard is claimed once.
+     */
+    public List<FanOutShard> takeUnclaimed() {
+        LocalDateTime now = queuedNow();
+        return shardRepository.findUnclaimed(Status.QUEUED, now.minusSeconds(requeueAfterSeconds)).stream()
+                .filter(shard -> shardRepository.requeue(shard.getContentId(), shard.getShardIndex(),
+                        Status.QUEUED, shard.getQueuedAt(), now) == 1)
+                .toList();
+    }
+
+    // Millisecond precision so the value reads back equal from the database
+    private static LocalDateTime queuedNow() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    /**
+     * Atomically moves the shard to IN_PROGRESS under this node's lease.
+     * Returns false if another node holds a live lease on it or it has already finished.
+     */
+    public boolean claim(Long contentId, int shardIndex) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean claimed = shardRepository.claim(contentId, shardIndex, Status.QUEUED, Status.IN_PROGRESS,
+                leaseManager.getNodeId(), now, now.plusSeconds(leaseSeconds)) == 1;
+        if (claimed) held.add(new FanOutShard.Key(contentId, shardIndex));
+        return claimed;
+    }
+
+    /**
+     * Whether another node is still sending the shard.
+     */
+    public boolean isBusy(Long contentId, int shardIndex) {
+        return shardRepository.findById(new FanOutShard.Key(contentId, shardIndex))
+                .map(shard -> shard.getStatus() == Status.IN_PROGRESS)
+                .orElse(false);
+    }
+
+    /**
+     * Writes the shard's outcome and completes the content if it was the last unfinished shard.
+     * Concurrent last shards are safe: each outcome is committed before the completion check runs.
+     */
+    public void complete(Long contentId, int shardIndex, Status status) {
+        try {
+            int released = shardRepository.release(contentId, shardIndex, leaseManager.getNodeId(),
+                    Status.IN_PROGRESS, status);
+            if (released == 0) {
+                log.warn("Shard outcome skipped, lease lost contentId={} shard={} status={}",
+                        contentId, shardIndex, status);
+                return;
+            }
+        } finally {
+            held.remove(new FanOutShard.Key(contentId, shardIndex));
+        }
+        if (shardRepository.existsByContentIdAndStatusNotIn(contentId, FINISHED)) return;
+
+        Status outcome = shardRepository.existsByContentIdAndStatus(contentId, Status.FAILED) ? Status.FAILED : Status.SENT;
+        if (contentRepository.completeSharded(contentId, Status.QUEUED, FINISHED, outcome, outcome == Status.SENT) == 1) {
+            log.info("Sharded content finished contentId={} status={}", contentId, outcome);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${newsletter.dispatch.heartbeat-interval-ms:20000}")
+    public void heartbeat() {
+        if (held.isEmpty()) return;
+        LocalDateTime leaseUntil = LocalDateTime.now().plusSeconds(leaseSeconds);
+        for (FanOutShard.Key key : List.copyOf(held)) {
+            shardRepository.renewLease(key.getContentId(), key.getShardIndex(), leaseManager.getNodeId(),
+                    Status.IN_PROGRESS, leaseUntil);
+        }
+    }
+}
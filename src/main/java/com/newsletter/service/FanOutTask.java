@@ -0,0 +1,37 @@
+package com.newsletter.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Producer side of a fan-out that {@link FanOutScheduler} runs in chunks. Not thread-safe:
+ * one thread at a time runs its chunks.
+ */
+public interface FanOutTask {
+
+    long DONE = -1;
+
+    long SATURATED = -2;
+
+    /**
+     * Reads about {@code chunkSize} subscribers and submits what the rate limits allow.
+     * Returns {@link #DONE} once everything has been submitted, 0 if more work is ready,
+     * {@link #SATURATED} if a batch is ready but every slot of the fan-out stage is taken,
+     * or the nanoseconds until the send queue can make progress again.
+     */
+    long runChunk(int chunkSize);
+
+    /**
+     * Batches submitted to the fan-out stage and not finished yet.
+     */
+    long inFlight();
+
+    /**
+     * Stops submitting; batches already in flight still finish, then the task completes with the error.
+     */
+    void abort(Throwable error);
+
+    /**
+     * Completes once every recipient has finished, exceptionally if the fan-out failed.
+     */
+    CompletableFuture<Void> completion();
+}
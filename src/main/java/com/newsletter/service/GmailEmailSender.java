@@ -1,31 +1,78 @@
 package com.newsletter.service;
 
+import com.newsletter.metrics.MailMetrics;
+import com.newsletter.template.CompiledTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.AddressException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
- * Concrete implementation using Spring's JavaMailSender.
+ * Concrete implementation sending over a pool of persistent SMTP connections
+ * configured from the spring.mail.* properties.
  */
 @Service
 public class GmailEmailSender implements EmailSenderService {
 
+    private static final String SENDER_TYPE = "gmail";
+
     @Autowired
-    private JavaMailSender mailSender;
+    private MailProperties mailProperties;
+
+    @Autowired
+    private MailMetrics mailMetrics;
 
     @Value("${newsletter.email.from}")
     private String from;  // Injected from properties
 
+    @Value("${newsletter.mail.pool.size:4}")
+    private int poolSize;
+
+    @Value("${newsletter.mail.pool.idle-timeout-ms:30000}")
+    private long idleTimeoutMillis;
+
+    @Value("${newsletter.mail.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+
+    private SmtpEmailSender sender;
+
+    @PostConstruct
+    void openPool() throws AddressException {
+        sender = new SmtpEmailSender(SENDER_TYPE, mailMetrics, SmtpEmailSender.pool(
+                mailProperties.getProperties(),
+                mailProperties.getProtocol(),
+                mailProperties.getHost(),
+                mailProperties.getPort(),
+                mailProperties.getUsername(),
+                mailProperties.getPassword(),
+                poolSize,
+                idleTimeoutMillis,
+                maxMessagesPerConnection
+        ), from);
+    }
+
+    @PreDestroy
+    void closePool() {
+        sender.close();
+    }
+
     @Override
     public void sendEmail(String to, String subject, String body) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(from);
-        message.setTo(to);
-        message.setSubject(subject);
-        message.setText(body);
-        mailSender.send(message);
-        System.out.println("Sent to: " + to);
+        sender.sendEmail(to, subject, body);
+    }
+
+    @Override
+    public void sendEmails(List<String> recipients, String subject, String body) {
+        sender.sendEmails(recipients, subject, body);
+    }
+
+    @Override
+    public void sendEmails(CompiledTemplate template, List<String> recipients) {
+        sender.sendEmails(template, recipients);
     }
 }
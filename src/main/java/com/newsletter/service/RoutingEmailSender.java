@@ -0,0 +1,286 @@
+package com.newsletter.service;
+
+import com.newsletter.metrics.MailMetrics;
+import com.newsletter.ratelimit.TokenBucket;
+import com.newsletter.template.CompiledTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Spreads sends over several mail providers or accounts (newsletter.mail.routing.providers), each with its own
+ * connection pool, in-flight limit and optional send quota. Every batch goes to the provider with the highest
+ * smooth weighted round-robin score among those with a free slot and quota; if none has, the batch waits up to
+ * newsletter.mail.routing.max-wait-ms.
+ *
+ * Recipients a provider pushes back on (4xx, refused or dropped connections) are sent again through another
+ * provider; permanent refusals are returned to the caller as they are. A provider failing failure-threshold
+ * batches in a row is ejected for a cooldown that doubles with every further failure, up to max-cooldown-ms;
+ * once it has passed the next batch probes it, and a success restores it.
+ */
+@Slf4j
+@Service
+public class RoutingEmailSender implements EmailSenderService {
+
+    private static final String PROVIDER_PREFIX = "newsletter.mail.providers.";
+
+    @Autowired
+    private GmailEmailSender gmailSender;
+
+    @Autowired
+    private MailMetrics mailMetrics;
+
+    @Autowired
+    private Environment environment;
+
+    // Names of newsletter.mail.providers.<name>.* entries; "gmail" is the spring.mail.* sender
+    @Value("${newsletter.mail.routing.providers:gmail}")
+    private List<String> providerNames;
+
+    @Value("${newsletter.mail.routing.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${newsletter.mail.routing.cooldown-ms:5000}")
+    private long cooldownMillis;
+
+    @Value("${newsletter.mail.routing.max-cooldown-ms:300000}")
+    private long maxCooldownMillis;
+
+    @Value("${newsletter.mail.routing.max-wait-ms:30000}")
+    private long maxWaitMillis;
+
+    @Value("${newsletter.email.from}")
+    private String defaultFrom;
+
+    @Value("${newsletter.mail.pool.size:4}")
+    private int defaultPoolSize;
+
+    @Value("${newsletter.mail.pool.idle-timeout-ms:30000}")
+    private long defaultIdleTimeoutMillis;
+
+    @Value("${newsletter.mail.pool.max-messages-per-connection:100}")
+    private int defaultMaxMessagesPerConnection;
+
+    private final List<Provider> providers = new ArrayList<>();
+
+    @PostConstruct
+    void openProviders() throws AddressException {
+        for (String name : providerNames) {
+            if (name.isBlank()) continue;
+            name = name.trim();
+            int poolSize = property(name, "pool-size", Integer.class, defaultPoolSize);
+            EmailSenderService sender = "gmail".equals(name) ? gmailSender : new SmtpEmailSender(name, mailMetrics,
+                    SmtpEmailSender.pool(
+                            Binder.get(environment).bind(PROVIDER_PREFIX + name + ".properties",
+                                    Bindable.mapOf(String.class, String.class)).orElse(Map.of()),
+                            property(name, "protocol", String.class, "smtp"),
+                            environment.getRequiredProperty(PROVIDER_PREFIX + name + ".host"),
+                            property(name, "port", Integer.class, null),
+                            property(name, "username", String.class, null),
+                            property(name, "password", String.class, null),
+                            poolSize,
+                            property(name, "idle-timeout-ms", Long.class, defaultIdleTimeoutMillis),
+                            property(name, "max-messages-per-connection", Integer.class, defaultMaxMessagesPerConnection)),
+                    property(name, "from", String.class, defaultFrom));
+
+            double ratePerSecond = property(name, "rate-per-second", Double.class, 0.0);
+            double burstSeconds = property(name, "burst-seconds", Double.class, 1.0);
+            Provider provider = new Provider(name, sender,
+                    Math.max(1, property(name, "weight", Integer.class, 1)),
+                    Math.max(1, property(name, "max-in-flight", Integer.class, poolSize)),
+                    ratePerSecond <= 0 ? null : new TokenBucket(ratePerSecond, ratePerSecond * burstSeconds, System.nanoTime()));
+            providers.add(provider);
+            mailMetrics.provider(name, provider, p -> p.isHealthy(System.nanoTime()) ? 1 : 0, p -> p.inFlight);
+            log.info("Mail provider configured provider={} weight={} maxInFlight={} ratePerSecond={}",
+                    name, provider.weight, provider.maxInFlight, ratePerSecond);
+        }
+        if (providers.isEmpty()) throw new IllegalStateException("No mail providers configured");
+    }
+
+    @PreDestroy
+    void closeProviders() {
+        for (Provider provider : providers) {
+            if (provider.sender instanceof SmtpEmailSender smtp) smtp.close();
+        }
+    }
+
+    private <T> T property(String provider, String key, Class<T> type, T defaultValue) {
+        return environment.getProperty(PROVIDER_PREFIX + provider + "." + key, type, defaultValue);
+    }
+
+    @Override
+    public void sendEmail(String to, String subject, String body) {
+        sendEmails(List.of(to), subject, body);
+    }
+
+    @Override
+    public void sendEmails(List<String> recipients, String subject, String body) {
+        route(recipients, (sender, batch) -> sender.sendEmails(batch, subject, body));
+    }
+
+    @Override
+    public void sendEmails(CompiledTemplate template, List<String> recipients) {
+        route(recipients, (sender, batch) -> sender.sendEmails(template, batch));
+    }
+
+    /**
+     * Sends the recipients through one provider, moving those it pushed back on to the next, until all are sent
+     * or refused, or no provider is left. Recipients that could not be sent are reported in a MailSendException.
+     */
+    private void route(List<String> recipients, BiConsumer<EmailSenderService, List<String>> send) {
+        Map<Object, Exception> failed = new LinkedHashMap<>();
+        // Latest transient error of each recipient, reported if no provider is left for it
+        Map<Object, Exception> pushedBack = new HashMap<>();
+        Set<Provider> tried = new HashSet<>();
+        List<String> pending = recipients;
+        while (!pending.isEmpty()) {
+            Provider provider = acquire(pending.size(), tried);
+            if (provider == null) break;
+            tried.add(provider);
+
+            RuntimeException error = null;
+            try {
+                send.accept(provider.sender, pending);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            List<String> retry = new ArrayList<>();
+            if (error != null) {
+                Map<Object, Exception> errors = error instanceof MailSendException mailError
+                        && !mailError.getFailedMessages().isEmpty() ? mailError.getFailedMessages() : null;
+                for (String to : pending) {
+                    Exception recipientError = errors == null ? error : errors.get(to);
+                    if (recipientError == null) continue;
+                    if (EmailSenderService.isRecipientPushback(recipientError)) {
+                        retry.add(to);
+                        pushedBack.put(to, recipientError);
+                    } else {
+                        failed.put(to, recipientError);
+                    }
+                }
+            }
+            release(provider, !retry.isEmpty());
+            if (!retry.isEmpty()) {
+                mailMetrics.failover(provider.name, retry.size());
+                log.warn("Mail provider pushed back provider={} recipients={} error={}",
+                        provider.name, retry.size(), pushedBack.get(retry.get(0)).toString());
+            }
+            pending = retry;
+        }
+
+        for (String to : pending) {
+            Exception error = pushedBack.get(to);
+            failed.put(to, error != null ? error : new MessagingException("No mail provider available"));
+        }
+        if (!failed.isEmpty()) throw new MailSendException(failed);
+    }
+
+    /**
+     * Takes a slot and quota on the best provider not tried yet, waiting for one while any is only busy or
+     * over quota. Returns null if every healthy provider has been tried, or none freed up in time.
+     */
+    private synchronized Provider acquire(int recipients, Set<Provider> tried) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        while (true) {
+            long now = System.nanoTime();
+            long wait = Long.MAX_VALUE;
+            boolean waitable = false;
+            Provider best = null;
+            int totalWeight = 0;
+            for (Provider provider : providers) {
+                if (tried.contains(provider) || !provider.isHealthy(now)) continue;
+                waitable = true;
+                if (provider.inFlight >= provider.maxInFlight) continue;
+                long quotaWait = provider.quota == null ? 0 : provider.quota.waitNanos(recipients, now);
+                if (quotaWait > 0) {
+                    wait = Math.min(wait, quotaWait);
+                    continue;
+                }
+                provider.score += provider.weight;
+                totalWeight += provider.weight;
+                if (best == null || provider.score > best.score) best = provider;
+            }
+            if (best != null) {
+                best.score -= totalWeight;
+                best.inFlight++;
+                if (best.quota != null) best.quota.take(recipients);
+                return best;
+            }
+            long remaining = deadline - now;
+            if (!waitable || remaining <= 0) return null;
+            try {
+                // Woken early when a provider frees a slot
+                TimeUnit.NANOSECONDS.timedWait(this, Math.min(wait, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private synchronized void release(Provider provider, boolean pushback) {
+        provider.inFlight--;
+        if (pushback) {
+            provider.failed(System.nanoTime());
+        } else if (provider.failures > 0) {
+            if (provider.failures >= failureThreshold) log.info("Mail provider restored provider={}", provider.name);
+            provider.failures = 0;
+        }
+        notifyAll();
+    }
+
+    // Mutable state is guarded by the router's monitor
+    private final class Provider {
+        private final String name;
+        private final EmailSenderService sender;
+        private final int weight;
+        private final int maxInFlight;
+        private final TokenBucket quota;
+        private int inFlight;
+        // Smooth weighted round-robin: raised by the weight on every pick, lowered by the total when chosen
+        private int score;
+        private int failures;
+        private long ejectedUntil;
+
+        Provider(String name, EmailSenderService sender, int weight, int maxInFlight, TokenBucket quota) {
+            this.name = name;
+            this.sender = sender;
+            this.weight = weight;
+            this.maxInFlight = maxInFlight;
+            this.quota = quota;
+        }
+
+        boolean isHealthy(long now) {
+            return failures < failureThreshold || now - ejectedUntil >= 0;
+        }
+
+        void failed(long now) {
+            failures++;
+            if (failures < failureThreshold) return;
+            int doublings = Math.min(20, failures - failureThreshold);
+            long cooldown = Math.min(maxCooldownMillis, cooldownMillis << doublings);
+            ejectedUntil = now + TimeUnit.MILLISECONDS.toNanos(cooldown);
+            log.warn("Mail provider ejected provider={} failures={} cooldownMs={}", name, failures, cooldown);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.newsletter.service;
+
+import com.newsletter.ratelimit.DomainRateLimiter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Producer-side send scheduler of one fan-out. Recipients wait in per-lane queues, in the order they were added;
+ * full batches are handed to the submitter round-robin across lanes whenever the lane's rate bucket has tokens.
+ * The producer has to wait only once too many recipients are buffered, or at the end, and hands control back
+ * while the fan-out stage has no free slot rather than blocking in it. Not thread-safe.
+ *
+ * @param <K> lane key; recipients of one lane share a batch, so it must determine everything the batch needs
+ * @param <T> recipient
+ */
+final class SendQueue<K, T> {
+
+    private final DomainRateLimiter rateLimiter;
+    private final int batchSize;
+    private final int maxBuffered;
+    private final Consumer<T> laneOpened;
+    private final BooleanSupplier hasCapacity;
+    private final BiConsumer<K, List<T>> submitter;
+    private final Map<K, Lane<T>> lanes = new LinkedHashMap<>();
+    private int buffered;
+
+    /**
+     * @param laneOpened called with each recipient that becomes the head of a lane, i.e. starts its next batch
+     * @param hasCapacity whether the submitter would take a batch without blocking
+     */
+    SendQueue(DomainRateLimiter rateLimiter, int batchSize, int maxBuffered, Consumer<T> laneOpened,
+              BooleanSupplier hasCapacity, BiConsumer<K, List<T>> submitter) {
+        this.rateLimiter = rateLimiter;
+        this.batchSize = batchSize;
+        this.maxBuffered = maxBuffered;
+        this.laneOpened = laneOpened;
+        this.hasCapacity = hasCapacity;
+        this.submitter = submitter;
+    }
+
+    void add(K key, String rateLane, T recipient) {
+        Lane<T> lane = lanes.computeIfAbsent(key, k -> new Lane<>(rateLane, batchSize));
+        if (lane.recipients.isEmpty()) laneOpened.accept(recipient);
+        lane.recipients.add(recipient);
+        buffered++;
+    }
+
+    /**
+     * Submits every batch that has tokens. Partial batches go too once the buffer is over its limit,
+     * or when flushing at the end. Returns 0 if the producer may go on (or, when flushing, the queue is
+     * empty), {@link FanOutTask#SATURATED} if a batch is ready but cannot be submitted without blocking,
+     * otherwise the nanoseconds until a throttled lane has tokens again.
+     */
+    long drain(boolean flush) {
+        while (true) {
+            boolean partial = flush || buffered > maxBuffered;
+            long wait = Long.MAX_VALUE;
+            boolean progress = false;
+
+            for (K key : new ArrayList<>(lanes.keySet())) {
+                Lane<T> lane = lanes.get(key);
+                List<T> recipients = lane.recipients;
+                int size = recipients.size() >= batchSize ? batchSize : partial ? recipients.size() : 0;
+                if (size == 0) continue;
+                // Checked before the rate tokens are taken, so a yielded batch costs none
+                if (!hasCapacity.getAsBoolean()) return FanOutTask.SATURATED;
+
+                long laneWait = rateLimiter.tryAcquire(lane.rateLane, size);
+                if (laneWait > 0) {
+                    wait = Math.min(wait, laneWait);
+                    continue;
+                }
+                List<T> batch = new ArrayList<>(recipients.subList(0, size));
+                recipients.subList(0, size).clear();
+                buffered -= size;
+                // Re-insert at the tail so the next round starts with the other lanes
+                lanes.remove(key);
+                if (!recipients.isEmpty()) {
+                    laneOpened.accept(recipients.get(0));
+                    lanes.put(key, lane);
+                }
+                submitter.accept(key, batch);
+                progress = true;
+            }
+
+            if (progress) continue;
+            boolean mustWait = flush ? buffered > 0 : buffered > maxBuffered;
+            return mustWait ? wait : 0;
+        }
+    }
+
+    private static final class Lane<T> {
+        private final String rateLane;
+        private final List<T> recipients;
+
+        private Lane(String rateLane, int batchSize) {
+            this.rateLane = rateLane;
+            this.recipients = new ArrayList<>(batchSize);
+        }
+    }
+}
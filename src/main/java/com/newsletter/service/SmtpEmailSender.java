@@ -0,0 +1,140 @@
+package com.newsletter.service;
+
+import com.newsletter.metrics.MailMetrics;
+import com.newsletter.template.CompiledTemplate;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MailDateFormat;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.MailSendException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Sends over a pool of persistent SMTP connections to one server and account.
+ * Metrics and logs are tagged with the sender name.
+ */
+@Slf4j
+public class SmtpEmailSender implements EmailSenderService, AutoCloseable {
+
+    private final String name;
+    private final MailMetrics mailMetrics;
+    private final SmtpTransportPool transportPool;
+    private final InternetAddress fromAddress;
+    private final String fromHeader;
+    private final String messageIdDomain;
+
+    public SmtpEmailSender(String name, MailMetrics mailMetrics, SmtpTransportPool transportPool, String from)
+            throws AddressException {
+        this.name = name;
+        this.mailMetrics = mailMetrics;
+        this.transportPool = transportPool;
+        this.fromAddress = new InternetAddress(from);
+        this.fromHeader = "From: " + MimeUtility.fold(6, fromAddress.toString()) + "\r\n";
+        this.messageIdDomain = fromAddress.getAddress().substring(fromAddress.getAddress().indexOf('@') + 1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() {
+        transportPool.close();
+    }
+
+    @Override
+    public void sendEmail(String to, String subject, String body) {
+        sendEmails(List.of(to), subject, body);
+    }
+
+    /**
+     * Sends one message per recipient over pooled connections.
+     * Failed recipients are collected and reported together in a MailSendException.
+     */
+    @Override
+    public void sendEmails(List<String> recipients, String subject, String body) {
+        Map<Object, Exception> failed = new LinkedHashMap<>();
+        for (String to : recipients) {
+            long start = System.nanoTime();
+            try {
+                transportPool.send(createMessage(to, subject, body));
+                sent(to, start);
+            } catch (MessagingException | RuntimeException e) {
+                failed(to, start, e);
+                failed.put(to, e);
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new MailSendException(failed);
+        }
+    }
+
+    /**
+     * Sends the compiled template to each recipient. The From/Date headers are encoded once per batch
+     * and the body is spliced from the template's pre-encoded parts.
+     */
+    @Override
+    public void sendEmails(CompiledTemplate template, List<String> recipients) {
+        byte[] sharedHeaders = (fromHeader + "Date: " + new MailDateFormat().format(new Date()) + "\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        Map<Object, Exception> failed = new LinkedHashMap<>();
+        for (String to : recipients) {
+            long start = System.nanoTime();
+            try {
+                transportPool.send(new SplicedMimeMessage(transportPool.getSession(), fromAddress, sharedHeaders,
+                        new InternetAddress(to), template, "<" + UUID.randomUUID() + "@" + messageIdDomain + ">"));
+                sent(to, start);
+            } catch (MessagingException | RuntimeException e) {
+                failed(to, start, e);
+                failed.put(to, e);
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new MailSendException(failed);
+        }
+    }
+
+    private void sent(String to, long startNanos) {
+        mailMetrics.sent(name, startNanos);
+        log.debug("Email sent sender={} to={}", name, to);
+    }
+
+    private void failed(String to, long startNanos, Exception error) {
+        mailMetrics.failed(name, startNanos, error);
+        log.warn("Email failed sender={} to={} error={}", name, to, error.toString());
+    }
+
+    private MimeMessage createMessage(String to, String subject, String body) throws MessagingException {
+        MimeMessage message = new MimeMessage(transportPool.getSession());
+        message.setFrom(fromAddress);
+        message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress(to));
+        message.setSubject(subject, "UTF-8");
+        message.setText(body, "UTF-8");
+        message.saveChanges();
+        return message;
+    }
+
+    /**
+     * Opens a connection pool from JavaMail session properties; connections are made on first use.
+     */
+    public static SmtpTransportPool pool(Map<String, String> sessionProperties, String protocol, String host,
+                                         Integer port, String username, String password, int poolSize,
+                                         long idleTimeoutMillis, int maxMessagesPerConnection) {
+        Properties properties = new Properties();
+        properties.putAll(sessionProperties);
+        properties.setProperty("mail.transport.protocol", protocol);
+        return new SmtpTransportPool(Session.getInstance(properties), host, port == null ? -1 : port,
+                username, password, poolSize, idleTimeoutMillis, maxMessagesPerConnection);
+    }
+}
@@ -0,0 +1,160 @@
+package com.newsletter.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Provider;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.URLName;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.smtp.SMTPTransport;
+
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed-size pool of authenticated SMTP connections.
+ * A connection is reused across messages until it has been idle too long,
+ * has carried its message quota, or fails; then it is reopened on next borrow.
+ * A send is retried on a fresh connection only if it failed before the server accepted DATA;
+ * past that point the server may already have the message, and a retry could deliver it twice.
+ */
+public class SmtpTransportPool implements AutoCloseable {
+
+    private final Session session;
+    private final Provider provider;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final long idleTimeoutMillis;
+    private final int maxMessagesPerConnection;
+    private final BlockingQueue<PooledTransport> idle;
+
+    public SmtpTransportPool(Session session, String host, int port, String username, String password,
+                             int size, long idleTimeoutMillis, int maxMessagesPerConnection) {
+        this.session = session;
+        this.provider = new Provider(Provider.Type.TRANSPORT, session.getProperty("mail.transport.protocol") == null
+                ? "smtp" : session.getProperty("mail.transport.protocol"), TrackingTransport.class.getName(), null, null);
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idle.add(new PooledTransport());
+        }
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Sends the message over a pooled connection, reconnecting once if the connection turns out to be stale
+     * before the message content was sent.
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        PooledTransport pooled = borrow();
+        try {
+            try {
+                pooled.send(message);
+            } catch (SendFailedException e) {
+                // Recipients rejected on a live connection: not a stale connection, the retry queue owns it
+                throw e;
+            } catch (MessagingException | IllegalStateException e) {
+                // Lost after DATA: the outcome is unknown, so the message is reported failed rather than resent
+                if (pooled.reachedData()) throw e;
+                // Server may have dropped an idle connection; retry once on a fresh one
+                pooled.close();
+                pooled.send(message);
+            }
+        } catch (SendFailedException e) {
+            throw e;
+        } catch (MessagingException | RuntimeException e) {
+            pooled.close();
+            throw e;
+        } finally {
+            idle.add(pooled);
+        }
+    }
+
+    @Override
+    public void close() {
+        idle.forEach(PooledTransport::close);
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+    }
+
+    private final class PooledTransport {
+        private TrackingTransport transport;
+        private long lastUsedMillis;
+        private int sentOnConnection;
+
+        void send(MimeMessage message) throws MessagingException {
+            long now = System.currentTimeMillis();
+            if (transport != null && (now - lastUsedMillis > idleTimeoutMillis
+                    || sentOnConnection >= maxMessagesPerConnection
+                    || !transport.isConnected())) {
+                close();
+            }
+            if (transport == null) {
+                transport = (TrackingTransport) session.getTransport(provider);
+                transport.connect(host, port, username, password);
+                sentOnConnection = 0;
+            }
+            transport.dataStarted = false;
+            transport.sendMessage(message, message.getAllRecipients());
+            sentOnConnection++;
+            lastUsedMillis = System.currentTimeMillis();
+        }
+
+        boolean reachedData() {
+            return transport != null && transport.dataStarted;
+        }
+
+        void close() {
+            if (transport == null) return;
+            try {
+                transport.close();
+            } catch (MessagingException ignored) {
+                // Connection is being discarded anyway
+            }
+            transport = null;
+        }
+    }
+
+    /**
+     * SMTP(S) transport that records whether the server accepted DATA (or BDAT) for the message being sent.
+     * Created by the session through the pool's provider, hence public.
+     */
+    public static final class TrackingTransport extends SMTPTransport {
+        private boolean dataStarted;
+
+        public TrackingTransport(Session session, URLName url) {
+            super(session, url, url.getProtocol(), "smtps".equals(url.getProtocol()));
+        }
+
+        @Override
+        protected OutputStream data() throws MessagingException {
+            OutputStream out = super.data();
+            dataStarted = true;
+            return out;
+        }
+
+        @Override
+        protected OutputStream bdat() throws MessagingException {
+            dataStarted = true;
+            return super.bdat();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.newsletter.service;
+
+import com.newsletter.template.CompiledTemplate;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MimeMessage that streams its wire form straight from a CompiledTemplate instead of building a
+ * MIME tree: only the envelope headers are written per recipient, the rest is spliced from shared bytes.
+ */
+class SplicedMimeMessage extends MimeMessage {
+
+    private final byte[] sharedHeaders;
+    private final InternetAddress to;
+    private final CompiledTemplate template;
+    private final String messageId;
+
+    SplicedMimeMessage(Session session, InternetAddress from, byte[] sharedHeaders, InternetAddress to,
+                       CompiledTemplate template, String messageId) throws MessagingException {
+        super(session);
+        // Read by the transport for the envelope sender
+        setFrom(from);
+        this.sharedHeaders = sharedHeaders;
+        this.to = to;
+        this.template = template;
+        this.messageId = messageId;
+    }
+
+    @Override
+    public Address[] getAllRecipients() {
+        return new Address[]{to};
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        writeTo(os, null);
+    }
+
+    @Override
+    public void writeTo(OutputStream os, String[] ignoreList) throws IOException {
+        os.write(sharedHeaders);
+        os.write(("To: " + MimeUtility.fold(4, to.toString()) + "\r\n"
+                + "Message-ID: " + messageId + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        template.writeTo(os, to.getAddress());
+    }
+}
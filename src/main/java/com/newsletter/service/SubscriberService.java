@@ -1,21 +1,155 @@
 package com.newsletter.service;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.newsletter.dto.SubscriberEmail;
+import com.newsletter.index.RosterBuilder;
+import com.newsletter.index.SubscriberIndex;
 import com.newsletter.model.Subscriber;
 import com.newsletter.repository.SubscriberRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.jpa.JpaDialect;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class SubscriberService {
+    // Translates errors of the direct EntityManager calls, which bypass the repositories' translation
+    private static final JpaDialect JPA_DIALECT = new HibernateJpaDialect();
+
     @Autowired
     private SubscriberRepository subscriberRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private SubscriberIndex subscriberIndex;
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public Subscriber save(Subscriber subscriber) {
         subscriberRepository.save(subscriber);
+        subscriberIndex.added(List.of(subscriber));
         return subscriber;
     }
     public List<Subscriber> saveAll(List<Subscriber> subscribers) {
-        return subscriberRepository.saveAll(subscribers);
+        List<Subscriber> saved = subscriberRepository.saveAll(subscribers);
+        subscriberIndex.added(saved);
+        return saved;
+    }
+
+    /**
+     * Inserts one import chunk in its own transaction as a JDBC batch, then detaches it
+     * so a long import does not accumulate entities. A duplicate (email, topic) rolls back the whole chunk
+     * with a DataIntegrityViolationException.
+     */
+    public void saveChunk(List<Subscriber> subscribers) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                subscribers.forEach(entityManager::persist);
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } catch (PersistenceException e) {
+            DataAccessException translated = JPA_DIALECT.translateExceptionIfPossible(e);
+            throw translated != null ? translated : e;
+        }
+        subscriberIndex.added(subscribers);
+    }
+
+    /**
+     * Removes one subscription. Returns false if the address was not subscribed to the topic.
+     */
+    public boolean unsubscribe(Long topicId, String email) {
+        if (subscriberRepository.deleteByEmailAndTopicId(email, topicId) == 0) return false;
+        subscriberIndex.removed(topicId);
+        return true;
+    }
+
+    /**
+     * Opens a resumable cursor over a topic's subscribers with ids in (afterId, upToId] (id/email projections in
+     * id order). An indexed roster is served without touching the database; otherwise keyset pages are read from
+     * the database one at a time, and a full pass (0, Long.MAX_VALUE] over a roster small enough to index adds it
+     * to the index. A bounded pass never does.
+     */
+    public RosterCursor openRoster(Long topicId, long afterId, long upToId) {
+        return new RosterCursor(topicId, afterId, upToId);
+    }
+
+    public CacheStats rosterCacheStats() {
+        return subscriberIndex.stats();
+    }
+
+    public Map<String, Long> rosterIndexFootprint() {
+        return subscriberIndex.footprint();
+    }
+
+    /**
+     * Page-at-a-time reader over one topic's roster, so a fan-out can stop between pages and resume later.
+     */
+    public final class RosterCursor {
+        private final Long topicId;
+        private final long upToId;
+        private boolean indexed;
+        // Set while a full database pass may still be indexed
+        private RosterBuilder roster;
+        private long lastId;
+        private boolean done;
+
+        private RosterCursor(Long topicId, long afterId, long upToId) {
+            this.topicId = topicId;
+            this.lastId = afterId;
+            this.upToId = upToId;
+            RosterBuilder roster = afterId == 0 && upToId == Long.MAX_VALUE ? subscriberIndex.newRoster(topicId) : null;
+            this.indexed = subscriberIndex.serves(topicId);
+            if (!indexed) this.roster = roster;
+        }
+
+        /**
+         * The next page, empty once the roster is exhausted.
+         */
+        public List<SubscriberEmail> next(int pageSize) {
+            if (done) return List.of();
+            List<SubscriberEmail> page = indexed ? subscriberIndex.page(topicId, lastId, pageSize) : null;
+            if (page != null) {
+                done = page.size() < pageSize;
+            } else {
+                // Not indexed, or dropped from the index meanwhile: continue from the database
+                indexed = false;
+                page = subscriberRepository.findEmailPage(topicId, lastId, PageRequest.ofSize(pageSize));
+                if (roster != null && !roster.add(page)) roster = null;
+                done = page.size() < pageSize;
+                if (done && roster != null) {
+                    subscriberIndex.install(roster);
+                    roster = null;
+                }
+            }
+            if (!page.isEmpty() && page.get(page.size() - 1).getId() > upToId) {
+                int end = page.size();
+                while (end > 0 && page.get(end - 1).getId() > upToId) end--;
+                page = page.subList(0, end);
+                done = true;
+            }
+            if (!page.isEmpty()) lastId = page.get(page.size() - 1).getId();
+            return page;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Id of the last subscriber returned.
+         */
+        public long lastId() {
+            return lastId;
+        }
     }
 }
@@ -1,13 +1,85 @@
 package com.newsletter.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.newsletter.model.Topic;
 import com.newsletter.repository.TopicRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Topic lookups go through a bounded in-process cache; saves write through to it.
+ */
 @Service
 public class TopicService {
     @Autowired
     private TopicRepository topicRepository;
-    public Topic save(Topic topic) { return topicRepository.save(topic); }
+
+    @Value("${newsletter.cache.topic.max-size:10000}")
+    private long maxSize;
+
+    @Value("${newsletter.cache.topic.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private Cache<Long, Topic> topics;
+
+    @PostConstruct
+    void initCache() {
+        topics = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public Topic save(Topic topic) {
+        Topic saved = topicRepository.save(topic);
+        topics.put(saved.getId(), saved);
+        return saved;
+    }
+
+    public Optional<Topic> findById(Long id) {
+        if (id == null) return Optional.empty();
+        Topic cached = topics.getIfPresent(id);
+        if (cached != null) return Optional.of(cached);
+
+        Optional<Topic> loaded = topicRepository.findById(id);
+        loaded.ifPresent(topic -> topics.put(id, topic));
+        return loaded;
+    }
+
+    /**
+     * Resolves many ids, loading only the cache misses with a single query.
+     */
+    public Map<Long, Topic> findAllById(Collection<Long> ids) {
+        List<Long> wanted = ids.stream().filter(Objects::nonNull).toList();
+        Map<Long, Topic> found = new HashMap<>(topics.getAllPresent(wanted));
+        List<Long> missing = new ArrayList<>();
+        for (Long id : wanted) {
+            if (!found.containsKey(id)) missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            topicRepository.findAllById(missing).forEach(topic -> {
+                topics.put(topic.getId(), topic);
+                found.put(topic.getId(), topic);
+            });
+        }
+        return found;
+    }
+
+    public CacheStats cacheStats() {
+        return topics.stats();
+    }
 }
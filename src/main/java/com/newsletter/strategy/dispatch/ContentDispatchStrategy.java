@@ -1,11 +1,14 @@
 package com.newsletter.strategy.dispatch;
 
 import com.newsletter.model.Content;
+import com.newsletter.model.Status;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Strategy interface for dispatching newsletter content.
+ * The returned future completes with the status the content reached once it has been fully handed off.
  */
 public interface ContentDispatchStrategy {
-    void dispatch(Content content);
+    CompletableFuture<Status> dispatch(Content content);
 }
-
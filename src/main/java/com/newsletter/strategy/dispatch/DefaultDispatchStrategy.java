@@ -1,20 +1,30 @@
 package com.newsletter.strategy.dispatch;
 
 import com.newsletter.model.Content;
-import com.newsletter.service.ContentPublisher;
+import com.newsletter.model.Status;
+import com.newsletter.service.DigestCoalescer;
+import com.newsletter.service.EmailSenderService;
 import com.newsletter.service.EmailServiceFactory;
+import com.newsletter.service.FanOutScheduler;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Dispatches content using the in-memory scheduler (default mode).
  */
+@Slf4j
 @Component
 public class DefaultDispatchStrategy implements ContentDispatchStrategy {
 
     @Autowired
-    private ContentPublisher contentPublisher;
+    private FanOutScheduler fanOutScheduler;
+
+    @Autowired
+    private DigestCoalescer digestCoalescer;
 
     @Autowired
     private EmailServiceFactory emailServiceFactory;
@@ -23,9 +33,27 @@ public class DefaultDispatchStrategy implements ContentDispatchStrategy {
     private String emailSenderType;
 
     @Override
-    public void dispatch(Content content) {
-        contentPublisher.notifySubscribers(content, emailServiceFactory.getEmailSender(emailSenderType));
-        System.out.println("Sent via Default strategy: " + content.getText());
+    public CompletableFuture<Status> dispatch(Content content) {
+        EmailSenderService emailSender = emailServiceFactory.getEmailSender(emailSenderType);
+        CompletableFuture<Void> fanOut = digestCoalescer.accepts(content)
+                ? digestCoalescer.offer(content, emailSender)
+                : fanOutScheduler.submit(content, emailSender);
+        return fanOut.thenApply(v -> {
+            log.info("Content sent strategy=default contentId={} topicId={}", content.getId(), content.getTopic().getId());
+            return Status.SENT;
+        });
+    }
+
+    /**
+     * Sends one subscriber id range (afterId, upToId] of the content, bypassing digests, which need whole rosters.
+     */
+    public CompletableFuture<Status> dispatchRange(Content content, long afterId, long upToId) {
+        EmailSenderService emailSender = emailServiceFactory.getEmailSender(emailSenderType);
+        return fanOutScheduler.submit(content, emailSender, afterId, upToId).thenApply(v -> {
+            log.info("Content range sent strategy=default contentId={} topicId={} fromId={} toId={}",
+                    content.getId(), content.getTopic().getId(), afterId, upToId);
+            return Status.SENT;
+        });
     }
 }
 
@@ -1,26 +1,129 @@
 package com.newsletter.strategy.dispatch;
 
+import com.newsletter.kafka.DispatchMessage;
 import com.newsletter.model.Content;
+import com.newsletter.model.FanOutShard;
+import com.newsletter.model.Status;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.service.DigestCoalescer;
+import com.newsletter.service.FanOutShardService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
 /**
- * Dispatches content asynchronously through Kafka.
- * (Requires Spring Kafka dependency)
+ * Dispatches content asynchronously through Kafka; the fan-out itself is done by DispatchConsumer workers.
+ * Content whose topic needs more than one shard is sent as one message per subscriber id range, on consecutive
+ * partitions, so the whole consumer group shares a large newsletter. Smaller or digest content goes as one
+ * message keyed by topic id.
  */
+@Slf4j
 @Component
 public class KafkaDispatchStrategy implements ContentDispatchStrategy {
 
-    private final KafkaTemplate<String, Content> kafkaTemplate;
+    private final KafkaTemplate<String, DispatchMessage> kafkaTemplate;
+
+    @Autowired
+    private FanOutShardService shardService;
+
+    @Autowired
+    private DigestCoalescer digestCoalescer;
+
+    @Autowired
+    private ContentRepository contentRepository;
 
-    public KafkaDispatchStrategy(KafkaTemplate<String, Content> kafkaTemplate) {
+    @Value("${newsletter.kafka.topic:newsletter.send}")
+    private String topic;
+
+    public KafkaDispatchStrategy(KafkaTemplate<String, DispatchMessage> kafkaTemplate) {
         this.kafkaTemplate = kafkaTemplate;
     }
 
     @Override
-    public void dispatch(Content content) {
-        kafkaTemplate.send("newsletter.send", content);
-        System.out.println("Queued via Kafka strategy: " + content.getId());
+    public CompletableFuture<Status> dispatch(Content content) {
+        if (digestCoalescer.accepts(content)) return sendWhole(content);
+        List<FanOutShard> shards = shardService.plan(content);
+        if (shards.isEmpty()) {
+            // Every shard was sent by an earlier dispatch that did not finish the content
+            return CompletableFuture.completedFuture(Status.SENT);
+        }
+        if (shards.size() == 1 && shards.get(0).isWhole()) return sendWhole(content);
+        return sendShards(content, shards);
+    }
+
+    private CompletableFuture<Status> sendWhole(Content content) {
+        Long topicId = content.getTopic().getId();
+        return kafkaTemplate.send(topic, String.valueOf(topicId), DispatchMessage.of(content.getId(), topicId))
+                .thenApply(result -> {
+                    log.info("Content queued strategy=kafka contentId={} topicId={} partition={} offset={}",
+                            content.getId(), topicId, result.getRecordMetadata().partition(),
+                            result.getRecordMetadata().offset());
+                    return Status.QUEUED;
+                });
     }
-}
 
+    /**
+     * Sends every shard and completes once all of them are acknowledged; the content is then QUEUED until the
+     * workers report each shard finished.
+     */
+    private CompletableFuture<Status> sendShards(Content content, List<FanOutShard> shards) {
+        Long contentId = content.getId();
+        Long topicId = content.getTopic().getId();
+        int partitions = kafkaTemplate.partitionsFor(topic).size();
+
+        CompletableFuture<?>[] acks = new CompletableFuture<?>[shards.size()];
+        for (int i = 0; i < shards.size(); i++) {
+            acks[i] = sendShard(topicId, shards.get(i), partitions);
+        }
+        return CompletableFuture.allOf(acks).thenApply(v -> {
+            log.info("Content queued strategy=kafka contentId={} topicId={} shards={} partitions={}",
+                    contentId, topicId, shards.size(), partitions);
+            return Status.QUEUED;
+        });
+    }
+
+    // Shards of one content go to consecutive partitions starting at a partition picked by the content id
+    private CompletableFuture<?> sendShard(Long topicId, FanOutShard shard, int partitions) {
+        Long contentId = shard.getContentId();
+        int index = shard.getShardIndex();
+        int partition = (Math.floorMod(Long.hashCode(contentId), partitions) + index) % partitions;
+        ProducerRecord<String, DispatchMessage> record = new ProducerRecord<>(topic, partition, contentId + "-" + index,
+                DispatchMessage.shard(contentId, topicId, index, shard.getFromId(), shard.getToId()));
+        return kafkaTemplate.send(record).whenComplete((result, ex) -> {
+            if (ex != null) {
+                log.warn("Shard send failed contentId={} shard={} error={}", contentId, index, ex.toString());
+            } else {
+                log.debug("Shard queued contentId={} shard={} partition={} offset={}", contentId, index,
+                        result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
+            }
+        });
+    }
+
+    /**
+     * Publishes again the shards whose message was lost or dead-lettered, so their content does not stay
+     * QUEUED forever. A failed send leaves the shard to the next pass.
+     */
+    @Scheduled(fixedDelayString = "${newsletter.kafka.shard.reaper-interval-ms:60000}")
+    public void requeueUnclaimedShards() {
+        List<FanOutShard> unclaimed = shardService.takeUnclaimed();
+        if (unclaimed.isEmpty()) return;
+        Map<Long, Long> topicIds = contentRepository.findAllById(
+                        unclaimed.stream().map(FanOutShard::getContentId).distinct().toList()).stream()
+                .collect(Collectors.toMap(Content::getId, content -> content.getTopic().getId()));
+        int partitions = kafkaTemplate.partitionsFor(topic).size();
+        for (FanOutShard shard : unclaimed) {
+            Long topicId = topicIds.get(shard.getContentId());
+            if (topicId != null) sendShard(topicId, shard, partitions);
+        }
+        log.warn("Unclaimed shards queued again shards={}", unclaimed.size());
+    }
+}
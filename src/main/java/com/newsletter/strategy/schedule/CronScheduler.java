@@ -1,18 +1,47 @@
 package com.newsletter.strategy.schedule;
 
 import com.newsletter.service.ContentDispatcher;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+
 @Component("cronScheduler")
 public class CronScheduler implements SchedulerStrategy {
 
+    // Enough for one day of a per-second schedule
+    private static final int CHECKED_RUNS = 100_000;
+
     @Autowired
     private ContentDispatcher dispatcher;
 
+    @Value("${newsletter.dispatch.refill-cron:*/10 * * * * *}")
+    private String cron;
+
+    @PostConstruct
+    void checkInterval() {
+        CronExpression expression = CronExpression.parse(cron);
+        LocalDateTime from = LocalDateTime.of(2000, 1, 1, 0, 0);
+        LocalDateTime until = from.plusDays(1);
+        LocalDateTime previous = expression.next(from);
+        Duration longest = Duration.ZERO;
+        for (int i = 0; i < CHECKED_RUNS && previous != null && previous.isBefore(until); i++) {
+            LocalDateTime next = expression.next(previous);
+            if (next == null) break;
+            Duration gap = Duration.between(previous, next);
+            if (gap.compareTo(longest) > 0) longest = gap;
+            previous = next;
+        }
+        dispatcher.requireRefillWithinHorizon("cron '" + cron + "'", longest);
+    }
+
     @Override
-    @Scheduled(cron = "0 */5 * * * *") // every 5 minutes
+    @Scheduled(cron = "${newsletter.dispatch.refill-cron:*/10 * * * * *}") // horizon refill, must stay below the horizon
     public void start() {
         dispatcher.checkAndDispatch();
     }
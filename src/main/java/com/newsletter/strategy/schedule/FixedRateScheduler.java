@@ -1,18 +1,30 @@
 package com.newsletter.strategy.schedule;
 
 import com.newsletter.service.ContentDispatcher;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component("fixedRateScheduler")
 public class FixedRateScheduler implements SchedulerStrategy {
 
     @Autowired
     private ContentDispatcher dispatcher;
 
+    @Value("${newsletter.dispatch.refill-interval-ms:10000}")
+    private long refillIntervalMillis;
+
+    @PostConstruct
+    void checkInterval() {
+        dispatcher.requireRefillWithinHorizon("fixed rate", Duration.ofMillis(refillIntervalMillis));
+    }
+
     @Override
-    @Scheduled(fixedRate = 10000) // every minute
+    @Scheduled(fixedRateString = "${newsletter.dispatch.refill-interval-ms:10000}") // horizon refill, must stay below the horizon
     public void start() {
         dispatcher.checkAndDispatch();
     }
@@ -0,0 +1,89 @@
+package com.newsletter.strategy.schedule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timer wheel keyed by id.
+ * Scheduling and expiry are O(1) per entry; each tick only visits one bucket.
+ * Deadlines further away than one revolution are kept with a remaining-rounds counter.
+ */
+public class HashedTimerWheel<K, V> {
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<LinkedList<Entry<K, V>>> buckets;
+    private final Map<K, Entry<K, V>> entries = new HashMap<>();
+    private final long startMillis;
+    private long currentTick;
+
+    public HashedTimerWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be positive");
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new LinkedList<>());
+        }
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * Schedules a value to expire at the given deadline. Deadlines in the past expire on the next tick.
+     * Returns false if the key is already scheduled.
+     */
+    public synchronized boolean schedule(K key, V value, long deadlineMillis) {
+        if (entries.containsKey(key)) return false;
+
+        long deadlineTick = Math.max(currentTick, ceilDiv(deadlineMillis - startMillis, tickMillis));
+        Entry<K, V> entry = new Entry<>(key, value, (deadlineTick - currentTick) / buckets.size());
+        buckets.get((int) (deadlineTick & mask)).add(entry);
+        entries.put(key, entry);
+        return true;
+    }
+
+    /**
+     * Advances the wheel up to the given time and returns every value whose deadline has passed.
+     */
+    public synchronized List<V> advance(long nowMillis) {
+        List<V> expired = new ArrayList<>();
+        long targetTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+
+        while (currentTick <= targetTick) {
+            Iterator<Entry<K, V>> it = buckets.get((int) (currentTick & mask)).iterator();
+            while (it.hasNext()) {
+                Entry<K, V> entry = it.next();
+                if (entry.remainingRounds <= 0) {
+                    it.remove();
+                    entries.remove(entry.key);
+                    expired.add(entry.value);
+                } else {
+                    entry.remainingRounds--;
+                }
+            }
+            currentTick++;
+        }
+        return expired;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private final V value;
+        private long remainingRounds;
+
+        private Entry(K key, V value, long remainingRounds) {
+            this.key = key;
+            this.value = value;
+            this.remainingRounds = remainingRounds;
+        }
+    }
+}
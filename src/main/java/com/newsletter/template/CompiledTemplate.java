@@ -0,0 +1,183 @@
+package com.newsletter.template;
+
+import jakarta.mail.internet.MimeUtility;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * A content's subject and body parsed once into static segments and per-recipient placeholders.
+ * Static body segments are quoted-printable encoded once into shared byte arrays; rendering a recipient
+ * only encodes the personalised fragments and splices them in.
+ *
+ * Per-recipient placeholders: {{email}}, {{name}} (local part of the address), {{unsubscribeUrl}} (signed per address).
+ */
+public final class CompiledTemplate {
+
+    static final String EMAIL = "email";
+    static final String NAME = "name";
+    static final String UNSUBSCRIBE_URL = "unsubscribeUrl";
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] SOFT_BREAK = {'=', '\r', '\n'};
+    private static final byte[] MIME_HEADERS = ("MIME-Version: 1.0\r\n" +
+            "Content-Type: text/plain; charset=UTF-8\r\n" +
+            "Content-Transfer-Encoding: quoted-printable\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final List<Segment> subject;
+    private final List<Segment> body;
+    private final byte[] subjectHeader;
+
+    CompiledTemplate(String subject, String body, Map<String, String> contentValues,
+                     UnaryOperator<String> unsubscribeLink) {
+        this(parse(subject, contentValues, unsubscribeLink), parse(body, contentValues, unsubscribeLink));
+    }
+
+    private CompiledTemplate(List<Segment> subject, List<Segment> body) {
+        this.subject = subject;
+        this.body = body;
+        this.subjectHeader = isStatic(subject) ? encodeSubjectHeader(subject.get(0).text) : null;
+        for (Segment segment : body) {
+            if (segment.key == null) segment.encoded = QuotedPrintable.encode(segment.text);
+        }
+    }
+
+    /**
+     * Joins the bodies of several templates into one message, each part preceded by its heading and separated
+     * by the separator. Parts keep their own per-recipient placeholders, including their topic's unsubscribe URL.
+     */
+    static CompiledTemplate join(String subject, Map<String, String> subjectValues,
+                                 List<CompiledTemplate> parts, List<String> headings, String separator) {
+        List<Segment> body = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0) append(body, new Segment(separator, null, null));
+            append(body, new Segment(headings.get(i), null, null));
+            for (Segment segment : parts.get(i).body) {
+                append(body, new Segment(segment.text, segment.key, segment.unsubscribeLink));
+            }
+        }
+        return new CompiledTemplate(parse(subject, subjectValues, null), body);
+    }
+
+    public String subjectFor(String email) {
+        return render(subject, email);
+    }
+
+    public String bodyFor(String email) {
+        return render(body, email);
+    }
+
+    /**
+     * Writes the Subject and MIME headers, the header/body separator and the encoded body for one recipient.
+     */
+    public void writeTo(OutputStream out, String email) throws IOException {
+        out.write(subjectHeader != null ? subjectHeader : encodeSubjectHeader(render(subject, email)));
+        out.write(MIME_HEADERS);
+        out.write(CRLF);
+        for (Segment segment : body) {
+            if (segment.key == null) {
+                out.write(segment.encoded);
+            } else {
+                // Soft breaks reset the line column around the independently encoded fragment
+                out.write(SOFT_BREAK);
+                out.write(QuotedPrintable.encode(valueOf(segment, email)));
+                out.write(SOFT_BREAK);
+            }
+        }
+        out.write(CRLF);
+    }
+
+    private String render(List<Segment> segments, String email) {
+        if (isStatic(segments)) return segments.isEmpty() ? "" : segments.get(0).text;
+        StringBuilder sb = new StringBuilder();
+        for (Segment segment : segments) {
+            sb.append(segment.key == null ? segment.text : valueOf(segment, email));
+        }
+        return sb.toString();
+    }
+
+    private static String valueOf(Segment segment, String email) {
+        return switch (segment.key) {
+            case EMAIL -> email;
+            case NAME -> email.substring(0, Math.max(0, email.indexOf('@')));
+            case UNSUBSCRIBE_URL -> segment.unsubscribeLink == null ? "" : segment.unsubscribeLink.apply(email);
+            default -> "";
+        };
+    }
+
+    private static byte[] encodeSubjectHeader(String subject) {
+        try {
+            String encoded = MimeUtility.fold(9, MimeUtility.encodeText(subject, "UTF-8", null));
+            return ("Subject: " + encoded + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isStatic(List<Segment> segments) {
+        return segments.size() <= 1 && segments.stream().allMatch(s -> s.key == null);
+    }
+
+    /**
+     * Splits "{{key}}" placeholders out of the text. Content-level values are substituted right away,
+     * and adjacent static text is merged, so only per-recipient placeholders remain as segments.
+     */
+    private static List<Segment> parse(String template, Map<String, String> contentValues,
+                                       UnaryOperator<String> unsubscribeLink) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            int open = template.indexOf("{{", i);
+            int close = open < 0 ? -1 : template.indexOf("}}", open + 2);
+            if (close < 0) {
+                text.append(template, i, template.length());
+                break;
+            }
+            text.append(template, i, open);
+            String key = template.substring(open + 2, close).trim();
+            if (contentValues.containsKey(key)) {
+                text.append(contentValues.get(key));
+            } else if (key.equals(EMAIL) || key.equals(NAME) || key.equals(UNSUBSCRIBE_URL)) {
+                if (!text.isEmpty()) segments.add(new Segment(text.toString(), null, null));
+                text.setLength(0);
+                segments.add(new Segment(null, key, unsubscribeLink));
+            } else {
+                // Unknown placeholders are left as written
+                text.append(template, open, close + 2);
+            }
+            i = close + 2;
+        }
+        if (!text.isEmpty() || segments.isEmpty()) segments.add(new Segment(text.toString(), null, null));
+        return segments;
+    }
+
+    // Merges adjacent static text so it is encoded as one run
+    private static void append(List<Segment> segments, Segment segment) {
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment.key == null && last != null && last.key == null) {
+            segments.set(segments.size() - 1, new Segment(last.text + segment.text, null, null));
+        } else {
+            segments.add(segment);
+        }
+    }
+
+    private static final class Segment {
+        private final String text;
+        private final String key;
+        private final UnaryOperator<String> unsubscribeLink;
+        private byte[] encoded;
+
+        private Segment(String text, String key, UnaryOperator<String> unsubscribeLink) {
+            this.text = text;
+            this.key = key;
+            this.unsubscribeLink = unsubscribeLink;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.newsletter.template;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Quoted-printable encoder for text bodies (RFC 2045).
+ * Each call starts at column 0, so independently encoded fragments can be joined with a soft line break.
+ */
+final class QuotedPrintable {
+
+    private static final int MAX_LINE = 76;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private QuotedPrintable() {
+    }
+
+    static byte[] encode(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + bytes.length / 8 + 8);
+        int column = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            if (b == '\r' && i + 1 < bytes.length && bytes[i + 1] == '\n') continue;
+            if (b == '\n' || b == '\r') {
+                out.write('\r');
+                out.write('\n');
+                column = 0;
+                continue;
+            }
+
+            boolean lineEndsHere = i + 1 == bytes.length || bytes[i + 1] == '\n' || bytes[i + 1] == '\r';
+            boolean literal = (b >= 33 && b <= 126 && b != '=') || ((b == ' ' || b == '\t') && !lineEndsHere);
+            int width = literal ? 1 : 3;
+            // Keep room for the '=' of a soft line break
+            if (column + width > MAX_LINE - 1) {
+                out.write('=');
+                out.write('\r');
+                out.write('\n');
+                column = 0;
+            }
+            if (literal) {
+                out.write(b);
+            } else {
+                out.write('=');
+                out.write(HEX[b >> 4]);
+                out.write(HEX[b & 0x0F]);
+            }
+            column += width;
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,66 @@
+package com.newsletter.template;
+
+import com.newsletter.model.Content;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles a content item into the template shared by all of its recipients.
+ * Content-level placeholders: {{topic}}.
+ */
+@Component
+public class TemplateCompiler {
+
+    @Value("${newsletter.mail.subject-template:Newsletter: {{topic}}}")
+    private String subjectTemplate;
+
+    @Value("${newsletter.mail.unsubscribe-url:http://localhost:8080/api/subscribers/unsubscribe}")
+    private String unsubscribeUrl;
+
+    @Value("${newsletter.digest.subject-template:Newsletter digest: {{topics}}}")
+    private String digestSubjectTemplate;
+
+    @Autowired
+    private UnsubscribeTokens unsubscribeTokens;
+
+    public CompiledTemplate compile(Content content) {
+        String topicName = topicNameOf(content);
+        String text = content.getText() == null ? "" : content.getText();
+        Long topicId = content.getTopic().getId();
+        String base = unsubscribeUrl + "?topicId=" + topicId + "&email=";
+        return new CompiledTemplate(
+                subjectTemplate,
+                text,
+                Map.of("topic", topicName),
+                email -> base + URLEncoder.encode(email, StandardCharsets.UTF_8)
+                        + "&token=" + unsubscribeTokens.sign(topicId, email)
+        );
+    }
+
+    /**
+     * Combines the compiled items into one digest message, each under its topic's name.
+     * Subject placeholders: {{topics}} (distinct topic names) and {{count}}.
+     */
+    public CompiledTemplate compileDigest(List<Content> items, List<CompiledTemplate> compiled) {
+        List<String> headings = items.stream().map(content -> topicNameOf(content) + "\n\n").toList();
+        String topics = items.stream().map(TemplateCompiler::topicNameOf).distinct().collect(Collectors.joining(", "));
+        return CompiledTemplate.join(
+                digestSubjectTemplate,
+                Map.of("topics", topics, "count", String.valueOf(items.size())),
+                compiled,
+                headings,
+                "\n\n----------\n\n"
+        );
+    }
+
+    private static String topicNameOf(Content content) {
+        return content.getTopic().getName() == null ? "" : content.getTopic().getName();
+    }
+}
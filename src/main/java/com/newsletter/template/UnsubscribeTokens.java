@@ -0,0 +1,64 @@
+package com.newsletter.template;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Signs unsubscribe links: the token is an HMAC-SHA256 over (topicId, email), so only the recipient of a
+ * message can unsubscribe its address. Every instance must share the secret; without one a random key is
+ * used and links stop verifying after a restart.
+ */
+@Slf4j
+@Component
+public class UnsubscribeTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    // Mac instances are not thread-safe; links are signed on the fan-out threads
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    public UnsubscribeTokens(@Value("${newsletter.mail.unsubscribe-secret:}") String secret) {
+        byte[] keyBytes;
+        if (secret.isBlank()) {
+            log.warn("No newsletter.mail.unsubscribe-secret set; unsubscribe links are signed with a random key "
+                    + "and stop verifying after a restart or on other instances");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    public String sign(Long topicId, String email) {
+        byte[] mac = macs.get().doFinal((topicId + "\n" + email).getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac);
+    }
+
+    public boolean verify(Long topicId, String email, String token) {
+        if (token == null) return false;
+        // Constant time, so the token cannot be guessed byte by byte
+        return MessageDigest.isEqual(sign(topicId, email).getBytes(StandardCharsets.US_ASCII),
+                token.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " unavailable", e);
+        }
+    }
+}
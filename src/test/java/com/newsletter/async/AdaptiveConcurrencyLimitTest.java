@@ -0,0 +1,111 @@
+package com.newsletter.async;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLI = 1_000_000L;
+
+    @Test
+    void slotsRunOutAtTheLimitAndComeBackWhenReleased() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0, 0.5);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertFalse(limit.hasCapacity());
+
+        limit.cancel();
+        assertTrue(limit.hasCapacity());
+        assertEquals(1, limit.inFlight());
+    }
+
+    @Test
+    void blockedAcquireProceedsOnceASlotIsReleased() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 10, 2.0, 0.5);
+        limit.acquire();
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        limit.cancel();
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(1, limit.inFlight());
+    }
+
+    @Test
+    void steadyLatencyGrowsALimitThatIsReached() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 10, 2.0, 0.5);
+        limit.tryAcquire();
+        limit.tryAcquire();
+
+        // Two of four in flight: the limit is in use and grows by 1/limit
+        limit.release(System.nanoTime() - MILLI, 1, false);
+        assertEquals(4.25, limit.limit(), 1e-9);
+
+        // One of 4.25 in flight: not in use, so it stays put
+        limit.release(System.nanoTime() - MILLI, 1, false);
+        assertEquals(4.25, limit.limit(), 1e-9);
+    }
+
+    @Test
+    void growthStopsAtTheMaximum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 3, 2.0, 0.5);
+        assertEquals(3, limit.limit(), 1e-9);
+
+        for (int i = 0; i < 3; i++) {
+            limit.tryAcquire();
+        }
+        limit.release(System.nanoTime() - MILLI, 1, false);
+        assertEquals(3, limit.limit(), 1e-9);
+    }
+
+    @Test
+    void oneCongestionEventCutsTheLimitOnce() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 10, 2.0, 0.5);
+        long before = System.nanoTime() - MILLI;
+        for (int i = 0; i < 3; i++) {
+            limit.tryAcquire();
+        }
+
+        limit.release(before, 1, true);
+        assertEquals(4, limit.limit(), 1e-9);
+
+        // Started before the cut: the same event, no second cut
+        limit.release(before, 1, true);
+        assertEquals(4, limit.limit(), 1e-9);
+
+        // Started after it: a new event
+        long after = System.nanoTime();
+        limit.release(after, 1, true);
+        assertEquals(2, limit.limit(), 1e-9);
+    }
+
+    @Test
+    void latencySpikeCutsTheLimitDownToItsMinimum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(3, 2, 10, 2.0, 0.5);
+        limit.tryAcquire();
+        limit.tryAcquire();
+
+        // Sets a 1 ms baseline, and the limit grows to 3 1/3
+        limit.release(System.nanoTime() - MILLI, 1, false);
+
+        // A hundredfold slower batch lifts the smoothed latency far past twice the baseline; half is below the minimum
+        limit.release(System.nanoTime() - 100 * MILLI, 1, false);
+        assertEquals(2, limit.limit(), 1e-9);
+    }
+}
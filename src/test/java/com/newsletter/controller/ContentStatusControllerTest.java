@@ -0,0 +1,122 @@
+package com.newsletter.controller;
+
+import com.newsletter.dto.ContentStatusPage;
+import com.newsletter.dto.ContentStatusView;
+import com.newsletter.model.Content;
+import com.newsletter.model.Status;
+import com.newsletter.model.Topic;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.repository.TopicRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Keyset paging of the status listings against the application's database.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "newsletter.index.snapshot-path=",
+        "spring.datasource.url=jdbc:h2:mem:content-status-test",
+        "spring.mail.host=127.0.0.1"
+})
+class ContentStatusControllerTest {
+
+    @Autowired
+    private ContentStatusController controller;
+
+    @Autowired
+    private TopicRepository topicRepository;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pendingAndSentPagesFollowTheKeysetToTheEnd() {
+        Topic topic = topic("paged");
+        List<Long> pending = new ArrayList<>();
+        List<Long> sent = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Content content = content(topic, i % 2 == 0);
+            (content.isSent() ? sent : pending).add(content.getId());
+        }
+
+        assertEquals(pending, walk(afterId -> controller.getPendingContent(topic.getId(), afterId, 2).getBody()));
+        assertEquals(sent, walk(afterId -> controller.getSentContent(topic.getId(), afterId, 2).getBody()));
+    }
+
+    @Test
+    void filtersAreAppliedBeforeThePageIsCut() {
+        Topic topic = topic("filtered");
+        Topic other = topic("other");
+        content(other, false);
+        Content first = content(topic, false);
+        content(topic, true);
+        Content second = content(topic, false);
+
+        ContentStatusPage page = controller.getPendingContent(topic.getId(), 0, 2).getBody();
+        assertEquals(List.of(first.getId(), second.getId()), ids(page));
+        assertTrue(page.getItems().stream().allMatch(item -> item.getTopicId().equals(topic.getId())));
+
+        ContentStatusPage next = controller.getPendingContent(topic.getId(), page.getNextAfterId(), 2).getBody();
+        assertTrue(next.getItems().isEmpty());
+        assertNull(next.getNextAfterId());
+    }
+
+    @Test
+    void sentFlagPageIsReadInOrderFromItsIndex() {
+        // Same shape as the query ContentRepositoryImpl builds for /pending and /sent
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT c.id FROM content c LEFT JOIN topic t ON t.id = c.topic_id " +
+                        "WHERE c.id > 0 AND c.sent = FALSE ORDER BY c.sent, c.id FETCH FIRST 100 ROWS ONLY",
+                String.class);
+
+        assertTrue(plan.contains("IDX_SENT_ID"), plan);
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    private List<Long> walk(LongFunction<ContentStatusPage> pages) {
+        List<Long> ids = new ArrayList<>();
+        long afterId = 0;
+        while (true) {
+            ContentStatusPage page = pages.apply(afterId);
+            if (page.getNextAfterId() == null) return ids;
+            assertTrue(page.getItems().size() <= 2);
+            ids.addAll(ids(page));
+            afterId = page.getNextAfterId();
+        }
+    }
+
+    private static List<Long> ids(ContentStatusPage page) {
+        return page.getItems().stream().map(ContentStatusView::getId).toList();
+    }
+
+    private Topic topic(String name) {
+        Topic topic = new Topic();
+        topic.setName(name);
+        return topicRepository.save(topic);
+    }
+
+    // Scheduled far ahead, so the dispatcher leaves it alone
+    private Content content(Topic topic, boolean sent) {
+        Content content = new Content();
+        content.setTopic(topic);
+        content.setText("Hello");
+        content.setScheduledTime(LocalDateTime.now().plusYears(1));
+        content.setStatus(sent ? Status.SENT : Status.PENDING);
+        content.setSent(sent);
+        return contentRepository.save(content);
+    }
+}
@@ -0,0 +1,352 @@
+package com.newsletter.kafka;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.Delivery;
+import com.newsletter.model.DeliveryStatus;
+import com.newsletter.model.FanOutShard;
+import com.newsletter.model.Status;
+import com.newsletter.model.Subscriber;
+import com.newsletter.model.Topic;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.repository.DeliveryRepository;
+import com.newsletter.repository.FanOutShardRepository;
+import com.newsletter.repository.TopicRepository;
+import com.newsletter.service.ContentService;
+import com.newsletter.service.SubscriberService;
+import com.newsletter.support.FakeSmtpServer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Kafka dispatch end to end against an embedded broker and a fake SMTP server: content is published by the
+ * scheduler, consumed by {@link DispatchConsumer}, sent, and recorded in the delivery ledger.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "newsletter.dispatch.strategy=kafka",
+        "newsletter.dispatch.refill-interval-ms=1000",
+        "newsletter.kafka.shard.size=2",
+        "newsletter.kafka.consumer.busy-retry-ms=200",
+        "newsletter.kafka.consumer.busy-max-retry-ms=1000",
+        "newsletter.kafka.consumer.busy-max-attempts=6",
+        "newsletter.kafka.shard.requeue-after-seconds=5",
+        "newsletter.kafka.shard.reaper-interval-ms=500",
+        "newsletter.index.snapshot-path=",
+        "spring.datasource.url=jdbc:h2:mem:dispatch-consumer-test",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "spring.mail.host=127.0.0.1",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false"
+})
+@EmbeddedKafka(partitions = 3, topics = {"newsletter.send", "newsletter.send.DLT"})
+class DispatchConsumerTest {
+
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    private static FakeSmtpServer smtp;
+    private static final List<String> accepted = Collections.synchronizedList(new ArrayList<>());
+
+    @Autowired
+    private TopicRepository topicRepository;
+
+    @Autowired
+    private SubscriberService subscriberService;
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private DeliveryRepository deliveryRepository;
+
+    @Autowired
+    private FanOutShardRepository shardRepository;
+
+    @Autowired
+    private KafkaTemplate<String, DispatchMessage> kafkaTemplate;
+
+    @Autowired
+    private DispatchConsumer dispatchConsumer;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @DynamicPropertySource
+    static void smtpServer(DynamicPropertyRegistry registry) throws IOException {
+        smtp = new FakeSmtpServer(0, 0, 0, 0, 0, (data, acceptedAtMillis) -> accepted.add(data));
+        registry.add("spring.mail.port", smtp::port);
+    }
+
+    @AfterAll
+    static void stopSmtpServer() throws IOException {
+        smtp.close();
+    }
+
+    @Test
+    void publishedContentIsConsumedSentAndRecorded() throws Exception {
+        Topic topic = topic("single");
+        subscribe(topic, 1);
+        long before = smtp.recipients();
+
+        Content content = publish(topic);
+
+        awaitStatus(content, Status.SENT);
+        awaitTrue(() -> delivered(content).size() == 1);
+        assertEquals(1, smtp.recipients() - before);
+
+        // Same key, same partition: consumed only once the partition paused for the first fan-out is resumed
+        Content next = publish(topic);
+        awaitStatus(next, Status.SENT);
+        awaitTrue(() -> delivered(next).size() == 1);
+        assertEquals(2, smtp.recipients() - before);
+    }
+
+    @Test
+    void shardedContentIsSentAcrossShards() throws Exception {
+        Topic topic = topic("sharded");
+        subscribe(topic, 6);
+        long before = smtp.recipients();
+
+        Content content = publish(topic);
+
+        awaitStatus(content, Status.SENT);
+        awaitTrue(() -> delivered(content).size() == 6);
+        assertEquals(6, smtp.recipients() - before);
+        List<FanOutShard> shards = shardRepository.findByContentIdOrderByShardIndex(content.getId());
+        assertEquals(3, shards.size());
+        assertTrue(shards.stream().allMatch(shard -> shard.getStatus() == Status.SENT));
+    }
+
+    @Test
+    void redeliveredShardResumesFromItsRow() throws Exception {
+        Topic topic = topic("redelivered");
+        long[] ids = subscribe(topic, 6).stream().mapToLong(Subscriber::getId).sorted().toArray();
+        Content content = new Content();
+        content.setTopic(topic);
+        content.setText("Hello {{name}}");
+        content.setScheduledTime(LocalDateTime.now());
+        content.setStatus(Status.QUEUED);
+        content = contentRepository.save(content);
+        Long contentId = content.getId();
+
+        // Shard 0 finished; shard 1 was half sent by a node whose lease has expired; shard 2 never started
+        LocalDateTime expired = LocalDateTime.now().minusMinutes(1);
+        shardRepository.saveAll(List.of(
+                new FanOutShard(contentId, 0, 0L, ids[1], Status.SENT, "dead-node", expired, null),
+                new FanOutShard(contentId, 1, ids[1], ids[3], Status.IN_PROGRESS, "dead-node", expired, null),
+                new FanOutShard(contentId, 2, ids[3], Long.MAX_VALUE, Status.QUEUED, null, null, null)));
+        deliveryRepository.save(new Delivery(contentId, ids[2], DeliveryStatus.SENT));
+        long before = smtp.recipients();
+
+        for (FanOutShard shard : shardRepository.findByContentIdOrderByShardIndex(contentId)) {
+            kafkaTemplate.send("newsletter.send", DispatchMessage.shard(contentId, topic.getId(),
+                    shard.getShardIndex(), shard.getFromId(), shard.getToId())).get(10, TimeUnit.SECONDS);
+        }
+
+        awaitStatus(content, Status.SENT);
+        awaitTrue(() -> delivered(contentId).size() == 4);
+        // Only the rest of shard 1 and all of shard 2
+        assertEquals(3, smtp.recipients() - before);
+        assertEquals(List.of(ids[2], ids[3], ids[4], ids[5]), delivered(contentId));
+    }
+
+    @Test
+    void shardsWhoseMessagesWereLostArePublishedAgain() throws Exception {
+        Topic topic = topic("lost-shards");
+        long[] ids = subscribe(topic, 4).stream().mapToLong(Subscriber::getId).sorted().toArray();
+        Long contentId = queued(topic, "Hello {{name}}").getId();
+        // Planned and queued a minute ago, but no message ever reached the workers
+        LocalDateTime queuedAt = LocalDateTime.now().minusMinutes(1);
+        shardRepository.saveAll(List.of(
+                new FanOutShard(contentId, 0, 0L, ids[1], Status.QUEUED, null, null, queuedAt),
+                new FanOutShard(contentId, 1, ids[1], Long.MAX_VALUE, Status.QUEUED, null, null, queuedAt)));
+        long before = smtp.recipients();
+
+        awaitTrue(() -> contentRepository.findById(contentId).orElseThrow().getStatus() == Status.SENT);
+        assertEquals(List.of(ids[0], ids[1], ids[2], ids[3]), delivered(contentId));
+        assertEquals(4, smtp.recipients() - before);
+    }
+
+    @Test
+    void recordsWithTheSameKeyAreSentInOffsetOrder() throws Exception {
+        Topic topic = topic("ordered");
+        subscribe(topic, 1);
+        // The first is held by another node for a moment; the second must still go out after it
+        Content first = busy(topic, "first-of-key", LocalDateTime.now().plusSeconds(2));
+        Content second = queued(topic, "second-of-key");
+
+        String key = String.valueOf(topic.getId());
+        kafkaTemplate.send("newsletter.send", key, DispatchMessage.of(first.getId(), topic.getId()));
+        kafkaTemplate.send("newsletter.send", key, DispatchMessage.of(second.getId(), topic.getId()));
+        kafkaTemplate.flush();
+
+        awaitStatus(first, Status.SENT);
+        awaitStatus(second, Status.SENT);
+        assertTrue(indexOfMessage("first-of-key") < indexOfMessage("second-of-key"));
+    }
+
+    @Test
+    void batchIsNotAcknowledgedAfterItsPartitionWasRevoked() throws Exception {
+        Topic topic = topic("revoked");
+        subscribe(topic, 1);
+        TopicPartition partition = listenerRegistry.getListenerContainer(DispatchConsumer.LISTENER_ID)
+                .getAssignedPartitions().iterator().next();
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(DispatchConsumer.LISTENER_ID)
+                .getContainerFor(partition.topic(), partition.partition());
+
+        Content revoked = busy(topic, "revoked", LocalDateTime.now().plusSeconds(1));
+        Acknowledgment revokedAck = mock(Acknowledgment.class);
+        dispatchConsumer.onBatch(List.of(record(partition, revoked)), revokedAck);
+        assertTrue(container.isPartitionPauseRequested(partition));
+
+        dispatchConsumer.onPartitionsRevokedBeforeCommit(null, List.of(partition));
+        assertFalse(container.isPartitionPauseRequested(partition));
+        awaitStatus(revoked, Status.SENT);
+        Thread.sleep(500);
+        verify(revokedAck, never()).acknowledge();
+
+        // Kept until it finished: acknowledged and resumed
+        Content kept = busy(topic, "kept", LocalDateTime.now().plusSeconds(1));
+        Acknowledgment keptAck = mock(Acknowledgment.class);
+        dispatchConsumer.onBatch(List.of(record(partition, kept)), keptAck);
+        awaitStatus(kept, Status.SENT);
+        verify(keptAck, timeout(TIMEOUT_MILLIS)).acknowledge();
+        awaitTrue(() -> !container.isPartitionPauseRequested(partition));
+    }
+
+    @Test
+    void recordStillBusyAfterMaxAttemptsIsDeadLettered() throws Exception {
+        Topic topic = topic("dead-lettered");
+        subscribe(topic, 1);
+        Content stuck = busy(topic, "stuck", LocalDateTime.now().plusMinutes(10));
+        Map<String, Object> props = KafkaTestUtils.consumerProps("dead-letter-test", "false", embeddedKafka);
+
+        try (Consumer<String, DispatchMessage> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new DispatchMessageDeserializer()).createConsumer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(consumer, "newsletter.send.DLT");
+            kafkaTemplate.send("newsletter.send", String.valueOf(topic.getId()),
+                    DispatchMessage.of(stuck.getId(), topic.getId())).get(10, TimeUnit.SECONDS);
+
+            ConsumerRecord<String, DispatchMessage> deadLetter = KafkaTestUtils.getSingleRecord(
+                    consumer, "newsletter.send.DLT", Duration.ofMillis(TIMEOUT_MILLIS));
+            assertEquals(stuck.getId(), deadLetter.value().getContentId());
+            assertEquals(String.valueOf(topic.getId()), deadLetter.key());
+        }
+        assertEquals(Status.IN_PROGRESS, contentRepository.findById(stuck.getId()).orElseThrow().getStatus());
+    }
+
+    private Topic topic(String name) {
+        Topic topic = new Topic();
+        topic.setName(name);
+        return topicRepository.save(topic);
+    }
+
+    private List<Subscriber> subscribe(Topic topic, int subscribers) {
+        List<Subscriber> roster = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            roster.add(new Subscriber(null, topic.getName() + i + "@example.com", topic));
+        }
+        return subscriberService.saveAll(roster);
+    }
+
+    private Content publish(Topic topic) {
+        Content content = new Content();
+        content.setTopic(topic);
+        content.setText("Hello {{name}}");
+        content.setScheduledTime(LocalDateTime.now());
+        return contentService.save(content);
+    }
+
+    private Content queued(Topic topic, String text) {
+        Content content = new Content();
+        content.setTopic(topic);
+        content.setText(text);
+        content.setScheduledTime(LocalDateTime.now());
+        content.setStatus(Status.QUEUED);
+        return contentRepository.save(content);
+    }
+
+    // Leased by another node until the given time
+    private Content busy(Topic topic, String text, LocalDateTime leaseUntil) {
+        Content content = queued(topic, text);
+        content.setStatus(Status.IN_PROGRESS);
+        content.setClaimedBy("other-node");
+        content.setLeaseUntil(leaseUntil);
+        return contentRepository.save(content);
+    }
+
+    private static ConsumerRecord<String, DispatchMessage> record(TopicPartition partition, Content content) {
+        return new ConsumerRecord<>(partition.topic(), partition.partition(), 0L,
+                String.valueOf(content.getTopic().getId()), DispatchMessage.of(content.getId(), content.getTopic().getId()));
+    }
+
+    private static int indexOfMessage(String text) {
+        synchronized (accepted) {
+            for (int i = 0; i < accepted.size(); i++) {
+                if (accepted.get(i).contains(text)) return i;
+            }
+        }
+        throw new AssertionError("no message containing " + text);
+    }
+
+    private List<Long> delivered(Content content) {
+        return delivered(content.getId());
+    }
+
+    private List<Long> delivered(Long contentId) {
+        return deliveryRepository.findSubscriberIds(contentId, 0, Long.MAX_VALUE, DeliveryStatus.SENT).stream()
+                .sorted()
+                .toList();
+    }
+
+    private void awaitStatus(Content content, Status status) throws InterruptedException {
+        awaitTrue(() -> contentRepository.findById(content.getId()).orElseThrow().getStatus() == status);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(100);
+        }
+    }
+}
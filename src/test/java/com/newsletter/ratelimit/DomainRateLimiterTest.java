@@ -0,0 +1,61 @@
+package com.newsletter.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lanes and buckets with rates low enough that nothing refills while a test runs.
+ */
+class DomainRateLimiterTest {
+
+    @Test
+    void recipientIsThrottledInItsDomainLaneOrTheDefaultOne() {
+        DomainRateLimiter limiter = limiter(0, 0, "slow.example:1");
+
+        assertEquals("slow.example", limiter.laneOf("reader@Slow.Example"));
+        assertEquals(DomainRateLimiter.DEFAULT_LANE, limiter.laneOf("reader@example.com"));
+    }
+
+    @Test
+    void laneWaitsOnceItsBurstIsSpent() {
+        DomainRateLimiter limiter = limiter(0, 0, "slow.example:2");
+
+        assertEquals(0, limiter.tryAcquire("slow.example", 1));
+        assertEquals(0, limiter.tryAcquire("slow.example", 1));
+        long wait = limiter.tryAcquire("slow.example", 1);
+        assertTrue(wait > 0 && wait <= 500_000_000L, "wait=" + wait);
+        // Other lanes are unlimited
+        assertEquals(0, limiter.tryAcquire(DomainRateLimiter.DEFAULT_LANE, 1_000));
+    }
+
+    @Test
+    void deniedRequestTakesNothingFromTheGlobalBucket() {
+        DomainRateLimiter limiter = limiter(2, 0, "slow.example:1");
+
+        assertEquals(0, limiter.tryAcquire("slow.example", 1));
+        assertTrue(limiter.tryAcquire("slow.example", 1) > 0);
+
+        // One global token is still left for the default lane
+        assertEquals(0, limiter.tryAcquire(DomainRateLimiter.DEFAULT_LANE, 1));
+        assertTrue(limiter.tryAcquire(DomainRateLimiter.DEFAULT_LANE, 1) > 0);
+    }
+
+    @Test
+    void malformedDomainRateIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> limiter(0, 0, "slow.example"));
+    }
+
+    private static DomainRateLimiter limiter(double globalPerSecond, double defaultPerSecond, String domains) {
+        DomainRateLimiter limiter = new DomainRateLimiter();
+        ReflectionTestUtils.setField(limiter, "globalPerSecond", globalPerSecond);
+        ReflectionTestUtils.setField(limiter, "defaultPerSecond", defaultPerSecond);
+        ReflectionTestUtils.setField(limiter, "domainRates", domains);
+        ReflectionTestUtils.setField(limiter, "burstSeconds", 1.0);
+        limiter.initBuckets();
+        return limiter;
+    }
+}
@@ -0,0 +1,51 @@
+package com.newsletter.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBucketTest {
+
+    private static final long START = 1_000_000_000L;
+    private static final long MILLI = 1_000_000L;
+
+    @Test
+    void startsFull() {
+        TokenBucket bucket = new TokenBucket(10, 10, START);
+
+        assertEquals(0, bucket.waitNanos(10, START));
+    }
+
+    @Test
+    void emptyBucketWaitsForTheMissingTokens() {
+        TokenBucket bucket = new TokenBucket(10, 10, START);
+        bucket.take(10);
+
+        // Ten a second: a token every 100 ms
+        assertEquals(100 * MILLI, bucket.waitNanos(1, START), 1);
+        assertEquals(300 * MILLI, bucket.waitNanos(3, START), 1);
+        assertEquals(50 * MILLI, bucket.waitNanos(1, START + 50 * MILLI), 1);
+        assertEquals(0, bucket.waitNanos(1, START + 100 * MILLI));
+    }
+
+    @Test
+    void refillStopsAtTheCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 5, START);
+        bucket.take(5);
+
+        bucket.waitNanos(1, START + 10_000 * MILLI);
+        bucket.take(5);
+        assertEquals(100 * MILLI, bucket.waitNanos(1, START + 10_000 * MILLI), 1);
+    }
+
+    @Test
+    void requestAboveTheCapacityIsGrantedWhenFullAndLeavesDebt() {
+        TokenBucket bucket = new TokenBucket(10, 5, START);
+
+        assertEquals(0, bucket.waitNanos(8, START));
+        bucket.take(8);
+
+        // Three tokens owed plus the one asked for
+        assertEquals(400 * MILLI, bucket.waitNanos(1, START), 1);
+    }
+}
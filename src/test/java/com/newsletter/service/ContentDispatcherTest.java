@@ -0,0 +1,121 @@
+package com.newsletter.service;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.Status;
+import com.newsletter.model.Subscriber;
+import com.newsletter.model.Topic;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.repository.TopicRepository;
+import com.newsletter.support.FakeSmtpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Timer wheel dispatch against a fake SMTP server.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "newsletter.dispatch.refill-interval-ms=1000",
+        "newsletter.dispatch.claim-retry-ms=200",
+        "newsletter.index.snapshot-path=",
+        "spring.datasource.url=jdbc:h2:mem:content-dispatcher-test",
+        "spring.mail.host=127.0.0.1",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false"
+})
+class ContentDispatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    private static FakeSmtpServer smtp;
+
+    @Autowired
+    private FailingLeaseManager leaseManager;
+
+    @Autowired
+    private TopicRepository topicRepository;
+
+    @Autowired
+    private SubscriberService subscriberService;
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @DynamicPropertySource
+    static void smtpServer(DynamicPropertyRegistry registry) throws IOException {
+        smtp = new FakeSmtpServer(0, 0, 0, 0, 0, null);
+        registry.add("spring.mail.port", smtp::port);
+    }
+
+    @AfterAll
+    static void stopSmtpServer() throws IOException {
+        smtp.close();
+    }
+
+    @Test
+    void dueContentIsSentAfterItsClaimFailedOnce() throws Exception {
+        Topic topic = new Topic();
+        topic.setName("claim-failure");
+        topic = topicRepository.save(topic);
+        subscriberService.saveAll(List.of(new Subscriber(null, "reader@example.com", topic)));
+        leaseManager.failingClaims.set(1);
+
+        Content content = new Content();
+        content.setTopic(topic);
+        content.setText("Hello {{name}}");
+        content.setScheduledTime(LocalDateTime.now());
+        Long contentId = contentService.save(content).getId();
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (contentRepository.findById(contentId).orElseThrow().getStatus() != Status.SENT) {
+            assertTrue(System.currentTimeMillis() < deadline, "content not sent in time");
+            Thread.sleep(100);
+        }
+        assertEquals(1, smtp.recipients());
+        assertEquals(0, leaseManager.failingClaims.get());
+    }
+
+    @TestConfiguration
+    static class FailingClaims {
+
+        @Bean
+        @Primary
+        FailingLeaseManager failingLeaseManager() {
+            return new FailingLeaseManager();
+        }
+    }
+
+    // Throws from the next failingClaims batch claims, as a lost database connection would
+    static class FailingLeaseManager extends ContentLeaseManager {
+
+        private final AtomicInteger failingClaims = new AtomicInteger();
+
+        @Override
+        public Set<Long> claimAll(List<Long> contentIds, Collection<Status> from) {
+            if (failingClaims.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+            return super.claimAll(contentIds, from);
+        }
+    }
+}
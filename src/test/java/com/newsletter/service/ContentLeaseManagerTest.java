@@ -0,0 +1,127 @@
+package com.newsletter.service;
+
+import com.newsletter.model.Status;
+import com.newsletter.repository.ContentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lease claims and the buffered status write-back, against a mocked repository.
+ */
+class ContentLeaseManagerTest {
+
+    private ContentRepository contentRepository;
+    private ContentLeaseManager leases;
+
+    @BeforeEach
+    void createManager() {
+        contentRepository = mock(ContentRepository.class);
+        leases = new ContentLeaseManager();
+        ReflectionTestUtils.setField(leases, "contentRepository", contentRepository);
+        ReflectionTestUtils.setField(leases, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(leases, "leaseSeconds", 60L);
+        ReflectionTestUtils.setField(leases, "nodeId", "node-a");
+        ReflectionTestUtils.setField(leases, "batchSize", 2);
+    }
+
+    @Test
+    void claimAllTellsEachBatchApartByItsLeaseExpiry() {
+        when(contentRepository.claimAll(anyCollection(), anyCollection(), any(), anyString(), any(), any()))
+                .thenReturn(2, 1);
+        when(contentRepository.findClaimed(eq(List.of(1L, 2L)), eq("node-a"), eq(Status.IN_PROGRESS), any()))
+                .thenReturn(List.of(1L, 2L));
+        when(contentRepository.findClaimed(eq(List.of(3L)), eq("node-a"), eq(Status.IN_PROGRESS), any()))
+                .thenReturn(List.of(3L));
+
+        assertEquals(Set.of(1L, 2L, 3L), leases.claimAll(List.of(1L, 2L, 3L), Set.of(Status.PENDING)));
+
+        ArgumentCaptor<LocalDateTime> leaseUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(contentRepository, times(2)).claimAll(anyCollection(), anyCollection(), eq(Status.IN_PROGRESS),
+                eq("node-a"), any(), leaseUntil.capture());
+        assertTrue(leaseUntil.getAllValues().get(1).isAfter(leaseUntil.getAllValues().get(0)));
+        verify(contentRepository).findClaimed(eq(List.of(1L, 2L)), eq("node-a"), eq(Status.IN_PROGRESS),
+                eq(leaseUntil.getAllValues().get(0)));
+        verify(contentRepository).findClaimed(eq(List.of(3L)), eq("node-a"), eq(Status.IN_PROGRESS),
+                eq(leaseUntil.getAllValues().get(1)));
+    }
+
+    @Test
+    void rowsOfEarlierBatchesStayHeldWhenALaterBatchFails() {
+        when(contentRepository.claimAll(anyCollection(), anyCollection(), any(), anyString(), any(), any()))
+                .thenReturn(2)
+                .thenThrow(new QueryTimeoutException("timeout"));
+        when(contentRepository.findClaimed(anyCollection(), anyString(), any(), any())).thenReturn(List.of(1L, 2L));
+
+        assertThrows(QueryTimeoutException.class,
+                () -> leases.claimAll(List.of(1L, 2L, 3L, 4L), Set.of(Status.PENDING)));
+
+        assertTrue(leases.holds(1L));
+        assertTrue(leases.holds(2L));
+        assertFalse(leases.holds(3L));
+        assertFalse(leases.holds(4L));
+    }
+
+    @Test
+    void batchThatClaimedNothingIsNotReadBack() {
+        when(contentRepository.claimAll(anyCollection(), anyCollection(), any(), anyString(), any(), any()))
+                .thenReturn(0);
+
+        assertTrue(leases.claimAll(List.of(1L, 2L), Set.of(Status.PENDING)).isEmpty());
+        verify(contentRepository, never()).findClaimed(anyCollection(), anyString(), any(), any());
+    }
+
+    @Test
+    void failedFlushRetriesOnlyTheBatchThatFailed() {
+        when(contentRepository.releaseAll(anyCollection(), anyString(), any(), any(), anyBoolean()))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(2)
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(1);
+
+        // The second release fills the buffer; its flush fails and both rows go back to the buffer
+        CompletableFuture<Void> first = leases.release(1L, Status.SENT);
+        CompletableFuture<Void> second = leases.release(2L, Status.SENT);
+        assertFalse(first.isDone());
+
+        // Three buffered rows flush as [1, 2] and [3]; only the second batch fails
+        CompletableFuture<Void> third = leases.release(3L, Status.SENT);
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+
+        leases.flush();
+        assertTrue(third.isDone());
+
+        var calls = inOrder(contentRepository);
+        calls.verify(contentRepository, times(2)).releaseAll(eq(List.of(1L, 2L)), eq("node-a"), eq(Status.IN_PROGRESS), eq(Status.SENT), eq(true));
+        calls.verify(contentRepository, times(2)).releaseAll(eq(List.of(3L)), eq("node-a"), eq(Status.IN_PROGRESS), eq(Status.SENT), eq(true));
+        calls.verifyNoMoreInteractions();
+    }
+}
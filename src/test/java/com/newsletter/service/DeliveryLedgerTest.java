@@ -0,0 +1,104 @@
+package com.newsletter.service;
+
+import com.newsletter.model.DeliveryStatus;
+import com.newsletter.model.FanOutCheckpoint;
+import com.newsletter.repository.DeliveryRepository;
+import com.newsletter.repository.FanOutCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Buffered ledger rows and fan-out watermarks, against a mocked database.
+ */
+class DeliveryLedgerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private FanOutCheckpointRepository checkpointRepository;
+    private DeliveryLedger ledger;
+
+    @BeforeEach
+    void createLedger() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        checkpointRepository = mock(FanOutCheckpointRepository.class);
+        // Every row is new: the update matches nothing and the insert writes it
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenAnswer(call -> new int[call.<List<?>>getArgument(1).size()]);
+        ledger = new DeliveryLedger();
+        ReflectionTestUtils.setField(ledger, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(ledger, "deliveryRepository", mock(DeliveryRepository.class));
+        ReflectionTestUtils.setField(ledger, "checkpointRepository", checkpointRepository);
+        ReflectionTestUtils.setField(ledger, "batchSize", 100);
+    }
+
+    @Test
+    void watermarkOfAFanOutThatNeverStartedIsZero() {
+        when(checkpointRepository.findById(1L)).thenReturn(Optional.empty());
+        when(checkpointRepository.findById(2L)).thenReturn(Optional.of(new FanOutCheckpoint(2L, 40)));
+
+        assertEquals(0, ledger.watermark(1L));
+        assertEquals(40, ledger.watermark(2L));
+    }
+
+    @Test
+    void checkpointIsWrittenAfterTheRowsItCovers() {
+        ledger.record(1L, 10L, DeliveryStatus.SENT);
+        ledger.checkpoint(1L, 10);
+        ledger.checkpoint(1L, 5);
+
+        ledger.flush();
+
+        var writes = inOrder(jdbcTemplate, checkpointRepository);
+        writes.verify(jdbcTemplate).batchUpdate(startsWith("UPDATE"), anyList());
+        writes.verify(jdbcTemplate).batchUpdate(startsWith("INSERT"), anyList());
+        // The highest watermark recorded wins
+        writes.verify(checkpointRepository).save(new FanOutCheckpoint(1L, 10));
+    }
+
+    @Test
+    void checkpointIsHeldBackUntilItsRowsAreWritten() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenAnswer(call -> new int[call.<List<?>>getArgument(1).size()]);
+        ledger.record(1L, 10L, DeliveryStatus.SENT);
+        ledger.checkpoint(1L, 10);
+
+        ledger.flush();
+        verify(checkpointRepository, never()).save(any());
+
+        ledger.flush();
+        verify(checkpointRepository).save(new FanOutCheckpoint(1L, 10));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recipientRecordedTwiceInOneFlushKeepsItsLatestOutcome() {
+        ledger.record(1L, 10L, DeliveryStatus.FAILED);
+        ledger.record(1L, 10L, DeliveryStatus.SENT);
+
+        ledger.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE"), rows.capture());
+        assertEquals(1, rows.getValue().size());
+        assertArrayEquals(new Object[]{DeliveryStatus.SENT.ordinal(), 1L, 10L}, rows.getValue().get(0));
+    }
+}
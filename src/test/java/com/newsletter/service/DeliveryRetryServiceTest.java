@@ -0,0 +1,190 @@
+package com.newsletter.service;
+
+import com.newsletter.dto.SubscriberEmail;
+import com.newsletter.model.Content;
+import com.newsletter.model.DeadLetter;
+import com.newsletter.model.DeliveryStatus;
+import com.newsletter.model.Topic;
+import com.newsletter.repository.ContentRepository;
+import com.newsletter.repository.DeadLetterRepository;
+import com.newsletter.repository.DeliveryRepository;
+import com.newsletter.repository.DeliveryRetryRepository;
+import com.newsletter.repository.TopicRepository;
+import com.newsletter.support.FakeSmtpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Background retries and the dead-letter store against a fake SMTP server.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "newsletter.retry.max-attempts=3",
+        "newsletter.retry.initial-backoff-ms=100",
+        "newsletter.retry.max-backoff-ms=400",
+        "newsletter.retry.poll-interval-ms=100",
+        "newsletter.retry.batch-size=2",
+        "newsletter.mail.batch-size=1",
+        "newsletter.mail.rate.domains=slow.example:1",
+        "newsletter.index.snapshot-path=",
+        "spring.datasource.url=jdbc:h2:mem:delivery-retry-test",
+        "spring.mail.host=127.0.0.1",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false"
+})
+class DeliveryRetryServiceTest {
+
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    private static FakeSmtpServer smtp;
+
+    @Autowired
+    private DeliveryRetryService retryService;
+
+    @Autowired
+    private TopicRepository topicRepository;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private DeliveryRetryRepository retryRepository;
+
+    @Autowired
+    private DeadLetterRepository deadLetterRepository;
+
+    @Autowired
+    private DeliveryRepository deliveryRepository;
+
+    @DynamicPropertySource
+    static void smtpServer(DynamicPropertyRegistry registry) throws IOException {
+        smtp = new FakeSmtpServer(0, 0, 0, 0, 0, null);
+        registry.add("spring.mail.port", smtp::port);
+    }
+
+    @AfterAll
+    static void stopSmtpServer() throws IOException {
+        smtp.close();
+    }
+
+    @AfterEach
+    void acceptEveryone() {
+        smtp.setRcptErrorRate(0);
+    }
+
+    @Test
+    void failedRecipientIsSentByTheRetryWorker() throws Exception {
+        Long contentId = content("retried");
+
+        retryService.schedule(contentId, recipients(1, "example.com"), new MailSendException("451 try later"));
+
+        awaitTrue(() -> delivered(contentId).size() == 1);
+        awaitTrue(() -> retryRepository.count() == 0);
+        assertTrue(deadLetters(contentId).isEmpty());
+    }
+
+    @Test
+    void recipientRefusedOnEveryAttemptIsDeadLettered() throws Exception {
+        Long contentId = content("refused");
+        smtp.setRcptErrorRate(1);
+        long rejectedBefore = smtp.rejectedRecipients();
+
+        retryService.schedule(contentId, recipients(1, "example.com"), new MailSendException("550 no such user"));
+
+        awaitTrue(() -> deadLetters(contentId).size() == 1);
+        DeadLetter deadLetter = deadLetters(contentId).get(0);
+        assertEquals(3, deadLetter.getAttempts());
+        assertTrue(deadLetter.getLastError().contains("550"), deadLetter.getLastError());
+        // The first of the three attempts was the original send
+        assertEquals(2, smtp.rejectedRecipients() - rejectedBefore);
+        assertTrue(delivered(contentId).isEmpty());
+        assertEquals(0, retryRepository.count());
+    }
+
+    @Test
+    void replayQueuesEveryDeadLetterOfTheContentPageByPage() throws Exception {
+        Long contentId = content("replayed");
+        for (int i = 1; i <= 5; i++) {
+            deadLetterRepository.save(new DeadLetter(null, contentId, (long) i, "reader" + i + "@example.com",
+                    3, "550 no such user", LocalDateTime.now()));
+        }
+
+        // Five dead letters over pages of two
+        assertEquals(5, retryService.replayContent(contentId));
+
+        assertTrue(deadLetters(contentId).isEmpty());
+        awaitTrue(() -> delivered(contentId).size() == 5);
+    }
+
+    @Test
+    void retriesOfAThrottledDomainWaitForTheirTokens() throws Exception {
+        Long contentId = content("throttled");
+        LocalDateTime scheduled = LocalDateTime.now();
+
+        retryService.schedule(contentId, recipients(3, "slow.example"), new MailSendException("451 try later"));
+
+        // One token a second: the first pass sends one recipient and pushes the others back until the next
+        // token, well past the poll interval. Pending attempts only ever move later, so this holds however
+        // late it is checked.
+        awaitTrue(() -> delivered(contentId).size() >= 1);
+        LocalDateTime nextToken = scheduled.plusNanos(500_000_000);
+        assertTrue(retryRepository.findAll().stream()
+                .allMatch(retry -> retry.getNextAttemptAt().isAfter(nextToken)));
+
+        awaitTrue(() -> delivered(contentId).size() == 3);
+        assertTrue(Duration.between(scheduled, LocalDateTime.now()).toMillis() >= 2_000);
+        awaitTrue(() -> retryRepository.count() == 0);
+    }
+
+    private Long content(String name) {
+        Topic topic = new Topic();
+        topic.setName(name);
+        topic = topicRepository.save(topic);
+        // Scheduled far ahead, so the dispatcher leaves it alone
+        Content content = new Content();
+        content.setTopic(topic);
+        content.setText("Hello {{name}}");
+        content.setScheduledTime(LocalDateTime.now().plusYears(1));
+        return contentRepository.save(content).getId();
+    }
+
+    private static List<SubscriberEmail> recipients(int count, String domain) {
+        List<SubscriberEmail> recipients = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            recipients.add(new SubscriberEmail((long) i, "reader" + i + "@" + domain));
+        }
+        return recipients;
+    }
+
+    private List<Long> delivered(Long contentId) {
+        return deliveryRepository.findSubscriberIds(contentId, 0, Long.MAX_VALUE, DeliveryStatus.SENT);
+    }
+
+    private List<DeadLetter> deadLetters(Long contentId) {
+        return deadLetterRepository.findPageByContent(contentId, 0, PageRequest.ofSize(100));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.newsletter.service;
+
+import com.newsletter.metrics.MailMetrics;
+import com.newsletter.support.FakeSmtpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routing over two fake SMTP servers, "a" and "b".
+ */
+class RoutingEmailSenderTest {
+
+    private FakeSmtpServer a;
+    private FakeSmtpServer b;
+    private MockEnvironment environment;
+    private RoutingEmailSender router;
+
+    @BeforeEach
+    void startServers() throws Exception {
+        a = new FakeSmtpServer(0, 0, 0, 0, 0, null);
+        b = new FakeSmtpServer(0, 0, 0, 0, 0, null);
+        environment = new MockEnvironment();
+        provider("a", a);
+        provider("b", b);
+    }
+
+    @AfterEach
+    void stopServers() throws Exception {
+        if (router != null) router.closeProviders();
+        a.close();
+        b.close();
+    }
+
+    @Test
+    void spreadsBatchesByWeight() throws Exception {
+        environment.setProperty("newsletter.mail.providers.b.weight", "3");
+        open(List.of("a", "b"), 3, 5000);
+
+        for (int i = 0; i < 40; i++) {
+            send("user" + i + "@example.com");
+        }
+
+        assertEquals(10, a.recipients());
+        assertEquals(30, b.recipients());
+    }
+
+    @Test
+    void failsPushedBackRecipientsOverToAnotherProvider() throws Exception {
+        a.setDataErrorRate(1.0);
+        open(List.of("a", "b"), 3, 5000);
+
+        // Equal weights: the first batch goes to a, which answers every message with 451
+        router.sendEmails(List.of("x@example.com", "y@example.com", "z@example.com"), "Subject", "Body");
+
+        assertEquals(3, a.deferredMessages());
+        assertEquals(0, a.recipients());
+        assertEquals(3, b.recipients());
+    }
+
+    @Test
+    void ejectsFailingProviderAndRestoresItAfterProbe() throws Exception {
+        a.setDataErrorRate(1.0);
+        open(List.of("a", "b"), 2, 200);
+
+        int sent = 0;
+        while (sent < 10 && a.deferredMessages() < 2) {
+            send("before" + sent++ + "@example.com");
+        }
+        assertEquals(2, a.deferredMessages());
+
+        // Ejected: nothing reaches a during the cooldown
+        for (int i = 0; i < 5; i++) {
+            send("ejected" + i + "@example.com");
+        }
+        assertEquals(2, a.deferredMessages());
+        assertEquals(0, a.recipients());
+
+        a.setDataErrorRate(0);
+        Thread.sleep(300);
+        for (int i = 0; i < 4; i++) {
+            send("after" + i + "@example.com");
+        }
+        // The probe succeeded and a is back in rotation
+        assertTrue(a.recipients() >= 2, "a received " + a.recipients());
+        assertEquals(sent + 5 + 4, a.recipients() + b.recipients());
+    }
+
+    @Test
+    void waitsForQuota() throws Exception {
+        environment.setProperty("newsletter.mail.providers.a.rate-per-second", "10");
+        environment.setProperty("newsletter.mail.providers.a.burst-seconds", "0.1");
+        open(List.of("a"), 3, 5000);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            send("user" + i + "@example.com");
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // One permit of burst, then one every 100 ms
+        assertTrue(elapsedMillis >= 180, "took " + elapsedMillis + " ms");
+        assertEquals(3, a.recipients());
+    }
+
+    @Test
+    void failsImmediatelyWhenEveryProviderIsEjected() throws Exception {
+        a.setDataErrorRate(1.0);
+        b.setDataErrorRate(1.0);
+        open(List.of("a", "b"), 1, 60_000);
+
+        MailSendException first = assertThrows(MailSendException.class, () -> send("first@example.com"));
+        assertTrue(first.getFailedMessages().containsKey("first@example.com"));
+        assertEquals(1, a.deferredMessages());
+        assertEquals(1, b.deferredMessages());
+
+        long start = System.nanoTime();
+        MailSendException next = assertThrows(MailSendException.class, () -> send("next@example.com"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(next.getFailedMessages().containsKey("next@example.com"));
+        assertTrue(elapsedMillis < 1000, "waited " + elapsedMillis + " ms");
+        // Neither provider was tried again
+        assertEquals(2, a.deferredMessages() + b.deferredMessages());
+    }
+
+    private void provider(String name, FakeSmtpServer server) {
+        String prefix = "newsletter.mail.providers." + name + ".";
+        environment.setProperty(prefix + "host", "127.0.0.1");
+        environment.setProperty(prefix + "port", String.valueOf(server.port()));
+        environment.setProperty(prefix + "pool-size", "1");
+        environment.setProperty(prefix + "properties.mail.smtp.auth", "false");
+    }
+
+    private void open(List<String> providers, int failureThreshold, long cooldownMillis) throws Exception {
+        router = new RoutingEmailSender();
+        ReflectionTestUtils.setField(router, "mailMetrics", new MailMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(router, "environment", environment);
+        ReflectionTestUtils.setField(router, "providerNames", providers);
+        ReflectionTestUtils.setField(router, "failureThreshold", failureThreshold);
+        ReflectionTestUtils.setField(router, "cooldownMillis", cooldownMillis);
+        ReflectionTestUtils.setField(router, "maxCooldownMillis", 300_000L);
+        ReflectionTestUtils.setField(router, "maxWaitMillis", 5000L);
+        ReflectionTestUtils.setField(router, "defaultFrom", "newsletter@example.com");
+        ReflectionTestUtils.setField(router, "defaultPoolSize", 1);
+        ReflectionTestUtils.setField(router, "defaultIdleTimeoutMillis", 30_000L);
+        ReflectionTestUtils.setField(router, "defaultMaxMessagesPerConnection", 100);
+        router.openProviders();
+    }
+
+    private void send(String to) {
+        router.sendEmails(List.of(to), "Subject", "Body");
+    }
+}
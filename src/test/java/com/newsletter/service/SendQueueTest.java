@@ -0,0 +1,111 @@
+package com.newsletter.service;
+
+import com.newsletter.ratelimit.DomainRateLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lane scheduling with a real rate limiter; "slow.example" gets one token a second, everything else is unlimited.
+ */
+class SendQueueTest {
+
+    private final DomainRateLimiter rateLimiter = rateLimiter();
+    private final List<String> submitted = new ArrayList<>();
+    private final List<String> opened = new ArrayList<>();
+    private final AtomicBoolean capacity = new AtomicBoolean(true);
+
+    @Test
+    void fullBatchesGoRoundRobinAcrossLanes() {
+        SendQueue<String, String> queue = queue(2, 100);
+        add(queue, "a", "a1", "a2", "a3", "a4");
+        add(queue, "b", "b1", "b2");
+
+        assertEquals(0, queue.drain(false));
+        assertEquals(List.of("a:[a1, a2]", "b:[b1, b2]", "a:[a3, a4]"), submitted);
+    }
+
+    @Test
+    void partialBatchWaitsForTheFlush() {
+        SendQueue<String, String> queue = queue(2, 100);
+        add(queue, "a", "a1");
+
+        assertEquals(0, queue.drain(false));
+        assertTrue(submitted.isEmpty());
+
+        assertEquals(0, queue.drain(true));
+        assertEquals(List.of("a:[a1]"), submitted);
+    }
+
+    @Test
+    void partialBatchesGoOnceTheBufferIsOverItsLimit() {
+        SendQueue<String, String> queue = queue(2, 2);
+        add(queue, "a", "a1");
+        add(queue, "b", "b1");
+        add(queue, "c", "c1");
+
+        assertEquals(0, queue.drain(false));
+        assertEquals(List.of("a:[a1]", "b:[b1]", "c:[c1]"), submitted);
+    }
+
+    @Test
+    void eachBatchHeadIsReportedWhenItOpensItsLane() {
+        SendQueue<String, String> queue = queue(2, 100);
+        add(queue, "a", "a1", "a2", "a3");
+
+        queue.drain(false);
+        assertEquals(List.of("a1", "a3"), opened);
+    }
+
+    @Test
+    void throttledLaneReportsItsWaitWhileTheOthersGoOn() {
+        SendQueue<String, String> queue = queue(1, 100);
+        add(queue, "slow.example", "s1", "s2");
+        add(queue, DomainRateLimiter.DEFAULT_LANE, "d1");
+
+        long wait = queue.drain(true);
+
+        assertEquals(List.of("slow.example:[s1]", "*:[d1]"), submitted);
+        assertTrue(wait > 0 && wait <= 1_000_000_000L, "wait=" + wait);
+    }
+
+    @Test
+    void saturatedStageYieldsWithoutTakingTokens() {
+        SendQueue<String, String> queue = queue(1, 100);
+        add(queue, "slow.example", "s1");
+        capacity.set(false);
+
+        assertEquals(FanOutTask.SATURATED, queue.drain(true));
+        assertTrue(submitted.isEmpty());
+
+        // The lane's only token is still there
+        capacity.set(true);
+        assertEquals(0, queue.drain(true));
+        assertEquals(List.of("slow.example:[s1]"), submitted);
+    }
+
+    private SendQueue<String, String> queue(int batchSize, int maxBuffered) {
+        return new SendQueue<>(rateLimiter, batchSize, maxBuffered, opened::add, capacity::get,
+                (lane, batch) -> submitted.add(lane + ":" + batch));
+    }
+
+    private static void add(SendQueue<String, String> queue, String lane, String... recipients) {
+        for (String recipient : recipients) {
+            queue.add(lane, lane, recipient);
+        }
+    }
+
+    private static DomainRateLimiter rateLimiter() {
+        DomainRateLimiter limiter = new DomainRateLimiter();
+        ReflectionTestUtils.setField(limiter, "domainRates", "slow.example:1");
+        ReflectionTestUtils.setField(limiter, "burstSeconds", 1.0);
+        ReflectionTestUtils.invokeMethod(limiter, "initBuckets");
+        return limiter;
+    }
+}
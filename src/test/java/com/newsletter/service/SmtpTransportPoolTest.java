@@ -0,0 +1,108 @@
+package com.newsletter.service;
+
+import com.newsletter.support.FakeSmtpServer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SmtpTransportPoolTest {
+
+    private FakeSmtpServer server;
+    private Session session;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new FakeSmtpServer(0, 0, 0, 0, 0, null);
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.auth", "false");
+        properties.setProperty("mail.smtp.timeout", "1000");
+        session = Session.getInstance(properties);
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void reusesConnectionAcrossMessages() throws Exception {
+        try (SmtpTransportPool pool = pool(30_000, 100)) {
+            for (int i = 0; i < 3; i++) {
+                pool.send(message("user" + i + "@example.com"));
+            }
+        }
+        assertEquals(3, server.messages());
+        assertEquals(1, server.connections());
+    }
+
+    @Test
+    void reopensConnectionIdleTooLong() throws Exception {
+        try (SmtpTransportPool pool = pool(50, 100)) {
+            pool.send(message("first@example.com"));
+            Thread.sleep(150);
+            pool.send(message("second@example.com"));
+        }
+        assertEquals(2, server.messages());
+        assertEquals(2, server.connections());
+    }
+
+    @Test
+    void rotatesConnectionAfterMessageQuota() throws Exception {
+        try (SmtpTransportPool pool = pool(30_000, 2)) {
+            for (int i = 0; i < 5; i++) {
+                pool.send(message("user" + i + "@example.com"));
+            }
+        }
+        assertEquals(5, server.messages());
+        assertEquals(3, server.connections());
+    }
+
+    @Test
+    void reconnectsAfterServerDroppedConnection() throws Exception {
+        try (SmtpTransportPool pool = pool(30_000, 100)) {
+            pool.send(message("first@example.com"));
+            server.dropConnections();
+            pool.send(message("second@example.com"));
+        }
+        assertEquals(2, server.messages());
+        assertEquals(2, server.connections());
+    }
+
+    @Test
+    void doesNotResendMessageWhoseReplyWasLost() throws Exception {
+        try (SmtpTransportPool pool = pool(30_000, 100)) {
+            pool.send(message("first@example.com"));
+            server.setSilentAfterData(true);
+            assertThrows(MessagingException.class, () -> pool.send(message("second@example.com")));
+            server.setSilentAfterData(false);
+            pool.send(message("third@example.com"));
+        }
+        // The second message reached the server once, and the pool moved on to a new connection
+        assertEquals(3, server.messages());
+        assertEquals(2, server.connections());
+    }
+
+    private SmtpTransportPool pool(long idleTimeoutMillis, int maxMessagesPerConnection) {
+        return new SmtpTransportPool(session, "127.0.0.1", server.port(), null, null, 1,
+                idleTimeoutMillis, maxMessagesPerConnection);
+    }
+
+    private MimeMessage message(String to) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("newsletter@example.com"));
+        message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress(to));
+        message.setSubject("Hello", "UTF-8");
+        message.setText("Body", "UTF-8");
+        message.saveChanges();
+        return message;
+    }
+}
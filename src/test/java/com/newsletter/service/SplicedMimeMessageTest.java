@@ -0,0 +1,117 @@
+package com.newsletter.service;
+
+import com.newsletter.model.Content;
+import com.newsletter.model.Topic;
+import com.newsletter.template.CompiledTemplate;
+import com.newsletter.template.TemplateCompiler;
+import com.newsletter.template.UnsubscribeTokens;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SplicedMimeMessageTest {
+
+    private static final String SHARED_HEADERS = "From: Newsletter <newsletter@example.com>\r\n"
+            + "Date: Sat, 17 Oct 2026 10:00:00 +0000 (UTC)\r\n";
+
+    private final Session session = Session.getInstance(new Properties());
+    private final UnsubscribeTokens tokens = new UnsubscribeTokens("test-secret");
+    private TemplateCompiler compiler;
+
+    @BeforeEach
+    void createCompiler() {
+        compiler = new TemplateCompiler();
+        ReflectionTestUtils.setField(compiler, "subjectTemplate", "News: {{topic}} for {{name}}");
+        ReflectionTestUtils.setField(compiler, "unsubscribeUrl", "https://example.com/unsubscribe");
+        ReflectionTestUtils.setField(compiler, "unsubscribeTokens", tokens);
+    }
+
+    @Test
+    void writesHeadersAndPersonalisedBody() throws Exception {
+        String text = "Hello {{name}} été\nUnsubscribe: {{unsubscribeUrl}}";
+        byte[] wire = write(text, "jane.doe+news@example.org");
+
+        MimeMessage parsed = new MimeMessage(session, new ByteArrayInputStream(wire));
+        assertEquals("News: Tech for jane.doe+news", parsed.getSubject());
+        assertEquals("Newsletter <newsletter@example.com>", parsed.getFrom()[0].toString());
+        assertEquals("jane.doe+news@example.org", parsed.getRecipients(MimeMessage.RecipientType.TO)[0].toString());
+        assertEquals("<1@example.com>", parsed.getMessageID());
+        assertEquals("quoted-printable", parsed.getEncoding());
+        assertTrue(parsed.isMimeType("text/plain"));
+        assertEquals("Hello jane.doe+news été\r\nUnsubscribe: https://example.com/unsubscribe?topicId=7"
+                + "&email=jane.doe%2Bnews%40example.org&token=" + tokens.sign(7L, "jane.doe+news@example.org"),
+                ((String) parsed.getContent()).strip());
+    }
+
+    @Test
+    void unsubscribeTokenOnlyVerifiesItsOwnTopicAndAddress() {
+        String token = tokens.sign(7L, "reader@example.com");
+
+        assertTrue(tokens.verify(7L, "reader@example.com", token));
+        assertFalse(tokens.verify(8L, "reader@example.com", token));
+        assertFalse(tokens.verify(7L, "other@example.com", token));
+        assertFalse(tokens.verify(7L, "reader@example.com", null));
+        assertFalse(new UnsubscribeTokens("other-secret").verify(7L, "reader@example.com", token));
+    }
+
+    @Test
+    void writesOnlyCrlfLinesWithinLimit() throws Exception {
+        byte[] wire = write("x".repeat(500) + " {{email}} " + "=".repeat(100), "reader@example.com");
+
+        String message = new String(wire, StandardCharsets.US_ASCII);
+        assertTrue(message.startsWith(SHARED_HEADERS));
+        for (int i = 0; i < wire.length; i++) {
+            if (wire[i] == '\n') assertEquals('\r', wire[i - 1], "bare LF at " + i);
+            assertTrue((wire[i] & 0xFF) < 128, "8-bit byte at " + i);
+        }
+        for (String line : message.split("\r\n")) {
+            assertTrue(line.length() <= 76, "line too long: " + line);
+        }
+    }
+
+    @Test
+    void writeToWithIgnoreListWritesTheSameBytes() throws Exception {
+        CompiledTemplate template = compiler.compile(content("Hi {{email}}"));
+        SplicedMimeMessage message = message(template, "reader@example.com");
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        ByteArrayOutputStream ignoring = new ByteArrayOutputStream();
+        message.writeTo(plain);
+        message.writeTo(ignoring, new String[]{"Bcc"});
+        assertArrayEquals(plain.toByteArray(), ignoring.toByteArray());
+    }
+
+    private byte[] write(String text, String to) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message(compiler.compile(content(text)), to).writeTo(out);
+        return out.toByteArray();
+    }
+
+    private SplicedMimeMessage message(CompiledTemplate template, String to) throws Exception {
+        return new SplicedMimeMessage(session, new InternetAddress("Newsletter <newsletter@example.com>"),
+                SHARED_HEADERS.getBytes(StandardCharsets.US_ASCII), new InternetAddress(to), template,
+                "<1@example.com>");
+    }
+
+    private static Content content(String text) {
+        Topic topic = new Topic();
+        topic.setId(7L);
+        topic.setName("Tech");
+        Content content = new Content();
+        content.setTopic(topic);
+        content.setText(text);
+        return content;
+    }
+}
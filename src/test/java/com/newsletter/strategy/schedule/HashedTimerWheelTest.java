@@ -0,0 +1,66 @@
+package com.newsletter.strategy.schedule;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimerWheelTest {
+
+    private static final long START = 1_000_000;
+
+    @Test
+    void expiresOnTheTickOfItsDeadline() {
+        HashedTimerWheel<Long, String> wheel = new HashedTimerWheel<>(100, 8, START);
+        wheel.schedule(1L, "a", START + 250);
+
+        assertEquals(List.of(), wheel.advance(START + 299));
+        assertEquals(List.of("a"), wheel.advance(START + 300));
+        assertEquals(List.of(), wheel.advance(START + 1_000));
+    }
+
+    @Test
+    void pastDeadlineExpiresOnTheNextTick() {
+        HashedTimerWheel<Long, String> wheel = new HashedTimerWheel<>(100, 8, START);
+        wheel.advance(START + 500);
+        wheel.schedule(1L, "late", START - 10_000);
+
+        assertEquals(List.of(), wheel.advance(START + 599));
+        assertEquals(List.of("late"), wheel.advance(START + 600));
+    }
+
+    @Test
+    void deadlineBeyondOneRevolutionWaitsItsRounds() {
+        // Size 5 rounds up to 8 buckets: 800 ms per revolution
+        HashedTimerWheel<Long, String> wheel = new HashedTimerWheel<>(100, 5, START);
+        wheel.schedule(1L, "far", START + 2_000);
+        wheel.schedule(2L, "near", START + 400);
+
+        assertEquals(List.of("near"), wheel.advance(START + 1_900));
+        assertEquals(List.of("far"), wheel.advance(START + 2_000));
+    }
+
+    @Test
+    void keyIsScheduledOnceUntilItExpires() {
+        HashedTimerWheel<Long, String> wheel = new HashedTimerWheel<>(100, 8, START);
+
+        assertTrue(wheel.schedule(1L, "first", START + 100));
+        assertFalse(wheel.schedule(1L, "duplicate", START + 200));
+        assertEquals(List.of("first"), wheel.advance(START + 300));
+        assertTrue(wheel.schedule(1L, "again", START + 400));
+        assertEquals(List.of("again"), wheel.advance(START + 400));
+    }
+
+    @Test
+    void expiresEverythingDueInOneAdvance() {
+        HashedTimerWheel<Long, String> wheel = new HashedTimerWheel<>(100, 8, START);
+        for (long i = 0; i < 20; i++) {
+            wheel.schedule(i, "item" + i, START + i * 100);
+        }
+
+        assertEquals(20, wheel.advance(START + 1_900).size());
+    }
+}
@@ -0,0 +1,262 @@
+package com.newsletter.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Minimal SMTP stand-in on the loopback interface that accepts and discards mail. Accept latency, error rates
+ * and the connection limit are configurable so a load test can see how the pipeline behaves against a slow or
+ * flaky relay. No authentication or STARTTLS; the client must have both disabled. Shared by the tests and the
+ * load test.
+ */
+public final class FakeSmtpServer implements AutoCloseable {
+
+    /**
+     * Receives every accepted message with the time it was accepted.
+     */
+    public interface MessageListener {
+        void accepted(String data, long acceptedAtMillis);
+    }
+
+    private final long acceptLatencyNanos;
+    // Share of RCPT commands refused with a permanent 550
+    private volatile double rcptErrorRate;
+    // Share of messages refused with a transient 451 after DATA
+    private volatile double dataErrorRate;
+    // Take the message but never reply to it, like a relay whose 250 is lost; the client has to time out
+    private volatile boolean silentAfterData;
+    // 0 = unlimited; connections over the limit get 421 and are closed
+    private final int maxConnections;
+    // 0 = unlimited; messages finishing DATA while this many are being accepted get a 451, like a throttling relay
+    private final int capacity;
+    private final MessageListener listener;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "fake-smtp");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger accepting = new AtomicInteger();
+
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder refusedConnections = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder recipients = new LongAdder();
+    private final LongAdder rejectedRecipients = new LongAdder();
+    private final LongAdder deferredMessages = new LongAdder();
+    private final LongAdder throttledMessages = new LongAdder();
+
+    public FakeSmtpServer(long acceptLatencyMicros, double rcptErrorRate, double dataErrorRate, int maxConnections,
+                   int capacity, MessageListener listener) throws IOException {
+        this.acceptLatencyNanos = acceptLatencyMicros * 1_000;
+        this.rcptErrorRate = rcptErrorRate;
+        this.dataErrorRate = dataErrorRate;
+        this.maxConnections = maxConnections;
+        this.capacity = capacity;
+        this.listener = listener;
+        this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "fake-smtp-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    public long connections() {
+        return connections.sum();
+    }
+
+    public long refusedConnections() {
+        return refusedConnections.sum();
+    }
+
+    public long messages() {
+        return messages.sum();
+    }
+
+    public long recipients() {
+        return recipients.sum();
+    }
+
+    public long rejectedRecipients() {
+        return rejectedRecipients.sum();
+    }
+
+    public long deferredMessages() {
+        return deferredMessages.sum();
+    }
+
+    public long throttledMessages() {
+        return throttledMessages.sum();
+    }
+
+    public void setRcptErrorRate(double rcptErrorRate) {
+        this.rcptErrorRate = rcptErrorRate;
+    }
+
+    public void setDataErrorRate(double dataErrorRate) {
+        this.dataErrorRate = dataErrorRate;
+    }
+
+    public void setSilentAfterData(boolean silentAfterData) {
+        this.silentAfterData = silentAfterData;
+    }
+
+    /**
+     * Closes every open connection without a reply, as a relay does with idle connections.
+     */
+    public void dropConnections() {
+        for (Socket socket : openSockets) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            connections.increment();
+            sessions.execute(() -> {
+                int open = openConnections.incrementAndGet();
+                boolean admitted = maxConnections <= 0 || open <= maxConnections;
+                openSockets.add(socket);
+                try (socket) {
+                    if (admitted) {
+                        serve(socket);
+                    } else {
+                        refusedConnections.increment();
+                        reply(socket.getOutputStream(), "421 4.7.0 Too many connections");
+                    }
+                } catch (IOException | UncheckedIOException e) {
+                    // Client went away
+                } finally {
+                    openSockets.remove(socket);
+                    openConnections.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        OutputStream out = socket.getOutputStream();
+        reply(out, "220 fake-smtp ready");
+
+        int accepted = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.length() < 4 ? line.toUpperCase(Locale.ROOT) : line.substring(0, 4).toUpperCase(Locale.ROOT);
+            switch (command) {
+                case "EHLO" -> reply(out, "250-fake-smtp\r\n250 8BITMIME");
+                case "HELO", "NOOP" -> reply(out, "250 OK");
+                case "MAIL", "RSET" -> {
+                    accepted = 0;
+                    reply(out, "250 OK");
+                }
+                case "RCPT" -> {
+                    if (ThreadLocalRandom.current().nextDouble() < rcptErrorRate) {
+                        rejectedRecipients.increment();
+                        reply(out, "550 5.1.1 Recipient rejected");
+                    } else {
+                        accepted++;
+                        reply(out, "250 OK");
+                    }
+                }
+                case "DATA" -> {
+                    if (accepted == 0) {
+                        reply(out, "554 5.5.1 No valid recipients");
+                        continue;
+                    }
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    String data = readData(in);
+                    if (silentAfterData) {
+                        messages.increment();
+                        recipients.add(accepted);
+                        if (listener != null) listener.accepted(data, System.currentTimeMillis());
+                        // Until the client gives up and closes the connection
+                        while (in.readLine() != null) {
+                            // Discard
+                        }
+                        return;
+                    }
+                    if (capacity > 0 && accepting.incrementAndGet() > capacity) {
+                        accepting.decrementAndGet();
+                        throttledMessages.increment();
+                        reply(out, "451 4.7.1 Too busy, try again later");
+                        accepted = 0;
+                        continue;
+                    }
+                    try {
+                        if (acceptLatencyNanos > 0) LockSupport.parkNanos(acceptLatencyNanos);
+                    } finally {
+                        if (capacity > 0) accepting.decrementAndGet();
+                    }
+                    if (ThreadLocalRandom.current().nextDouble() < dataErrorRate) {
+                        deferredMessages.increment();
+                        reply(out, "451 4.3.0 Try again later");
+                    } else {
+                        messages.increment();
+                        recipients.add(accepted);
+                        if (listener != null) listener.accepted(data, System.currentTimeMillis());
+                        reply(out, "250 OK queued");
+                    }
+                    accepted = 0;
+                }
+                case "QUIT" -> {
+                    reply(out, "221 Bye");
+                    return;
+                }
+                default -> reply(out, "502 5.5.2 Command not implemented");
+            }
+        }
+    }
+
+    private static String readData(BufferedReader in) throws IOException {
+        StringBuilder data = new StringBuilder(1024);
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(".")) {
+            data.append(line.startsWith("..") ? line.substring(1) : line).append('\n');
+        }
+        return data.toString();
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
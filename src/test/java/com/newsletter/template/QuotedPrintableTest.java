@@ -0,0 +1,81 @@
+package com.newsletter.template;
+
+import jakarta.mail.internet.MimeUtility;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuotedPrintableTest {
+
+    @Test
+    void keepsPrintableAsciiLiteral() {
+        assertEquals("Hello, world!", encode("Hello, world!"));
+    }
+
+    @Test
+    void escapesEqualsSignAndNonAscii() throws Exception {
+        assertEquals("a=3Db =C3=A9t=C3=A9", encode("a=b été"));
+        assertEquals("a=b été", decode(QuotedPrintable.encode("a=b été")));
+    }
+
+    @Test
+    void escapesWhitespaceAtLineEnd() {
+        assertEquals("trailing=20\r\nnext=09", encode("trailing \nnext\t"));
+        assertEquals("a b\tc", encode("a b\tc"));
+    }
+
+    @Test
+    void normalisesLineBreaksToCrlf() {
+        assertEquals("a\r\nb\r\nc\r\nd", encode("a\nb\r\nc\rd"));
+        assertEquals("\r\n\r\n", encode("\n\r\n"));
+    }
+
+    @Test
+    void fitsLineWithoutSoftBreakUpToLimit() {
+        assertEquals("x".repeat(75), encode("x".repeat(75)));
+        assertEquals("x".repeat(75) + "=\r\nx", encode("x".repeat(76)));
+    }
+
+    @Test
+    void breaksLongLinesWithinLimit() throws Exception {
+        String text = "word ".repeat(100) + "\n" + "é".repeat(80) + "\n" + "=".repeat(60);
+        byte[] encoded = QuotedPrintable.encode(text);
+
+        String[] lines = new String(encoded, StandardCharsets.US_ASCII).split("\r\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            assertTrue(lines[i].length() <= 76, "line " + i + " too long: " + lines[i]);
+            // A soft break never splits an escape sequence
+            assertFalse(lines[i].matches(".*=[0-9A-F]$"), "split escape: " + lines[i]);
+        }
+        assertEquals(text.replace("\n", "\r\n"), decode(encoded));
+    }
+
+    @Test
+    void carriesSpaceOverSoftBreak() throws Exception {
+        // The 76th character is a space: it moves to the next line as a literal, the line before ends in '='
+        String text = "x".repeat(75) + " y";
+        assertEquals("x".repeat(75) + "=\r\n y", encode(text));
+        assertEquals(text, decode(QuotedPrintable.encode(text)));
+    }
+
+    @Test
+    void encodesEmptyText() {
+        assertEquals("", encode(""));
+    }
+
+    private static String encode(String text) {
+        return new String(QuotedPrintable.encode(text), StandardCharsets.US_ASCII);
+    }
+
+    private static String decode(byte[] encoded) throws Exception {
+        try (InputStream in = MimeUtility.decode(new ByteArrayInputStream(encoded), "quoted-printable")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}